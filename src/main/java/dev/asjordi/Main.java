@@ -1,23 +1,23 @@
 package dev.asjordi;
 
+import dev.asjordi.chain.Difficulty;
+import dev.asjordi.chain.DifficultyAdjuster;
 import dev.asjordi.logger.MyLogger;
 import dev.asjordi.model.Block;
+import dev.asjordi.model.HeapUTXOSet;
+import dev.asjordi.model.Payment;
 import dev.asjordi.model.Transaction;
 import dev.asjordi.model.TransactionInput;
 import dev.asjordi.model.TransactionOutput;
+import dev.asjordi.model.UTXOSet;
 import dev.asjordi.model.Wallet;
+import dev.asjordi.node.NodeContext;
+import dev.asjordi.util.StringUtil;
 
-import java.io.IOException;
-import java.security.Security;
-import java.util.HashMap;
-import java.util.LinkedList;
 import java.util.List;
-import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
-import org.bouncycastle.jce.provider.BouncyCastleProvider;
-
 /**
  * Main class to test the blockchain implementation
  * @author Jordi <ejordi.ayala@gmail.com>
@@ -25,33 +25,23 @@ import org.bouncycastle.jce.provider.BouncyCastleProvider;
 public class Main {
 
     private static final Logger LOGGER = Logger.getLogger(Logger.GLOBAL_LOGGER_NAME);
-    public static List<Block> blockchain = new LinkedList<>();
-    // Contains all unspent transactions
-    public static Map<String, TransactionOutput> UTXOs = new HashMap<>();
-
-    public static Integer difficulty = 3;
-    public static float minimumTransaction = 0.1f;
-    public static Wallet walletA;
-    public static Wallet walletB;
-    public static Transaction genesisTransaction;
+    // Difficulty of the first blocks, in leading zero hex digits, then retargeted every block to one block per 10s
+    private static final int DIFFICULTY = 3;
 
     public static void main(String[] args) {
-        Security.addProvider(new BouncyCastleProvider());
         LOGGER.setLevel(Level.ALL);
+        MyLogger.setup();
 
-        try {
-            MyLogger.setup();
-        } catch (IOException e) {
-            throw new RuntimeException(e.getMessage());
-        }
+        // The ledger: its block tree, working UTXO set and settings
+        NodeContext context = new NodeContext(new DifficultyAdjuster(Difficulty.bitsForLeadingZeros(DIFFICULTY), 10_000, 10));
 
         // Create wallets
-        walletA = new Wallet();
-        walletB = new Wallet();
-        Wallet coinbase = new Wallet();
+        Wallet walletA = new Wallet(context);
+        Wallet walletB = new Wallet(context);
+        Wallet coinbase = new Wallet(context);
         
         // Create genesis transaction, which sends 100 coins to walletA
-        genesisTransaction = new Transaction(coinbase.getPublicKey(), walletA.getPublicKey(), 100f, null);
+        Transaction genesisTransaction = new Transaction(coinbase.getPublicKey(), walletA.getPublicKey(), 100 * Transaction.COIN, null);
         // Manually signs the genesis transaction
         genesisTransaction.generateSignature(coinbase.getPrivateKey());
         // Manually set the transaction id
@@ -59,46 +49,46 @@ public class Main {
         // Manually add the Transaction Output
         genesisTransaction.outputs.add(new TransactionOutput(genesisTransaction.recipient, genesisTransaction.value, genesisTransaction.transactionId));
         // Store our first transaction in the UTXOs list
-        UTXOs.put(genesisTransaction.outputs.get(0).getId(), genesisTransaction.outputs.get(0));
+        context.getUTXOs().put(genesisTransaction.outputs.get(0).getId(), genesisTransaction.outputs.get(0));
 
         LOGGER.log(Level.INFO, "Creating and Mining Genesis block...");
         Block genesis = new Block("0");
-        genesis.addTransaction(genesisTransaction);
-        addBlock(genesis);
+        genesis.addTransaction(genesisTransaction, context);
+        addBlock(context, genesis);
         
         // TESTING
         Block block1 = new Block(genesis.getHash());
-        LOGGER.log(Level.INFO, () -> "walletA's balance is: " + walletA.getBalance());
+        LOGGER.log(Level.INFO, () -> "walletA's balance is: " + StringUtil.formatAmount(walletA.getBalance()));
         LOGGER.log(Level.INFO, "walletA is attempting to send funds (40) to walletB...");
-        block1.addTransaction(walletA.sendFunds(walletB.getPublicKey(), 40f));
-        addBlock(block1);
-        LOGGER.log(Level.INFO, () -> "walletA's balance is: " + walletA.getBalance());
-        LOGGER.log(Level.INFO, () -> "walletB's balance is: " + walletB.getBalance());
+        block1.addTransaction(walletA.sendFunds(walletB.getPublicKey(), 40 * Transaction.COIN), context);
+        addBlock(context, block1);
+        LOGGER.log(Level.INFO, () -> "walletA's balance is: " + StringUtil.formatAmount(walletA.getBalance()));
+        LOGGER.log(Level.INFO, () -> "walletB's balance is: " + StringUtil.formatAmount(walletB.getBalance()));
         
         Block block2 = new Block(block1.getHash());
         LOGGER.log(Level.INFO, "WalletA Attempting to send more funds (1000) than it has...");
-        block2.addTransaction(walletA.sendFunds(walletB.getPublicKey(), 1000f));
-        addBlock(block2);
-        LOGGER.log(Level.INFO, () -> "walletA's balance is: " + walletA.getBalance());
-        LOGGER.log(Level.INFO, () -> "walletB's balance is: " + walletB.getBalance());
+        block2.addTransaction(walletA.sendFunds(walletB.getPublicKey(), 1000 * Transaction.COIN), context);
+        addBlock(context, block2);
+        LOGGER.log(Level.INFO, () -> "walletA's balance is: " + StringUtil.formatAmount(walletA.getBalance()));
+        LOGGER.log(Level.INFO, () -> "walletB's balance is: " + StringUtil.formatAmount(walletB.getBalance()));
 
         Block block3 = new Block(block2.getHash());
         LOGGER.log(Level.INFO, "WalletB is Attempting to send funds (20) to WalletA...");
-        block3.addTransaction(walletB.sendFunds( walletA.getPublicKey(), 20));
-        LOGGER.log(Level.INFO, () -> "walletA's balance is: " + walletA.getBalance());
-        LOGGER.log(Level.INFO, () -> "walletB's balance is: " + walletB.getBalance());
-        
-        isChainValid();
+        block3.addTransaction(walletB.sendFunds( walletA.getPublicKey(), 20 * Transaction.COIN), context);
+        LOGGER.log(Level.INFO, () -> "walletA's balance is: " + StringUtil.formatAmount(walletA.getBalance()));
+        LOGGER.log(Level.INFO, () -> "walletB's balance is: " + StringUtil.formatAmount(walletB.getBalance()));
         
+        isChainValid(context, genesisTransaction);
+        LOGGER.log(Level.INFO, "Signature cache: {0}", context.getSignatureCache());
     }
 
-    public static Boolean isChainValid() {
+    public static Boolean isChainValid(NodeContext context, Transaction genesisTransaction) {
+        List<Block> blockchain = context.getBlockTree().getActiveChain();
         Block currentBlock;
         Block previousBlock;
-        String hashTarget = new String(new char[difficulty]).replace('\0', '0');
         
         //A temporary working list of unspent transactions at a given block state
-        Map<String, TransactionOutput> tempUTXOs = new HashMap<String, TransactionOutput>(); 
+        UTXOSet tempUTXOs = new HeapUTXOSet();
         tempUTXOs.put(genesisTransaction.outputs.get(0).getId(), genesisTransaction.outputs.get(0));
 
         //Loop through blockchain to check hashes
@@ -118,8 +108,14 @@ public class Main {
                 return false;
             }
             
+            //Check the block was mined at the expected target
+            if (currentBlock.getBits() != context.getDifficultyAdjuster().nextBits(blockchain.subList(0, i))) {
+                LOGGER.log(Level.WARNING, "Block target is not the expected target");
+                return false;
+            }
+
             //Check if hash is solved
-            if (!currentBlock.getHash().substring(0, difficulty).equals(hashTarget)) {
+            if (!Difficulty.meetsTarget(currentBlock.getHash(), currentBlock.getBits())) {
                 LOGGER.log(Level.WARNING, "This block hasn't been mined");
                 return false;
             }
@@ -129,13 +125,18 @@ public class Main {
             for (int t = 0; t < currentBlock.getTransactions().size(); t++) {
                 Transaction currentTransaction = currentBlock.getTransactions().get(t);
 
-                if (!currentTransaction.verifySignature()) {
+                if (!currentTransaction.verifySignature(context.getSignatureCache())) {
                     LOGGER.log(Level.WARNING, "Signature on Transaction {} is Invalid", t);
                     return false;
                 }
                 
-                if (currentTransaction.getInputsValue() != currentTransaction.getOutputsValue()) {
-                    LOGGER.log(Level.WARNING, "Inputs are note equal to outputs on Transaction {}", t);
+                try {
+                    if (currentTransaction.getInputsValue() != currentTransaction.getOutputsValue()) {
+                        LOGGER.log(Level.WARNING, "Inputs are note equal to outputs on Transaction {}", t);
+                        return false;
+                    }
+                } catch (ArithmeticException e) {
+                    LOGGER.log(Level.WARNING, "Values overflow on Transaction {}", t);
                     return false;
                 }
 
@@ -159,12 +160,23 @@ public class Main {
                     tempUTXOs.put(output.getId(), output);
                 }
 
-                if (currentTransaction.outputs.get(0).getRecipient() != currentTransaction.recipient) {
-                    LOGGER.log(Level.WARNING, "Transaction {} output recipient is not who it should be", t);
+                int paymentCount = currentTransaction.payments.size();
+                int outputCount = currentTransaction.outputs.size();
+                if (outputCount != paymentCount && outputCount != paymentCount + 1) {
+                    LOGGER.log(Level.WARNING, "Transaction {} has an unexpected number of outputs", t);
                     return false;
                 }
+
+                for (int o = 0; o < paymentCount; o++) {
+                    Payment payment = currentTransaction.payments.get(o);
+                    TransactionOutput output = currentTransaction.outputs.get(o);
+                    if (!output.isMine(payment.recipient()) || output.getValue() != payment.value()) {
+                        LOGGER.log(Level.WARNING, "Transaction {} output recipient is not who it should be", t);
+                        return false;
+                    }
+                }
                 
-                if (currentTransaction.outputs.get(1).getRecipient() != currentTransaction.sender) {
+                if (outputCount > paymentCount && !currentTransaction.outputs.get(paymentCount).isMine(currentTransaction.sender)) {
                     LOGGER.log(Level.WARNING, "Transaction {} output 'change' is not sender.", t);
                     return false;
                 }
@@ -174,8 +186,8 @@ public class Main {
         return true;
     }
     
-    public static void addBlock(Block newBlock) {
-        newBlock.mineBlock(difficulty);
-        blockchain.add(newBlock);
+    public static void addBlock(NodeContext context, Block newBlock) {
+        newBlock.mineBlockToTarget(context.getBlockTree().getNextBits());
+        context.getBlockTree().addBlock(newBlock);
     }
 }
@@ -0,0 +1,47 @@
+package dev.asjordi.bench;
+
+import dev.asjordi.chain.Difficulty;
+import dev.asjordi.chain.DifficultyAdjuster;
+import dev.asjordi.model.Block;
+import dev.asjordi.model.Transaction;
+import dev.asjordi.model.Wallet;
+import dev.asjordi.node.Node;
+import java.lang.management.ManagementFactory;
+
+/**
+ * Measures how long a cold JVM takes to produce its first validated block: process start to main,
+ * creating the first keys, and mining a block with one signed transaction that the node then validates
+ * and connects. Meant to be run once per JVM, with and without the class data sharing archive of the
+ * fast-boot profile, to compare cold starts.
+ * Usage: StartupBenchmark [difficulty in leading zero hex digits]
+ * @author Jordi <ejordi.ayala@gmail.com>
+ */
+public class StartupBenchmark {
+
+    public static void main(String[] args) {
+        long mainStart = System.nanoTime();
+        long mainMillis = System.currentTimeMillis();
+        int difficulty = args.length > 0 ? Integer.parseInt(args[0]) : 2;
+
+        Wallet walletA = new Wallet();
+        Wallet walletB = new Wallet();
+        long keysReady = System.nanoTime();
+
+        int bits = Difficulty.bitsForLeadingZeros(difficulty);
+        Node node = new Node("bench", Node.createGenesisBlock(walletA.getPublicKey(), 100 * Transaction.COIN, bits),
+                new DifficultyAdjuster(bits, 10_000, 10));
+        if (node.submitTransaction(walletA, walletB.getPublicKey(), 10 * Transaction.COIN) == null) {
+            throw new IllegalStateException("The transaction was rejected");
+        }
+        Block block = node.mineBlock();
+        if (!block.getHash().equals(node.getTipHash())) throw new IllegalStateException("The block was not connected");
+        long firstBlock = System.nanoTime();
+
+        // Read last, so loading the management classes isn't counted
+        long toMain = mainMillis - ManagementFactory.getRuntimeMXBean().getStartTime();
+        System.out.printf("jvm start to main:     %6d ms%n", toMain);
+        System.out.printf("main to keys:          %6d ms%n", (keysReady - mainStart) / 1_000_000);
+        System.out.printf("keys to first block:   %6d ms%n", (firstBlock - keysReady) / 1_000_000);
+        System.out.printf("jvm start to block:    %6d ms%n", toMain + (firstBlock - mainStart) / 1_000_000);
+    }
+}
@@ -0,0 +1,216 @@
+package dev.asjordi.chain;
+
+import dev.asjordi.model.OutPoint;
+import dev.asjordi.model.Transaction;
+import dev.asjordi.model.TransactionInput;
+import dev.asjordi.model.TransactionOutput;
+import dev.asjordi.model.UTXOSet;
+import dev.asjordi.util.SignatureCache;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * The BlockProcessor class validates the processed transactions of a block against a UTXO set and stages their changes.
+ * Transactions that touch a common outpoint, because one spends what another creates or both spend the same output,
+ * are joined into one group. Groups share no outpoints, so each is validated on its own against a private batch,
+ * in parallel on a fork-join pool; signature verification, the costly part, is spread across the pool this way.
+ * A double spend inside the block puts both spenders in the same group, where the later one fails as it would
+ * sequentially. The result, including which transaction fails first and the undo journal, is the same as
+ * {@link #processSequential(UTXOSet, List)}.
+ * The UTXO set must not be changed while a block is being processed.
+ * @author Jordi <ejordi.ayala@gmail.com>
+ */
+public class BlockProcessor {
+
+    private final ForkJoinPool pool;
+    private final SignatureCache signatureCache;
+    private final long minimumTransaction;
+
+    /**
+     * The outcome of processing a block.
+     * @param failedIndex The position of the first invalid transaction, or -1 if every transaction is valid.
+     * @param batch The staged UTXO changes of the block, ready to commit, or null if a transaction is invalid.
+     */
+    public record Result(int failedIndex, UTXOBatch batch) {
+
+        /**
+         * @return True if every transaction of the block is valid.
+         */
+        public boolean isValid() {
+            return failedIndex < 0;
+        }
+    }
+
+    /**
+     * Constructor for the BlockProcessor class.
+     * @param pool The pool the transaction groups are validated on.
+     * @param signatureCache The cache signatures are verified through, or null to verify every signature.
+     * @param minimumTransaction The smallest amount of inputs a transaction may spend, in minimal units,
+     * the same rule transactions are relayed under.
+     */
+    public BlockProcessor(ForkJoinPool pool, SignatureCache signatureCache, long minimumTransaction) {
+        if (minimumTransaction < 0) throw new IllegalArgumentException("The minimum transaction can't be negative");
+        this.pool = pool;
+        this.signatureCache = signatureCache;
+        this.minimumTransaction = minimumTransaction;
+    }
+
+    /**
+     * Constructor for a BlockProcessor without a minimum transaction.
+     * @param pool The pool the transaction groups are validated on.
+     * @param signatureCache The cache signatures are verified through, or null to verify every signature.
+     */
+    public BlockProcessor(ForkJoinPool pool, SignatureCache signatureCache) {
+        this(pool, signatureCache, 0);
+    }
+
+    /**
+     * Constructor for a BlockProcessor verifying every signature, without a minimum transaction.
+     * @param pool The pool the transaction groups are validated on.
+     */
+    public BlockProcessor(ForkJoinPool pool) {
+        this(pool, null);
+    }
+
+    /**
+     * Constructor for a BlockProcessor running on the common fork-join pool.
+     */
+    public BlockProcessor() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Validates the transactions of a block, independent groups in parallel, and stages their changes.
+     * @param utxos The UTXO set the block is connected to. It isn't changed.
+     * @param transactions The processed transactions of the block, in block order.
+     * @return The result, identical to {@link #processSequential(UTXOSet, List)}.
+     */
+    public Result process(UTXOSet utxos, List<Transaction> transactions) {
+        List<Transaction> txs = List.copyOf(transactions);
+        List<List<Integer>> groups = groups(txs);
+
+        int failedIndex;
+        if (groups.size() <= 1) {
+            failedIndex = validate(utxos, txs, groups.isEmpty() ? List.of() : groups.get(0));
+        } else {
+            List<ForkJoinTask<Integer>> tasks = new ArrayList<>(groups.size());
+            for (List<Integer> group : groups) tasks.add(pool.submit(() -> validate(utxos, txs, group)));
+            failedIndex = -1;
+            for (ForkJoinTask<Integer> task : tasks) {
+                int failed = task.join();
+                if (failed >= 0 && (failedIndex < 0 || failed < failedIndex)) failedIndex = failed;
+            }
+        }
+        if (failedIndex >= 0) return new Result(failedIndex, null);
+
+        // Every transaction is valid, so the changes are staged again in block order for an identical journal
+        UTXOBatch batch = new UTXOBatch(utxos);
+        for (Transaction t : txs) {
+            for (TransactionInput i : t.inputs) batch.spend(i.getTransactionOutputId());
+            for (TransactionOutput o : t.outputs) batch.add(o);
+        }
+        return new Result(-1, batch);
+    }
+
+    /**
+     * Validates the transactions of a block one after another and stages their changes.
+     * @param utxos The UTXO set the block is connected to. It isn't changed.
+     * @param transactions The processed transactions of the block, in block order.
+     * @return The result.
+     */
+    public Result processSequential(UTXOSet utxos, List<Transaction> transactions) {
+        UTXOBatch batch = new UTXOBatch(utxos);
+        for (int index = 0; index < transactions.size(); index++) {
+            if (!apply(transactions.get(index), batch)) return new Result(index, null);
+        }
+        return new Result(-1, batch);
+    }
+
+    /**
+     * Splits the transactions into groups that share no outpoint, with union-find over their positions.
+     * @return The groups, each in block order.
+     */
+    private static List<List<Integer>> groups(List<Transaction> txs) {
+        int[] parent = new int[txs.size()];
+        for (int i = 0; i < parent.length; i++) parent[i] = i;
+
+        Map<OutPoint, Integer> toucher = new HashMap<>();
+        for (int i = 0; i < txs.size(); i++) {
+            Transaction t = txs.get(i);
+            if (t.inputs != null) {
+                for (TransactionInput in : t.inputs) join(parent, i, toucher.putIfAbsent(in.getTransactionOutputId(), i));
+            }
+            for (TransactionOutput o : t.outputs) join(parent, i, toucher.putIfAbsent(o.getId(), i));
+        }
+
+        Map<Integer, List<Integer>> groups = new LinkedHashMap<>();
+        for (int i = 0; i < parent.length; i++) groups.computeIfAbsent(find(parent, i), k -> new ArrayList<>()).add(i);
+        return new ArrayList<>(groups.values());
+    }
+
+    private static void join(int[] parent, int a, Integer b) {
+        if (b == null) return;
+        int rootA = find(parent, a);
+        int rootB = find(parent, b);
+        if (rootA != rootB) parent[Math.max(rootA, rootB)] = Math.min(rootA, rootB);
+    }
+
+    private static int find(int[] parent, int i) {
+        while (parent[i] != i) {
+            parent[i] = parent[parent[i]];
+            i = parent[i];
+        }
+        return i;
+    }
+
+    /**
+     * @return The position of the first invalid transaction of the group, or -1.
+     */
+    private int validate(UTXOSet utxos, List<Transaction> txs, List<Integer> group) {
+        UTXOBatch batch = new UTXOBatch(utxos);
+        for (int index : group) {
+            if (!apply(txs.get(index), batch)) return index;
+        }
+        return -1;
+    }
+
+    /**
+     * Checks one transaction against the batch and stages its changes if it is valid:
+     * a valid signature, outputs matching the signed payments (see {@link Transaction#hasValidOutputs()}),
+     * inputs that are unspent and not repeated, outputs whose outpoints aren't already unspent,
+     * and inputs equal to outputs.
+     */
+    private boolean apply(Transaction t, UTXOBatch batch) {
+        if (t.inputs == null || t.inputs.isEmpty()) return false;
+        try {
+            if (!t.verifySignature(signatureCache) || !t.hasValidOutputs()) return false;
+        } catch (RuntimeException e) {
+            return false;
+        }
+
+        long inputs = 0;
+        long outputs = 0;
+        try {
+            for (TransactionInput i : t.inputs) {
+                TransactionOutput spent = batch.spend(i.getTransactionOutputId());
+                if (spent == null) return false;
+                inputs = Math.addExact(inputs, spent.getValue());
+            }
+            for (TransactionOutput o : t.outputs) {
+                if (o.getValue() < 0 || batch.get(o.getId()) != null) return false;
+                outputs = Math.addExact(outputs, o.getValue());
+            }
+        } catch (ArithmeticException e) {
+            return false;
+        }
+        if (inputs != outputs || inputs < minimumTransaction) return false;
+
+        for (TransactionOutput o : t.outputs) batch.add(o);
+        return true;
+    }
+}
@@ -0,0 +1,453 @@
+package dev.asjordi.chain;
+
+import dev.asjordi.model.Block;
+import dev.asjordi.model.BlockBodySource;
+import dev.asjordi.model.HeapUTXOSet;
+import dev.asjordi.model.Transaction;
+import dev.asjordi.model.TransactionInput;
+import dev.asjordi.model.TransactionOutput;
+import dev.asjordi.model.UTXOSet;
+import dev.asjordi.store.BlockStore;
+import dev.asjordi.util.StringUtil;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The BlockTree class indexes every known block by hash, including blocks on competing forks.
+ * Each node keeps the cumulative work of the chain ending at it, and the chain with the most work is the active chain.
+ * The tree owns the UTXO set of the active chain. When another fork gains more work, the blocks of the old fork
+ * are disconnected using their undo data and the blocks of the new fork are connected, so a reorg costs
+ * time proportional to the depth of the fork rather than the length of the chain.
+ * With a {@link BlockProcessor}, every transaction after the genesis block is fully validated when its block connects;
+ * without one, only the spent outputs are checked.
+ * A {@link RetentionPolicy} bounds how many block bodies stay in memory; older ones are moved to disk or dropped,
+ * and their undo data is dropped with them.
+ * @author Jordi <ejordi.ayala@gmail.com>
+ */
+public class BlockTree {
+
+    private final Map<String, Node> nodes = new HashMap<>();
+    private final List<Block> activeChain = new ArrayList<>();
+    private final UTXOSet utxos;
+    private final DifficultyAdjuster difficultyAdjuster;
+    private RetentionPolicy retention = RetentionPolicy.KEEP_ALL;
+    private BlockProcessor blockProcessor;
+    private final List<ChainListener> listeners = new ArrayList<>();
+    private Node tip;
+    private static final BlockBodySource PRUNED = hash -> {
+        throw new IllegalStateException("The body of block " + hash + " was pruned");
+    };
+    private static final Logger LOGGER = Logger.getLogger(Logger.GLOBAL_LOGGER_NAME);
+
+    /**
+     * A block in the tree with its position and the state needed to disconnect it.
+     */
+    private static final class Node {
+        Block block;
+        final Node parent;
+        final int height;
+        final BigInteger chainWork;
+        BlockUndo undo;
+        boolean invalid;
+        boolean pruned;
+
+        Node(Block block, Node parent, BigInteger work) {
+            this.block = block;
+            this.parent = parent;
+            this.height = (parent == null) ? 0 : parent.height + 1;
+            this.chainWork = (parent == null) ? work : parent.chainWork.add(work);
+        }
+    }
+
+    /**
+     * Constructor for a BlockTree keeping the UTXO set of its best chain on the heap.
+     * @param difficultyAdjuster The rule giving the target each block must be mined at.
+     */
+    public BlockTree(DifficultyAdjuster difficultyAdjuster) {
+        this(difficultyAdjuster, new HeapUTXOSet());
+    }
+
+    /**
+     * Constructor for the BlockTree class.
+     * @param difficultyAdjuster The rule giving the target each block must be mined at.
+     * @param utxos The empty set the UTXO set of the best chain is kept in.
+     */
+    public BlockTree(DifficultyAdjuster difficultyAdjuster, UTXOSet utxos) {
+        if (!utxos.isEmpty()) throw new IllegalArgumentException("The UTXO set of a new block tree must be empty");
+        this.difficultyAdjuster = difficultyAdjuster;
+        this.utxos = utxos;
+    }
+
+    /**
+     * Adds a mined block to the tree, switching the active chain if the block's fork now has the most work.
+     * The first block added must be a genesis block, whose previous hash is "0".
+     * @param block The mined block.
+     * @return True if the block was accepted into the tree, false if it is invalid, already known or its parent is unknown.
+     */
+    public boolean addBlock(Block block) {
+        if (nodes.containsKey(block.getHash())) return false;
+
+        if (!block.getHash().equals(block.calculateHash())) {
+            LOGGER.log(Level.WARNING, "Block hash doesn't match its contents");
+            return false;
+        }
+
+        Node parent = null;
+        if (!"0".equals(block.getPreviousHash())) {
+            parent = nodes.get(block.getPreviousHash());
+            if (parent == null || parent.invalid) {
+                LOGGER.log(Level.WARNING, "Block parent {0} is unknown or invalid", block.getPreviousHash());
+                return false;
+            }
+        } else if (!nodes.isEmpty()) {
+            LOGGER.log(Level.WARNING, "The tree already has a genesis block");
+            return false;
+        }
+
+        List<Block> ancestors = ancestors(parent);
+        if (!difficultyAdjuster.isTimestampAllowed(ancestors, block.getTimeStamp(), System.currentTimeMillis())) {
+            LOGGER.log(Level.WARNING, "Block timestamp {0} is before the median time past or too far in the future", block.getTimeStamp());
+            return false;
+        }
+
+        if (block.getBits() != difficultyAdjuster.nextBits(ancestors)) {
+            LOGGER.log(Level.WARNING, "Block target {0} is not the expected target", Integer.toHexString(block.getBits()));
+            return false;
+        }
+
+        if (!Difficulty.meetsTarget(block.getHash(), block.getBits())) {
+            LOGGER.log(Level.WARNING, "This block hasn't been mined");
+            return false;
+        }
+
+        // Checked before the hash is recorded, so a mined header carrying other transactions can't take the honest block's place
+        if (!StringUtil.getMerkleRoot(block.getTransactions()).equals(block.getMerkleRoot())) {
+            LOGGER.log(Level.WARNING, "Body of block {0} doesn''t match its header", block.getHash());
+            return false;
+        }
+
+        Node node = new Node(block, parent, Difficulty.work(block.getBits()));
+        nodes.put(block.getHash(), node);
+
+        if (tip == null || node.chainWork.compareTo(tip.chainWork) > 0) {
+            reorganize(node);
+        }
+        return !node.invalid;
+    }
+
+    /**
+     * @param hash The hash of the block.
+     * @return True if the block is in the tree.
+     */
+    public boolean contains(String hash) {
+        return nodes.containsKey(hash);
+    }
+
+    /**
+     * @param hash The hash of the block.
+     * @return The block, on any fork, or null if it isn't in the tree.
+     */
+    public Block getBlock(String hash) {
+        Node node = nodes.get(hash);
+        return node == null ? null : node.block;
+    }
+
+    /**
+     * @return The block at the end of the active chain, or null if the tree is empty.
+     */
+    public Block getTip() {
+        return tip == null ? null : tip.block;
+    }
+
+    /**
+     * @return The height of the active chain's tip, -1 if the tree is empty.
+     */
+    public int getHeight() {
+        return tip == null ? -1 : tip.height;
+    }
+
+    /**
+     * @return The cumulative work of the active chain.
+     */
+    public BigInteger getChainWork() {
+        return tip == null ? BigInteger.ZERO : tip.chainWork;
+    }
+
+    /**
+     * @return A read-only view of the active chain, from genesis to tip.
+     */
+    public List<Block> getActiveChain() {
+        return Collections.unmodifiableList(activeChain);
+    }
+
+    /**
+     * @return The UTXO set of the active chain.
+     */
+    public UTXOSet getUTXOs() {
+        return utxos;
+    }
+
+    /**
+     * @return The number of blocks in the tree, on every fork.
+     */
+    public int size() {
+        return nodes.size();
+    }
+
+    /**
+     * Computes the compact target the next block on the active chain must meet.
+     * @return The compact target of the next block.
+     */
+    public int getNextBits() {
+        return difficultyAdjuster.nextBits(ancestors(tip));
+    }
+
+    /**
+     * Returns the last blocks of the chain ending at the given block, enough to compute the target of its child
+     * and to check its timestamp.
+     * @param hash The hash of the block, on any fork.
+     * @return Up to {@link DifficultyAdjuster#getHistory()} blocks, from oldest to newest, or an empty list if the block isn't in the tree.
+     */
+    public List<Block> getAncestors(String hash) {
+        Node node = nodes.get(hash);
+        return node == null ? List.of() : ancestors(node);
+    }
+
+    /**
+     * Sets how many block bodies of the active chain are kept in memory, and prunes the blocks already deeper than that.
+     * @param retention The retention policy.
+     */
+    public void setRetentionPolicy(RetentionPolicy retention) {
+        this.retention = retention;
+        for (int height = activeChain.size() - 1 - retention.keepRecent(); height >= 0; height--) {
+            prune(height);
+        }
+    }
+
+    /**
+     * Sets the processor that validates the transactions of each block as it connects.
+     * @param blockProcessor The block processor, or null to only check that spent outputs exist.
+     */
+    public void setBlockProcessor(BlockProcessor blockProcessor) {
+        this.blockProcessor = blockProcessor;
+    }
+
+    /**
+     * Registers a listener for blocks joining and leaving the active chain.
+     * The listener is first brought up to date from its {@link ChainListener#getLastBlockHash() last block}:
+     * if that block left the active chain, the listener is disconnected back to the fork point, then the active
+     * blocks after it are replayed up to the tip. A listener that has seen no block is replayed from genesis.
+     * @param listener The listener.
+     * @throws IllegalStateException if the listener's last block isn't in the tree, or the undo data of a block
+     * it still has to be replayed was pruned; the listener isn't changed then.
+     */
+    public void addListener(ChainListener listener) {
+        String lastHash = listener.getLastBlockHash();
+        Node fork = null;
+        if (lastHash != null) {
+            Node last = nodes.get(lastHash);
+            if (last == null) throw new IllegalStateException("The listener's last block " + lastHash + " isn't in the tree");
+            fork = findFork(last, tip);
+        }
+        int from = fork == null ? 0 : fork.height + 1;
+        for (int height = from; height < activeChain.size(); height++) {
+            Node node = nodes.get(activeChain.get(height).getHash());
+            if (node.undo == null) {
+                throw new IllegalStateException("The listener has to be replayed from height " + from +
+                        ", but the undo data of block " + node.block.getHash() + " at height " + height + " was pruned");
+            }
+        }
+
+        if (lastHash != null) {
+            for (Node n = nodes.get(lastHash); n != fork; n = n.parent) listener.blockDisconnected(n.block, n.height);
+        }
+        for (int height = from; height < activeChain.size(); height++) {
+            Node node = nodes.get(activeChain.get(height).getHash());
+            listener.blockConnected(node.block, height, node.undo);
+        }
+        listeners.add(listener);
+    }
+
+    /**
+     * @param listener The listener to stop notifying.
+     */
+    public void removeListener(ChainListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * @return How many block bodies of the active chain are kept in memory.
+     */
+    public RetentionPolicy getRetentionPolicy() {
+        return retention;
+    }
+
+    /**
+     * @return The rule giving the target each block must be mined at.
+     */
+    public DifficultyAdjuster getDifficultyAdjuster() {
+        return difficultyAdjuster;
+    }
+
+    /**
+     * @return The last blocks of the chain ending at the node, enough for one retarget and the median time past, from oldest to newest.
+     */
+    private List<Block> ancestors(Node node) {
+        List<Block> ancestors = new ArrayList<>();
+        for (Node n = node; n != null && ancestors.size() < difficultyAdjuster.getHistory(); n = n.parent) {
+            ancestors.add(n.block);
+        }
+        Collections.reverse(ancestors);
+        return ancestors;
+    }
+
+    /**
+     * Makes the given node the tip: disconnects back to the fork point, then connects the new branch.
+     * If a block of the new branch fails to connect, it is marked invalid and the previous tip is restored.
+     */
+    private void reorganize(Node newTip) {
+        Node oldTip = this.tip;
+        Node fork = findFork(oldTip, newTip);
+
+        if (retention.prunes() && oldTip != null && oldTip.height - (fork == null ? -1 : fork.height) > retention.keepRecent()) {
+            LOGGER.log(Level.WARNING, "Fork is deeper than the retained undo data, keeping the current chain");
+            return;
+        }
+
+        List<Node> oldBranch = disconnectTo(fork);
+        List<Node> newBranch = branch(fork, newTip);
+
+        for (Node n : newBranch) {
+            if (!connect(n)) {
+                LOGGER.log(Level.WARNING, "Block {0} failed to connect, keeping the previous chain", n.block.getHash());
+                markInvalid(n, newTip);
+                disconnectTo(fork);
+                for (int i = oldBranch.size() - 1; i >= 0; i--) connect(oldBranch.get(i));
+                return;
+            }
+        }
+
+        if (oldTip != null && fork != oldTip) {
+            LOGGER.log(Level.INFO, "Reorganized {0} blocks at height {1}", new Object[] {oldBranch.size(), fork == null ? -1 : fork.height});
+        }
+    }
+
+    private static Node findFork(Node a, Node b) {
+        while (a != null && b != null && a != b) {
+            if (a.height >= b.height) a = a.parent;
+            else b = b.parent;
+        }
+        return (a == null || b == null) ? null : a;
+    }
+
+    /**
+     * @return The nodes after the fork up to the tip, in connection order.
+     */
+    private static List<Node> branch(Node fork, Node tip) {
+        List<Node> branch = new ArrayList<>();
+        for (Node n = tip; n != fork; n = n.parent) branch.add(n);
+        Collections.reverse(branch);
+        return branch;
+    }
+
+    /**
+     * Disconnects blocks from the tip until the fork is the tip.
+     * @return The disconnected nodes, from the old tip down.
+     */
+    private List<Node> disconnectTo(Node fork) {
+        List<Node> disconnected = new ArrayList<>();
+        while (this.tip != fork) {
+            disconnected.add(this.tip);
+            disconnect(this.tip);
+        }
+        return disconnected;
+    }
+
+    /**
+     * Stages every UTXO change of the block in a batch and applies it only if the whole block is valid,
+     * so a failing transaction leaves the UTXO set untouched.
+     */
+    private boolean connect(Node node) {
+        UTXOBatch batch;
+        if (blockProcessor != null && node.parent != null) {
+            BlockProcessor.Result result = blockProcessor.process(utxos, node.block.getTransactions());
+            if (!result.isValid()) {
+                LOGGER.log(Level.WARNING, "Transaction {0} of block {1} is invalid", new Object[] {result.failedIndex(), node.block.getHash()});
+                return false;
+            }
+            batch = result.batch();
+        } else if ((batch = stage(node.block)) == null) {
+            return false;
+        }
+
+        node.undo = batch.commit();
+        this.activeChain.add(node.block);
+        this.tip = node;
+        for (ChainListener listener : listeners) listener.blockConnected(node.block, node.height, node.undo);
+
+        int pruneHeight = this.activeChain.size() - 1 - retention.keepRecent();
+        if (pruneHeight >= 0) prune(pruneHeight);
+        return true;
+    }
+
+    /**
+     * Stages the block's changes, checking only that every spent output exists and no created output is already unspent.
+     * @return The staged changes, or null if an output is missing or already unspent.
+     */
+    private UTXOBatch stage(Block block) {
+        UTXOBatch batch = new UTXOBatch(utxos);
+        for (Transaction t : block.getTransactions()) {
+            if (t.inputs != null) {
+                for (TransactionInput i : t.inputs) {
+                    if (batch.spend(i.getTransactionOutputId()) == null) return null;
+                }
+            }
+            for (TransactionOutput o : t.outputs) {
+                if (!batch.add(o)) return null;
+            }
+        }
+        return batch;
+    }
+
+    /**
+     * Moves the body of the active chain's block at the given height to the policy's store, or drops it if there
+     * is no store, and drops its undo data either way. The tree swaps in its own header-only copy of the block,
+     * so a block object shared with other trees or callers keeps its transactions.
+     */
+    private void prune(int height) {
+        Node node = nodes.get(activeChain.get(height).getHash());
+        if (node.pruned) return;
+
+        BlockStore store = retention.store();
+        if (store != null) {
+            if (!store.contains(node.block.getHash())) store.put(node.block.getHash(), node.block.getTransactions());
+            node.block = new Block(node.block, null, store);
+        } else {
+            node.block = new Block(node.block, null, PRUNED);
+        }
+        node.undo = null;
+        node.pruned = true;
+        activeChain.set(height, node.block);
+    }
+
+    /**
+     * Reverts the block using only its undo journal, so its body isn't needed.
+     */
+    private void disconnect(Node node) {
+        UTXOBatch.undo(utxos, node.undo);
+        node.undo = null;
+        this.activeChain.remove(this.activeChain.size() - 1);
+        this.tip = node.parent;
+        for (ChainListener listener : listeners) listener.blockDisconnected(node.block, node.height);
+    }
+
+    private static void markInvalid(Node from, Node to) {
+        for (Node n = to; n != from.parent; n = n.parent) n.invalid = true;
+    }
+}
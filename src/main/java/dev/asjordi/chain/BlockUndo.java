@@ -0,0 +1,38 @@
+package dev.asjordi.chain;
+
+import dev.asjordi.model.OutPoint;
+import dev.asjordi.model.TransactionOutput;
+import java.util.List;
+
+/**
+ * The BlockUndo class is the journal of what connecting a block changed in the UTXO set,
+ * so the block can later be disconnected without its body and without replaying the chain.
+ * It records only the net change: outputs that existed before the block and were spent by it,
+ * and outputs the block created that were still unspent at its end. Outputs created and spent
+ * inside the same block never reached the UTXO set and aren't recorded.
+ * @author Jordi <ejordi.ayala@gmail.com>
+ */
+public class BlockUndo {
+
+    private final List<TransactionOutput> spentOutputs;
+    private final List<OutPoint> createdOutputs;
+
+    BlockUndo(List<TransactionOutput> spentOutputs, List<OutPoint> createdOutputs) {
+        this.spentOutputs = List.copyOf(spentOutputs);
+        this.createdOutputs = List.copyOf(createdOutputs);
+    }
+
+    /**
+     * @return The outputs spent by the block that existed before it, in the order they were spent.
+     */
+    public List<TransactionOutput> getSpentOutputs() {
+        return spentOutputs;
+    }
+
+    /**
+     * @return The ids of the outputs the block added to the UTXO set.
+     */
+    public List<OutPoint> getCreatedOutputs() {
+        return createdOutputs;
+    }
+}
@@ -0,0 +1,36 @@
+package dev.asjordi.chain;
+
+import dev.asjordi.model.Block;
+
+/**
+ * The ChainListener interface is notified as blocks join and leave the active chain of a {@link BlockTree},
+ * so secondary indexes can follow the chain incrementally instead of rescanning it.
+ * Calls arrive in chain order: a block is always connected on top of the previous one, and only the tip is disconnected.
+ * @author Jordi <ejordi.ayala@gmail.com>
+ */
+public interface ChainListener {
+
+    /**
+     * Called after a block is connected to the tip of the active chain.
+     * @param block The block.
+     * @param height The height of the block, 0 being genesis.
+     * @param undo The undo journal of the block, holding the outputs it spent that existed before it.
+     */
+    void blockConnected(Block block, int height, BlockUndo undo);
+
+    /**
+     * Called after the tip of the active chain is disconnected.
+     * @param block The block.
+     * @param height The height the block had.
+     */
+    void blockDisconnected(Block block, int height);
+
+    /**
+     * Tells the tree where this listener left off, so a listener that persists its state is only replayed
+     * the blocks it hasn't seen when it is registered again.
+     * @return The hash of the last block the listener has seen connected, or null to be replayed the whole chain.
+     */
+    default String getLastBlockHash() {
+        return null;
+    }
+}
@@ -0,0 +1,84 @@
+package dev.asjordi.chain;
+
+import java.math.BigInteger;
+
+/**
+ * The Difficulty class converts proof of work targets to and from their compact 32 bit form, the same
+ * "nBits" encoding Bitcoin uses: one exponent byte followed by a three byte mantissa.
+ * A block hash, read as a 256 bit number, meets a target when it is less than or equal to it.
+ * This class cannot be instantiated and all its methods are static.
+ * @author Jordi <ejordi.ayala@gmail.com>
+ */
+public class Difficulty {
+
+    private static final BigInteger TWO_256 = BigInteger.ONE.shiftLeft(256);
+
+    /**
+     * Private constructor to prevent instantiation of the class.
+     * @throws IllegalStateException
+     */
+    private Difficulty() {
+        throw new IllegalStateException("Utility class");
+    }
+
+    /**
+     * Expands a compact target.
+     * @param bits The compact target.
+     * @return The full target.
+     * @throws IllegalArgumentException if the compact target is negative.
+     */
+    public static BigInteger decodeCompact(int bits) {
+        if ((bits & 0x00800000) != 0) throw new IllegalArgumentException("Negative compact target: " + Integer.toHexString(bits));
+        int size = bits >>> 24;
+        long mantissa = bits & 0x007fffffL;
+        if (size <= 3) return BigInteger.valueOf(mantissa >> (8 * (3 - size)));
+        return BigInteger.valueOf(mantissa).shiftLeft(8 * (size - 3));
+    }
+
+    /**
+     * Encodes a target in compact form. Precision beyond the three byte mantissa is truncated,
+     * so the encoded target is never larger than the given one.
+     * @param target The full target.
+     * @return The compact target.
+     */
+    public static int encodeCompact(BigInteger target) {
+        int size = (target.bitLength() + 7) / 8;
+        long mantissa = (size <= 3)
+                ? target.longValue() << (8 * (3 - size))
+                : target.shiftRight(8 * (size - 3)).longValue();
+        // The top mantissa bit is a sign bit, move one byte into the exponent instead
+        if ((mantissa & 0x00800000L) != 0) {
+            mantissa >>= 8;
+            size++;
+        }
+        return (int) (mantissa | ((long) size << 24));
+    }
+
+    /**
+     * Returns the compact target that matches the old difficulty scale, where the difficulty was
+     * the number of leading zero hex digits a hash needs. For example a difficulty of 3 gives 0x1f0fffff.
+     * @param hexDigits The number of leading zero hex digits.
+     * @return The compact target.
+     */
+    public static int bitsForLeadingZeros(int hexDigits) {
+        return encodeCompact(BigInteger.ONE.shiftLeft(256 - 4 * hexDigits).subtract(BigInteger.ONE));
+    }
+
+    /**
+     * @param hash The block hash as a hex String.
+     * @param bits The compact target.
+     * @return True if the hash is less than or equal to the target.
+     */
+    public static boolean meetsTarget(String hash, int bits) {
+        return new BigInteger(hash, 16).compareTo(decodeCompact(bits)) <= 0;
+    }
+
+    /**
+     * Computes the expected number of hashes needed to mine a block at the given target: 2^256 / (target + 1).
+     * @param bits The compact target.
+     * @return The work of a block mined at that target.
+     */
+    public static BigInteger work(int bits) {
+        return TWO_256.divide(decodeCompact(bits).add(BigInteger.ONE));
+    }
+}
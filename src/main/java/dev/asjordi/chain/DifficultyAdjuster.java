@@ -0,0 +1,152 @@
+package dev.asjordi.chain;
+
+import dev.asjordi.model.BlockHeader;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The DifficultyAdjuster class computes the target each block must meet, retargeting on every block
+ * from the timestamps of a sliding window of previous blocks.
+ * The next target is the average target of the window scaled by how long the window actually took
+ * compared to how long it should have taken, so block times stay near the configured interval as hash power changes.
+ * Since the target follows the timestamps, it also bounds them: a block can't be older than the median of the
+ * blocks before it, nor further in the future than the allowed drift, so a miner can't warp time to ease the target.
+ * @author Jordi <ejordi.ayala@gmail.com>
+ */
+public class DifficultyAdjuster {
+
+    /**
+     * Limit of how much one retarget can change the target, up or down.
+     */
+    public static final int MAX_ADJUSTMENT = 4;
+    /**
+     * Number of previous blocks whose median timestamp is the earliest timestamp the next block may have.
+     */
+    public static final int MEDIAN_TIME_SPAN = 11;
+
+    private final int initialBits;
+    private final long targetBlockMillis;
+    private final int window;
+    private final long maxFutureDriftMillis;
+    private final BigInteger powLimit;
+
+    /**
+     * Constructor for a DifficultyAdjuster allowing blocks to be one window of block intervals ahead of the local clock.
+     * @param initialBits The compact target used until the chain is longer than the window. It is also the easiest target allowed.
+     * @param targetBlockMillis The desired time between blocks, in milliseconds.
+     * @param window The number of block intervals averaged for each retarget.
+     */
+    public DifficultyAdjuster(int initialBits, long targetBlockMillis, int window) {
+        this(initialBits, targetBlockMillis, window, targetBlockMillis * window);
+    }
+
+    /**
+     * Constructor for the DifficultyAdjuster class.
+     * @param initialBits The compact target used until the chain is longer than the window. It is also the easiest target allowed.
+     * @param targetBlockMillis The desired time between blocks, in milliseconds.
+     * @param window The number of block intervals averaged for each retarget.
+     * @param maxFutureDriftMillis How far ahead of the local clock a block timestamp may be, in milliseconds.
+     */
+    public DifficultyAdjuster(int initialBits, long targetBlockMillis, int window, long maxFutureDriftMillis) {
+        if (targetBlockMillis <= 0 || window <= 0) throw new IllegalArgumentException("Block interval and window must be positive");
+        if (maxFutureDriftMillis < 0) throw new IllegalArgumentException("The future drift can't be negative");
+        this.initialBits = initialBits;
+        this.targetBlockMillis = targetBlockMillis;
+        this.window = window;
+        this.maxFutureDriftMillis = maxFutureDriftMillis;
+        this.powLimit = Difficulty.decodeCompact(initialBits);
+    }
+
+    /**
+     * Computes the compact target of the block that follows the given chain.
+     * @param chain The blocks or headers of the chain the next block extends, from genesis (or at least the last window + 1 blocks) to tip.
+     * @return The compact target of the next block.
+     */
+    public int nextBits(List<? extends BlockHeader> chain) {
+        int size = chain.size();
+        if (size <= this.window) return this.initialBits;
+
+        BlockHeader first = chain.get(size - 1 - this.window);
+        BlockHeader last = chain.get(size - 1);
+
+        BigInteger sum = BigInteger.ZERO;
+        for (int i = size - this.window; i < size; i++) {
+            sum = sum.add(Difficulty.decodeCompact(chain.get(i).getBits()));
+        }
+        BigInteger average = sum.divide(BigInteger.valueOf(this.window));
+
+        long expected = this.targetBlockMillis * this.window;
+        long actual = last.getTimeStamp() - first.getTimeStamp();
+        actual = Math.max(expected / MAX_ADJUSTMENT, Math.min(expected * MAX_ADJUSTMENT, actual));
+
+        BigInteger next = average.multiply(BigInteger.valueOf(actual)).divide(BigInteger.valueOf(expected));
+        if (next.compareTo(this.powLimit) > 0) next = this.powLimit;
+        if (next.signum() == 0) next = BigInteger.ONE;
+        return Difficulty.encodeCompact(next);
+    }
+
+    /**
+     * Computes the median timestamp of the last {@link #MEDIAN_TIME_SPAN} blocks of the given chain.
+     * @param chain The blocks or headers of a chain, from oldest to newest. It must not be empty.
+     * @return The median timestamp, in milliseconds.
+     */
+    public static long medianTimePast(List<? extends BlockHeader> chain) {
+        int count = Math.min(MEDIAN_TIME_SPAN, chain.size());
+        long[] times = new long[count];
+        for (int i = 0; i < count; i++) {
+            times[i] = chain.get(chain.size() - count + i).getTimeStamp();
+        }
+        Arrays.sort(times);
+        return times[count / 2];
+    }
+
+    /**
+     * Checks the timestamp of the block that follows the given chain. It must be no earlier than the median time past
+     * of the chain (equal is allowed, as several blocks can be mined within one millisecond) and no later than the
+     * allowed drift past the local clock.
+     * @param chain The blocks or headers of the chain the block extends, at least the last {@link #MEDIAN_TIME_SPAN}, or empty for a genesis block.
+     * @param timeStamp The timestamp of the block, in milliseconds.
+     * @param now The time of the local clock, in milliseconds.
+     * @return True if the timestamp is allowed.
+     */
+    public boolean isTimestampAllowed(List<? extends BlockHeader> chain, long timeStamp, long now) {
+        if (timeStamp > now + this.maxFutureDriftMillis) return false;
+        return chain.isEmpty() || timeStamp >= medianTimePast(chain);
+    }
+
+    /**
+     * @return The number of previous blocks needed both to retarget and to check the timestamp of the next block.
+     */
+    public int getHistory() {
+        return Math.max(this.window + 1, MEDIAN_TIME_SPAN);
+    }
+
+    /**
+     * @return The number of block intervals averaged for each retarget.
+     */
+    public int getWindow() {
+        return window;
+    }
+
+    /**
+     * @return The compact target used until the chain is longer than the window.
+     */
+    public int getInitialBits() {
+        return initialBits;
+    }
+
+    /**
+     * @return The desired time between blocks, in milliseconds.
+     */
+    public long getTargetBlockMillis() {
+        return targetBlockMillis;
+    }
+
+    /**
+     * @return How far ahead of the local clock a block timestamp may be, in milliseconds.
+     */
+    public long getMaxFutureDriftMillis() {
+        return maxFutureDriftMillis;
+    }
+}
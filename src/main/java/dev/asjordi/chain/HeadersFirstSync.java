@@ -0,0 +1,158 @@
+package dev.asjordi.chain;
+
+import dev.asjordi.model.Block;
+import dev.asjordi.model.BlockBodySource;
+import dev.asjordi.model.BlockHeader;
+import dev.asjordi.model.Transaction;
+import dev.asjordi.util.StringUtil;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The HeadersFirstSync class brings a block tree up to date with a peer in two phases.
+ * First the peer's headers are downloaded and the whole header chain is checked for linkage, expected target
+ * and proof of work, which is cheap because headers are small. Only then are the block bodies fetched,
+ * several at a time, checked against the merkle root of their header and connected in order.
+ * Bodies are evicted once connected and loaded back from the peer if a reorg needs them again.
+ * @author Jordi <ejordi.ayala@gmail.com>
+ */
+public class HeadersFirstSync {
+
+    /**
+     * Default number of block bodies being downloaded at the same time.
+     */
+    public static final int DEFAULT_WINDOW = 16;
+
+    private final BlockTree tree;
+    private final int window;
+    private static final Logger LOGGER = Logger.getLogger(Logger.GLOBAL_LOGGER_NAME);
+
+    /**
+     * A peer that serves headers and block bodies.
+     */
+    public interface Peer extends BlockBodySource {
+
+        /**
+         * Returns the headers of the peer's active chain after the given block.
+         * If the block isn't on the peer's active chain, the headers after the genesis block are returned.
+         * @param hash The hash of the last block the caller has.
+         * @return The headers, in chain order.
+         */
+        List<BlockHeader> getHeadersAfter(String hash);
+    }
+
+    /**
+     * Constructor for the HeadersFirstSync class.
+     * @param tree The block tree to bring up to date. It must already hold the genesis block.
+     * @param window The maximum number of block bodies downloaded at the same time.
+     */
+    public HeadersFirstSync(BlockTree tree, int window) {
+        if (window <= 0) throw new IllegalArgumentException("Download window must be positive");
+        this.tree = tree;
+        this.window = window;
+    }
+
+    /**
+     * Constructor for the HeadersFirstSync class with the default download window.
+     * @param tree The block tree to bring up to date. It must already hold the genesis block.
+     */
+    public HeadersFirstSync(BlockTree tree) {
+        this(tree, DEFAULT_WINDOW);
+    }
+
+    /**
+     * Downloads and connects the blocks the peer has after this tree's tip.
+     * Nothing is downloaded beyond the headers if the header chain is invalid, and the sync stops at the first
+     * block whose body doesn't match its header or fails to connect.
+     * @param peer The peer to sync from.
+     * @return The number of blocks added to the tree.
+     */
+    public int sync(Peer peer) {
+        List<BlockHeader> headers = peer.getHeadersAfter(tree.getTip().getHash());
+        if (headers.isEmpty()) return 0;
+
+        if (!validateHeaders(headers)) return 0;
+        LOGGER.log(Level.INFO, "Validated {0} headers, downloading bodies", headers.size());
+
+        int added = 0;
+        Deque<CompletableFuture<List<Transaction>>> inFlight = new ArrayDeque<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            int next = 0;
+            for (BlockHeader header : headers) {
+                while (next < headers.size() && inFlight.size() < window) {
+                    String hash = headers.get(next++).getHash();
+                    inFlight.add(CompletableFuture.supplyAsync(() -> peer.fetchBody(hash), executor));
+                }
+
+                List<Transaction> body;
+                try {
+                    body = inFlight.poll().join();
+                } catch (CompletionException e) {
+                    LOGGER.log(Level.WARNING, "Couldn''t download the body of block {0}", header.getHash());
+                    break;
+                }
+
+                if (!header.getMerkleRoot().equals(StringUtil.getMerkleRoot(body))) {
+                    LOGGER.log(Level.WARNING, "Body of block {0} doesn''t match its header", header.getHash());
+                    break;
+                }
+
+                Block block = new Block(header, body, peer);
+                if (!tree.addBlock(block)) break;
+                block.evictBody();
+                added++;
+            }
+            inFlight.forEach(f -> f.cancel(true));
+        }
+        return added;
+    }
+
+    /**
+     * Checks that the headers form a chain from a block of the tree, each one mined at its expected target.
+     * @param headers The headers, in chain order.
+     * @return True if the header chain is valid.
+     */
+    public boolean validateHeaders(List<BlockHeader> headers) {
+        String previousHash = headers.get(0).getPreviousHash();
+        List<BlockHeader> chain = new ArrayList<>(tree.getAncestors(previousHash));
+        if (chain.isEmpty()) {
+            LOGGER.log(Level.WARNING, "Headers don''t start from a known block");
+            return false;
+        }
+        DifficultyAdjuster adjuster = tree.getDifficultyAdjuster();
+
+        for (BlockHeader header : headers) {
+            if (!header.getPreviousHash().equals(previousHash)) {
+                LOGGER.log(Level.WARNING, "Header {0} doesn''t link to the previous header", header.getHash());
+                return false;
+            }
+            if (!header.getHash().equals(header.calculateHash())) {
+                LOGGER.log(Level.WARNING, "Header hash doesn''t match its contents");
+                return false;
+            }
+            if (!adjuster.isTimestampAllowed(chain, header.getTimeStamp(), System.currentTimeMillis())) {
+                LOGGER.log(Level.WARNING, "Header {0} timestamp is out of bounds", header.getHash());
+                return false;
+            }
+            if (header.getBits() != adjuster.nextBits(chain)) {
+                LOGGER.log(Level.WARNING, "Header {0} target is not the expected target", header.getHash());
+                return false;
+            }
+            if (!Difficulty.meetsTarget(header.getHash(), header.getBits())) {
+                LOGGER.log(Level.WARNING, "Header {0} hasn''t been mined", header.getHash());
+                return false;
+            }
+            chain.add(header);
+            previousHash = header.getHash();
+        }
+        return true;
+    }
+}
@@ -0,0 +1,50 @@
+package dev.asjordi.chain;
+
+import dev.asjordi.store.BlockStore;
+
+/**
+ * The RetentionPolicy record says how many block bodies of the active chain a {@link BlockTree} keeps in memory.
+ * Headers and the UTXO set are always kept. Bodies of blocks deeper than {@code keepRecent} below the tip are
+ * either written to a block store and read back from it on demand, or dropped for good.
+ * Either way their undo journals are dropped, so memory stays flat, and a tree that prunes can't reorganize
+ * deeper than {@code keepRecent} blocks.
+ * @param keepRecent The number of blocks below the tip whose bodies stay in memory.
+ * @param store Where pruned bodies are written, or null to drop them.
+ * @author Jordi <ejordi.ayala@gmail.com>
+ */
+public record RetentionPolicy(int keepRecent, BlockStore store) {
+
+    /**
+     * Keeps every body in memory.
+     */
+    public static final RetentionPolicy KEEP_ALL = new RetentionPolicy(Integer.MAX_VALUE, null);
+
+    public RetentionPolicy {
+        if (keepRecent < 0) throw new IllegalArgumentException("The number of recent blocks can't be negative");
+    }
+
+    /**
+     * @param keepRecent The number of blocks below the tip whose bodies stay in memory.
+     * @param store Where older bodies are written.
+     * @return A policy that moves older bodies to disk.
+     */
+    public static RetentionPolicy pruneToDisk(int keepRecent, BlockStore store) {
+        if (store == null) throw new IllegalArgumentException("Pruning to disk needs a block store");
+        return new RetentionPolicy(keepRecent, store);
+    }
+
+    /**
+     * @param keepRecent The number of blocks below the tip whose bodies stay in memory.
+     * @return A policy that drops older bodies.
+     */
+    public static RetentionPolicy drop(int keepRecent) {
+        return new RetentionPolicy(keepRecent, null);
+    }
+
+    /**
+     * @return True if bodies deeper than {@code keepRecent} leave memory, along with their undo journals.
+     */
+    public boolean prunes() {
+        return keepRecent != Integer.MAX_VALUE;
+    }
+}
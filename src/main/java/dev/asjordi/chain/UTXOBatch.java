@@ -0,0 +1,97 @@
+package dev.asjordi.chain;
+
+import dev.asjordi.model.OutPoint;
+import dev.asjordi.model.TransactionOutput;
+import dev.asjordi.model.UTXOSet;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The UTXOBatch class stages the UTXO changes of a whole block on top of a UTXO set without touching it.
+ * Reads see the staged changes, so a transaction can spend an output created earlier in the same block.
+ * Nothing reaches the underlying set until {@link #commit()}, which applies the net change in one pass
+ * and returns its undo journal; dropping the batch instead leaves the set exactly as it was.
+ * This class is not thread safe.
+ * @author Jordi <ejordi.ayala@gmail.com>
+ */
+public class UTXOBatch {
+
+    private final UTXOSet base;
+    private final Map<OutPoint, TransactionOutput> created = new LinkedHashMap<>();
+    private final List<TransactionOutput> spent = new ArrayList<>();
+    private final Set<OutPoint> spentIds = new HashSet<>();
+
+    /**
+     * Constructor for the UTXOBatch class.
+     * @param base The UTXO set the changes are staged on.
+     */
+    public UTXOBatch(UTXOSet base) {
+        this.base = base;
+    }
+
+    /**
+     * @param id The outpoint of the output.
+     * @return The output if it is unspent as seen through the batch, null otherwise.
+     */
+    public TransactionOutput get(OutPoint id) {
+        TransactionOutput output = created.get(id);
+        if (output != null) return output;
+        return spentIds.contains(id) ? null : base.get(id);
+    }
+
+    /**
+     * Stages the spending of an output.
+     * @param id The outpoint of the output.
+     * @return The spent output, or null if it is missing or already spent, in which case nothing is staged.
+     */
+    public TransactionOutput spend(OutPoint id) {
+        TransactionOutput output = created.remove(id);
+        if (output != null) return output;
+        if (spentIds.contains(id)) return null;
+
+        output = base.get(id);
+        if (output == null) return null;
+        spentIds.add(id);
+        spent.add(output);
+        return output;
+    }
+
+    /**
+     * Stages a new unspent output.
+     * An output whose id is already unspent is refused, as committing it would overwrite the existing output
+     * and undoing the block would then lose it.
+     * @param output The output.
+     * @return True if the output was staged, false if an unspent output with the same id exists.
+     */
+    public boolean add(TransactionOutput output) {
+        if (get(output.getId()) != null) return false;
+        created.put(output.getId(), output);
+        return true;
+    }
+
+    /**
+     * Applies the staged changes to the underlying set.
+     * @return The undo journal of the applied changes.
+     */
+    public BlockUndo commit() {
+        for (TransactionOutput o : spent) base.remove(o.getId());
+        for (TransactionOutput o : created.values()) base.put(o.getId(), o);
+        return new BlockUndo(spent, new ArrayList<>(created.keySet()));
+    }
+
+    /**
+     * Reverts the changes of a committed batch.
+     * @param base The UTXO set the batch was committed to.
+     * @param undo The undo journal returned by {@link #commit()}.
+     */
+    public static void undo(UTXOSet base, BlockUndo undo) {
+        List<OutPoint> createdIds = undo.getCreatedOutputs();
+        for (int i = createdIds.size() - 1; i >= 0; i--) base.remove(createdIds.get(i));
+        List<TransactionOutput> spentOutputs = undo.getSpentOutputs();
+        for (int i = spentOutputs.size() - 1; i >= 0; i--) base.put(spentOutputs.get(i).getId(), spentOutputs.get(i));
+    }
+}
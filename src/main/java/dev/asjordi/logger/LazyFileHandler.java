@@ -0,0 +1,56 @@
+package dev.asjordi.logger;
+
+import java.io.IOException;
+import java.util.logging.ErrorManager;
+import java.util.logging.FileHandler;
+import java.util.logging.Formatter;
+import java.util.logging.Handler;
+import java.util.logging.LogRecord;
+
+/**
+ * A file handler that opens its file when the first record reaches it, so setting up logging costs nothing
+ * at startup and a run that logs nothing at the handler's level never touches the disk.
+ * A file that can't be opened is reported to the error manager, like other handler failures.
+ * @author Jordi <ejordi.ayala@gmail.com>
+ */
+public class LazyFileHandler extends Handler {
+
+    private final String pattern;
+    private FileHandler file;
+
+    /**
+     * Constructor for the LazyFileHandler class.
+     * @param pattern The name of the log file, as given to {@link FileHandler#FileHandler(String)}.
+     * @param formatter The formatter of the records.
+     */
+    public LazyFileHandler(String pattern, Formatter formatter) {
+        this.pattern = pattern;
+        setFormatter(formatter);
+    }
+
+    @Override
+    public synchronized void publish(LogRecord rec) {
+        if (!isLoggable(rec)) return;
+        if (file == null) {
+            try {
+                file = new FileHandler(pattern);
+            } catch (IOException e) {
+                reportError("Can't open " + pattern, e, ErrorManager.OPEN_FAILURE);
+                return;
+            }
+            file.setFormatter(getFormatter());
+            file.setLevel(getLevel());
+        }
+        file.publish(rec);
+    }
+
+    @Override
+    public synchronized void flush() {
+        if (file != null) file.flush();
+    }
+
+    @Override
+    public synchronized void close() {
+        if (file != null) file.close();
+    }
+}
@@ -1,24 +1,22 @@
 package dev.asjordi.logger;
 
-import java.io.IOException;
 import java.util.logging.*;
-import java.util.logging.FileHandler;
 import java.util.logging.Formatter;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.logging.SimpleFormatter;
 
 public class MyLogger {
-    private static FileHandler fileTxt;
+    private static Handler fileTxt;
     private static SimpleFormatter formatterTxt;
-    private static FileHandler fileHTML;
+    private static Handler fileHTML;
     private static Formatter formatterHTML;
 
     private MyLogger() {
         throw new IllegalStateException("Utility class");
     }
 
-    public static void setup() throws IOException {
+    public static void setup() {
 
         Logger logger = Logger.getLogger(Logger.GLOBAL_LOGGER_NAME);
 
@@ -29,17 +27,16 @@ public class MyLogger {
         }
 
         logger.setLevel(Level.INFO);
-        fileTxt = new FileHandler("Logging.txt");
-        fileHTML = new FileHandler("Logging.html");
 
+        // The files are only opened when the first record is logged
         // Create a TXT formatter
         formatterTxt = new SimpleFormatter();
-        fileTxt.setFormatter(formatterTxt);
+        fileTxt = new LazyFileHandler("Logging.txt", formatterTxt);
         logger.addHandler(fileTxt);
 
         // Create an HTML formatter
         formatterHTML = new HtmlFormatter();
-        fileHTML.setFormatter(formatterHTML);
+        fileHTML = new LazyFileHandler("Logging.html", formatterHTML);
         logger.addHandler(fileHTML);
     }
 }
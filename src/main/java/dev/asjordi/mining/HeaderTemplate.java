@@ -0,0 +1,211 @@
+package dev.asjordi.mining;
+
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * The HeaderTemplate class prepares the SHA-256 message of a block header for mining, where only the nonce changes.
+ * The hashed text is a fixed prefix, the nonce in decimal and a fixed suffix. The full 64 byte blocks of the prefix
+ * are compressed once into a midstate, and for each nonce length the remaining message, with its padding, is laid out
+ * as words once, so hashing a nonce only writes its digits into a copy of those words and compresses what follows
+ * the midstate. The result is the same as {@link dev.asjordi.util.StringUtil#applySha256(String)} of the whole text.
+ * Instances are immutable and can be shared by mining threads.
+ * @author Jordi <ejordi.ayala@gmail.com>
+ */
+public final class HeaderTemplate {
+
+    /**
+     * The most digits of a non-negative int.
+     */
+    static final int MAX_DIGITS = 10;
+
+    private final String prefix;
+    private final String suffix;
+    private final int[] midstate;
+    private final Layout[] layouts = new Layout[MAX_DIGITS + 1];
+
+    /**
+     * The message words after the midstate for nonces of one length.
+     */
+    static final class Layout {
+
+        final int digits;
+        final int nonceOffset;
+        final int[] words;
+
+        private Layout(int digits, int nonceOffset, int[] words) {
+            this.digits = digits;
+            this.nonceOffset = nonceOffset;
+            this.words = words;
+        }
+
+        /**
+         * @return The index of the first word holding a digit of the nonce.
+         */
+        int firstNonceWord() {
+            return nonceOffset >>> 2;
+        }
+
+        /**
+         * @return The index of the last word holding a digit of the nonce.
+         */
+        int lastNonceWord() {
+            return (nonceOffset + digits - 1) >>> 2;
+        }
+
+        /**
+         * Writes the digits of a nonce of this length into a copy of the words.
+         * @param words The words to change, a copy of {@link #words}.
+         * @param nonce The nonce, with exactly {@link #digits} digits.
+         */
+        void patch(int[] words, int nonce) {
+            for (int position = nonceOffset + digits - 1; position >= nonceOffset; position--) {
+                int digit = '0' + nonce % 10;
+                nonce /= 10;
+                int shift = 24 - 8 * (position & 3);
+                int index = position >>> 2;
+                words[index] = (words[index] & ~(0xff << shift)) | (digit << shift);
+            }
+        }
+    }
+
+    /**
+     * Constructor for the HeaderTemplate class.
+     * @param prefix The text hashed before the nonce.
+     * @param suffix The text hashed after the nonce.
+     */
+    public HeaderTemplate(String prefix, String suffix) {
+        this.prefix = prefix;
+        this.suffix = suffix;
+        byte[] head = prefix.getBytes(StandardCharsets.UTF_8);
+        byte[] tail = suffix.getBytes(StandardCharsets.UTF_8);
+
+        int full = head.length / 64 * 64;
+        midstate = Sha256.IV.clone();
+        int[] w = new int[64];
+        int[] headWords = Sha256.toWords(Arrays.copyOf(head, full));
+        for (int offset = 0; offset < headWords.length; offset += 16) Sha256.compress(midstate, headWords, offset, w);
+
+        for (int digits = 1; digits <= MAX_DIGITS; digits++) {
+            int rest = head.length - full + digits + tail.length;
+            int blocks = (rest + 8) / 64 + 1;
+            byte[] message = new byte[blocks * 64];
+            System.arraycopy(head, full, message, 0, head.length - full);
+            Arrays.fill(message, head.length - full, head.length - full + digits, (byte) '0');
+            System.arraycopy(tail, 0, message, head.length - full + digits, tail.length);
+            message[rest] = (byte) 0x80;
+            long bits = 8L * (head.length + digits + tail.length);
+            for (int i = 0; i < 8; i++) message[message.length - 1 - i] = (byte) (bits >>> (8 * i));
+            layouts[digits] = new Layout(digits, head.length - full, Sha256.toWords(message));
+        }
+    }
+
+    /**
+     * @return The text hashed before the nonce.
+     */
+    public String getPrefix() {
+        return prefix;
+    }
+
+    /**
+     * @return The text hashed after the nonce.
+     */
+    public String getSuffix() {
+        return suffix;
+    }
+
+    /**
+     * Hashes the header with the given nonce, without the fast paths of the kernels.
+     * @param nonce A non-negative nonce.
+     * @return The hash in lowercase hex, equal to applySha256(prefix + nonce + suffix).
+     */
+    public String hash(int nonce) {
+        int[] state = new int[8];
+        hash(nonce, state);
+        StringBuilder hex = new StringBuilder(64);
+        for (int word : state) {
+            String part = Integer.toHexString(word);
+            hex.append("0".repeat(8 - part.length())).append(part);
+        }
+        return hex.toString();
+    }
+
+    /**
+     * Checks a nonce against a target exactly.
+     * @param nonce A non-negative nonce.
+     * @param target The target as eight big-endian words, see {@link #targetWords(BigInteger)}.
+     * @return True if the hash of the header is less than or equal to the target.
+     */
+    boolean meets(int nonce, int[] target) {
+        int[] state = new int[8];
+        hash(nonce, state);
+        return meets(state, target);
+    }
+
+    Layout layout(int digits) {
+        return layouts[digits];
+    }
+
+    int[] midstate() {
+        return midstate;
+    }
+
+    /**
+     * Compresses the words of a layout, with a nonce already patched in, into a copy of the midstate.
+     */
+    void compress(int[] words, int[] state, int[] w) {
+        System.arraycopy(midstate, 0, state, 0, 8);
+        for (int offset = 0; offset < words.length; offset += 16) Sha256.compress(state, words, offset, w);
+    }
+
+    private void hash(int nonce, int[] state) {
+        if (nonce < 0) throw new IllegalArgumentException("Negative nonce " + nonce);
+        Layout layout = layouts[digits(nonce)];
+        int[] words = layout.words.clone();
+        layout.patch(words, nonce);
+        compress(words, state, new int[64]);
+    }
+
+    /**
+     * @return The number of decimal digits of a non-negative int.
+     */
+    static int digits(int nonce) {
+        int digits = 1;
+        for (long limit = 10; limit <= nonce; limit *= 10) digits++;
+        return digits;
+    }
+
+    /**
+     * @return The largest non-negative int with the given number of digits.
+     */
+    static int largestWithDigits(int digits) {
+        return digits >= MAX_DIGITS ? Integer.MAX_VALUE : (int) Math.pow(10, digits) - 1;
+    }
+
+    /**
+     * Converts a target to eight big-endian words. Targets of 2^256 or more are met by every hash.
+     * @param target The non-negative target.
+     * @return The words.
+     */
+    static int[] targetWords(BigInteger target) {
+        if (target.signum() < 0) throw new IllegalArgumentException("Negative target");
+        int[] words = new int[8];
+        if (target.bitLength() > 256) {
+            Arrays.fill(words, -1);
+            return words;
+        }
+        for (int i = 0; i < 8; i++) words[7 - i] = target.shiftRight(32 * i).intValue();
+        return words;
+    }
+
+    /**
+     * @return True if the hash state, read as a 256 bit big-endian number, is less than or equal to the target.
+     */
+    static boolean meets(int[] state, int[] target) {
+        for (int i = 0; i < 8; i++) {
+            if (state[i] != target[i]) return Integer.compareUnsigned(state[i], target[i]) < 0;
+        }
+        return true;
+    }
+}
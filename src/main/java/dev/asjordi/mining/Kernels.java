@@ -0,0 +1,33 @@
+package dev.asjordi.mining;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Holds the kernels, choosing the best one on first use.
+ * The vector kernel is loaded by name so that this class and the scalar kernel still work when the
+ * jdk.incubator.vector module isn't added to the JVM.
+ * @author Jordi <ejordi.ayala@gmail.com>
+ */
+final class Kernels {
+
+    private static final Logger LOGGER = Logger.getLogger(Logger.GLOBAL_LOGGER_NAME);
+
+    static final MiningKernel SCALAR = new ScalarKernel();
+    static final MiningKernel BEST = load();
+
+    private Kernels() {
+    }
+
+    private static MiningKernel load() {
+        if ("scalar".equals(System.getProperty(MiningKernel.KERNEL_PROPERTY))) return SCALAR;
+        try {
+            MiningKernel kernel = (MiningKernel) Class.forName("dev.asjordi.mining.VectorKernel").getDeclaredConstructor().newInstance();
+            LOGGER.log(Level.INFO, "Mining with the {0} kernel", kernel.getName());
+            return kernel;
+        } catch (ReflectiveOperationException | LinkageError | RuntimeException e) {
+            LOGGER.log(Level.INFO, "Vector mining kernel unavailable ({0}), mining with the scalar kernel", e.toString());
+            return SCALAR;
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package dev.asjordi.mining;
+
+import dev.asjordi.model.Block;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The Miner class owns a fixed set of mining threads and runs one {@link MiningJob} on them at a time.
+ * Starting a job cancels the previous one, so no thread keeps hashing a block that is no longer wanted.
+ * The threads are daemon threads and stay alive between jobs until the miner is closed.
+ * @author Jordi <ejordi.ayala@gmail.com>
+ */
+public class Miner implements AutoCloseable {
+
+    private final int threads;
+    private final MiningKernel kernel;
+    private final ExecutorService pool;
+    private MiningJob current;
+
+    /**
+     * Constructor for the Miner class.
+     * @param threads The number of mining threads.
+     * @param kernel The kernel the threads search with.
+     */
+    public Miner(int threads, MiningKernel kernel) {
+        if (threads < 1) throw new IllegalArgumentException("A miner needs at least one thread");
+        this.threads = threads;
+        this.kernel = kernel;
+        AtomicInteger count = new AtomicInteger();
+        this.pool = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "miner-" + count.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Constructor for a Miner with one thread per processor and the fastest kernel available.
+     */
+    public Miner() {
+        this(Runtime.getRuntime().availableProcessors(), MiningKernel.best());
+    }
+
+    /**
+     * Starts mining a block on every thread, cancelling the job that was running.
+     * @param candidate The block to mine, with its transactions. Its target and merkle root are set.
+     * @param bits The compact target of the proof of work.
+     * @return The job, whose result completes with the mined block.
+     */
+    public synchronized MiningJob mine(Block candidate, int bits) {
+        if (current != null) current.cancel();
+        current = new MiningJob(kernel, candidate, bits);
+        for (int i = 0; i < threads; i++) pool.execute(current::work);
+        return current;
+    }
+
+    /**
+     * @return The number of mining threads.
+     */
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * Cancels the running job and stops the threads.
+     */
+    @Override
+    public synchronized void close() {
+        if (current != null) current.cancel();
+        pool.shutdown();
+    }
+}
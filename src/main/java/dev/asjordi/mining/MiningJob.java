@@ -0,0 +1,168 @@
+package dev.asjordi.mining;
+
+import dev.asjordi.chain.Difficulty;
+import dev.asjordi.model.Block;
+import dev.asjordi.model.BlockHeader;
+import java.math.BigInteger;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The MiningJob class is the search for one block, shared by the worker threads of a {@link Miner}.
+ * Workers take chunks of nonces from the current work in turn, so a new template given to {@link #update(Block, int)},
+ * after a new transaction or a new tip, is picked up by every worker at its next chunk without restarting threads,
+ * and a {@link #cancel()} stops them within one chunk. When every nonce of a header has been tried, the timestamp is
+ * moved one millisecond forward and the search starts again from nonce 0; the timestamp is the only free field of
+ * the header besides the nonce, so it plays the role of an extra nonce.
+ * A solution is only reported for the work that is current when it is found, never for a replaced template.
+ * @author Jordi <ejordi.ayala@gmail.com>
+ */
+public final class MiningJob {
+
+    /**
+     * Number of nonces a worker searches before it looks at the job again.
+     */
+    static final int CHUNK = 1 << 14;
+
+    private static final Logger LOGGER = Logger.getLogger(Logger.GLOBAL_LOGGER_NAME);
+
+    private final MiningKernel kernel;
+    private final CompletableFuture<Block> result = new CompletableFuture<>();
+    private final LongAdder hashes = new LongAdder();
+    private final long startTime = System.nanoTime();
+    private volatile Work work;
+    private volatile boolean finished;
+    private int timestampRolls;
+    private int templateUpdates;
+
+    /**
+     * What the workers are mining: a header and the block it belongs to, with the next nonce to hand out.
+     */
+    private record Work(Block candidate, BlockHeader header, HeaderTemplate template, BigInteger target, AtomicLong next) {
+
+        Work(Block candidate, BlockHeader header, long firstNonce) {
+            this(candidate, header, header.getTemplate(), Difficulty.decodeCompact(header.getBits()), new AtomicLong(firstNonce));
+        }
+    }
+
+    /**
+     * A snapshot of the progress of a job.
+     * @param hashes The number of nonces tried so far.
+     * @param timestampRolls The number of times the nonce space ran out and the timestamp was moved forward.
+     * @param templateUpdates The number of times the template was replaced.
+     * @param elapsedNanos The time since the job started, in nanoseconds.
+     */
+    public record Progress(long hashes, int timestampRolls, int templateUpdates, long elapsedNanos) {
+
+        /**
+         * @return The average hash rate of the job, in hashes per second.
+         */
+        public double hashesPerSecond() {
+            return elapsedNanos == 0 ? 0 : hashes * 1e9 / elapsedNanos;
+        }
+    }
+
+    /**
+     * Constructor for the MiningJob class. The search starts from the candidate's nonce.
+     * @param kernel The kernel the workers search with.
+     * @param candidate The block to mine. Its target and merkle root are set.
+     * @param bits The compact target of the proof of work.
+     */
+    MiningJob(MiningKernel kernel, Block candidate, int bits) {
+        this.kernel = kernel;
+        candidate.setTarget(bits);
+        this.work = new Work(candidate, candidate.getHeader(), Math.max(0, candidate.getNonce()));
+    }
+
+    /**
+     * Replaces the block being mined, for example with new transactions or on top of a new tip.
+     * Workers move to it at their next chunk. Does nothing once the job is done.
+     * @param candidate The new block to mine. Its target and merkle root are set.
+     * @param bits The compact target of the proof of work.
+     */
+    public void update(Block candidate, int bits) {
+        candidate.setTarget(bits);
+        Work next = new Work(candidate, candidate.getHeader(), Math.max(0, candidate.getNonce()));
+        synchronized (this) {
+            if (finished) return;
+            work = next;
+            templateUpdates++;
+        }
+    }
+
+    /**
+     * Stops the search. Workers return to their pool within one chunk and the result is cancelled.
+     * @return True if the job was still running.
+     */
+    public boolean cancel() {
+        synchronized (this) {
+            if (finished) return false;
+            finished = true;
+        }
+        return result.cancel(false);
+    }
+
+    /**
+     * @return True if a block was found or the job was cancelled.
+     */
+    public boolean isDone() {
+        return finished;
+    }
+
+    /**
+     * @return The mined block once found; cancelled if the job is.
+     */
+    public CompletableFuture<Block> getResult() {
+        return result;
+    }
+
+    /**
+     * @return The progress of the job so far.
+     */
+    public synchronized Progress getProgress() {
+        return new Progress(hashes.sum(), timestampRolls, templateUpdates, System.nanoTime() - startTime);
+    }
+
+    /**
+     * The loop of one worker: searches chunks of the current work until the job is done.
+     */
+    void work() {
+        while (!finished) {
+            Work current = work;
+            long first = current.next().getAndAdd(CHUNK);
+            if (first > Integer.MAX_VALUE) {
+                roll(current);
+                continue;
+            }
+            int last = (int) Math.min(Integer.MAX_VALUE, first + CHUNK - 1);
+            int found = kernel.search(current.template(), current.target(), (int) first, last);
+            hashes.add((found < 0 ? last : found) - first + 1);
+            if (found >= 0) solved(current, found);
+        }
+    }
+
+    /**
+     * Moves the timestamp of exhausted work forward, unless another worker or an update already replaced it.
+     */
+    private synchronized void roll(Work exhausted) {
+        if (finished || work != exhausted) return;
+        BlockHeader h = exhausted.header();
+        work = new Work(exhausted.candidate(), new BlockHeader(h.getPreviousHash(), h.getMerkleRoot(), h.getTimeStamp() + 1, 0, h.getBits()), 0);
+        timestampRolls++;
+        LOGGER.log(Level.FINE, "Nonce space exhausted, timestamp rolled to {0}", h.getTimeStamp() + 1);
+    }
+
+    private void solved(Work solvedWork, int nonce) {
+        synchronized (this) {
+            if (finished || work != solvedWork) return;
+            finished = true;
+        }
+        BlockHeader h = solvedWork.header();
+        BlockHeader header = new BlockHeader(h.getPreviousHash(), h.getMerkleRoot(), h.getTimeStamp(), nonce, h.getBits());
+        // Completed outside the lock, since callbacks may update other jobs or take locks of their own
+        result.complete(new Block(header, solvedWork.candidate().getTransactions(), null));
+    }
+}
@@ -0,0 +1,48 @@
+package dev.asjordi.mining;
+
+import java.math.BigInteger;
+
+/**
+ * The MiningKernel interface searches a range of nonces for one whose header hash meets a target.
+ * Every kernel returns the same nonce as trying the range in order with
+ * {@link dev.asjordi.util.StringUtil#applySha256(String)}; they differ only in how fast they get there.
+ * @author Jordi <ejordi.ayala@gmail.com>
+ */
+public interface MiningKernel {
+
+    /**
+     * System property that selects the kernel: "scalar" to force the portable kernel.
+     */
+    String KERNEL_PROPERTY = "dev.asjordi.mining.kernel";
+
+    /**
+     * Finds the lowest nonce of a range whose header hash is less than or equal to the target.
+     * @param template The header being mined.
+     * @param target The target.
+     * @param firstNonce The first nonce tried, non-negative.
+     * @param lastNonce The last nonce tried, inclusive.
+     * @return The nonce, or -1 if none of the range meets the target.
+     */
+    int search(HeaderTemplate template, BigInteger target, int firstNonce, int lastNonce);
+
+    /**
+     * @return A short name of the kernel, for logs.
+     */
+    String getName();
+
+    /**
+     * Returns the fastest kernel this JVM can run: the vector kernel when the jdk.incubator.vector module is
+     * available and the CPU has at least four int lanes, the scalar kernel otherwise.
+     * @return The kernel, shared and thread safe.
+     */
+    static MiningKernel best() {
+        return Kernels.BEST;
+    }
+
+    /**
+     * @return The portable kernel, one nonce at a time.
+     */
+    static MiningKernel scalar() {
+        return Kernels.SCALAR;
+    }
+}
@@ -0,0 +1,38 @@
+package dev.asjordi.mining;
+
+import java.math.BigInteger;
+
+/**
+ * The ScalarKernel class hashes one nonce at a time from the template's midstate, comparing the hash words
+ * with the target directly instead of going through hex strings and BigInteger.
+ * @author Jordi <ejordi.ayala@gmail.com>
+ */
+final class ScalarKernel implements MiningKernel {
+
+    @Override
+    public int search(HeaderTemplate template, BigInteger target, int firstNonce, int lastNonce) {
+        if (firstNonce < 0) throw new IllegalArgumentException("Negative nonce " + firstNonce);
+        int[] targetWords = HeaderTemplate.targetWords(target);
+        int[] state = new int[8];
+        int[] w = new int[64];
+
+        long nonce = firstNonce;
+        while (nonce <= lastNonce) {
+            int digits = HeaderTemplate.digits((int) nonce);
+            long end = Math.min(lastNonce, HeaderTemplate.largestWithDigits(digits));
+            HeaderTemplate.Layout layout = template.layout(digits);
+            int[] words = layout.words.clone();
+            for (; nonce <= end; nonce++) {
+                layout.patch(words, (int) nonce);
+                template.compress(words, state, w);
+                if (HeaderTemplate.meets(state, targetWords)) return (int) nonce;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public String getName() {
+        return "scalar";
+    }
+}
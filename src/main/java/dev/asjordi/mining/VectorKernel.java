@@ -0,0 +1,130 @@
+package dev.asjordi.mining;
+
+import java.math.BigInteger;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * The VectorKernel class hashes as many nonces at once as the CPU has int lanes, one nonce per lane,
+ * with the Vector API. Only the words holding nonce digits differ between lanes; the others are broadcast.
+ * A batch never mixes nonces of different lengths, since they have different layouts.
+ * The first hash word of each lane is compared with the first target word, and only the lanes that pass
+ * are checked exactly, lowest nonce first, so the result is the one of the sequential search.
+ * It needs the jdk.incubator.vector module and is only loaded through {@link MiningKernel#best()}.
+ * @author Jordi <ejordi.ayala@gmail.com>
+ */
+final class VectorKernel implements MiningKernel {
+
+    private static final VectorSpecies<Integer> SPECIES = IntVector.SPECIES_PREFERRED;
+
+    /**
+     * Constructor for the VectorKernel class.
+     * @throws UnsupportedOperationException if the vectors have fewer than four lanes, where the scalar kernel is as fast.
+     */
+    VectorKernel() {
+        if (SPECIES.length() < 4) throw new UnsupportedOperationException("Only " + SPECIES.length() + " int lanes");
+    }
+
+    @Override
+    public int search(HeaderTemplate template, BigInteger target, int firstNonce, int lastNonce) {
+        if (firstNonce < 0) throw new IllegalArgumentException("Negative nonce " + firstNonce);
+        int lanes = SPECIES.length();
+        int[] targetWords = HeaderTemplate.targetWords(target);
+        IntVector top = IntVector.broadcast(SPECIES, targetWords[0]);
+        IntVector[] midstate = new IntVector[8];
+        for (int i = 0; i < 8; i++) midstate[i] = IntVector.broadcast(SPECIES, template.midstate()[i]);
+        IntVector[] state = new IntVector[8];
+        IntVector[] w = new IntVector[64];
+
+        long nonce = firstNonce;
+        while (nonce <= lastNonce) {
+            int digits = HeaderTemplate.digits((int) nonce);
+            long end = Math.min(lastNonce, HeaderTemplate.largestWithDigits(digits));
+            HeaderTemplate.Layout layout = template.layout(digits);
+            int firstWord = layout.firstNonceWord();
+            int lastWord = layout.lastNonceWord();
+            IntVector[] constant = new IntVector[layout.words.length];
+            for (int i = 0; i < constant.length; i++) constant[i] = IntVector.broadcast(SPECIES, layout.words[i]);
+            int[] words = layout.words.clone();
+            int[][] patched = new int[lastWord - firstWord + 1][lanes];
+
+            while (nonce <= end) {
+                int count = (int) Math.min(lanes, end - nonce + 1);
+                // Lanes past the end of the range repeat the last nonce and are never reported
+                for (int lane = 0; lane < lanes; lane++) {
+                    layout.patch(words, (int) nonce + Math.min(lane, count - 1));
+                    for (int k = 0; k < patched.length; k++) patched[k][lane] = words[firstWord + k];
+                }
+
+                System.arraycopy(midstate, 0, state, 0, 8);
+                for (int offset = 0; offset < constant.length; offset += 16) {
+                    for (int j = 0; j < 16; j++) {
+                        int index = offset + j;
+                        w[j] = (index >= firstWord && index <= lastWord)
+                                ? IntVector.fromArray(SPECIES, patched[index - firstWord], 0)
+                                : constant[index];
+                    }
+                    compress(state, w);
+                }
+
+                VectorMask<Integer> candidates = state[0].compare(VectorOperators.UNSIGNED_LE, top);
+                if (candidates.anyTrue()) {
+                    for (int lane = 0; lane < count; lane++) {
+                        if (candidates.laneIsSet(lane) && template.meets((int) nonce + lane, targetWords)) return (int) nonce + lane;
+                    }
+                }
+                nonce += count;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public String getName() {
+        return "vector x" + SPECIES.length();
+    }
+
+    private static void compress(IntVector[] state, IntVector[] w) {
+        for (int t = 16; t < 64; t++) {
+            IntVector x = w[t - 15];
+            IntVector y = w[t - 2];
+            IntVector s0 = x.lanewise(VectorOperators.ROR, 7).lanewise(VectorOperators.XOR, x.lanewise(VectorOperators.ROR, 18))
+                    .lanewise(VectorOperators.XOR, x.lanewise(VectorOperators.LSHR, 3));
+            IntVector s1 = y.lanewise(VectorOperators.ROR, 17).lanewise(VectorOperators.XOR, y.lanewise(VectorOperators.ROR, 19))
+                    .lanewise(VectorOperators.XOR, y.lanewise(VectorOperators.LSHR, 10));
+            w[t] = w[t - 16].add(s0).add(w[t - 7]).add(s1);
+        }
+
+        IntVector a = state[0], b = state[1], c = state[2], d = state[3];
+        IntVector e = state[4], f = state[5], g = state[6], h = state[7];
+        for (int t = 0; t < 64; t++) {
+            IntVector s1 = e.lanewise(VectorOperators.ROR, 6).lanewise(VectorOperators.XOR, e.lanewise(VectorOperators.ROR, 11))
+                    .lanewise(VectorOperators.XOR, e.lanewise(VectorOperators.ROR, 25));
+            IntVector ch = e.and(f).lanewise(VectorOperators.XOR, e.not().and(g));
+            IntVector temp1 = h.add(s1).add(ch).add(Sha256.K[t]).add(w[t]);
+            IntVector s0 = a.lanewise(VectorOperators.ROR, 2).lanewise(VectorOperators.XOR, a.lanewise(VectorOperators.ROR, 13))
+                    .lanewise(VectorOperators.XOR, a.lanewise(VectorOperators.ROR, 22));
+            IntVector maj = a.and(b).lanewise(VectorOperators.XOR, a.and(c)).lanewise(VectorOperators.XOR, b.and(c));
+            IntVector temp2 = s0.add(maj);
+            h = g;
+            g = f;
+            f = e;
+            e = d.add(temp1);
+            d = c;
+            c = b;
+            b = a;
+            a = temp1.add(temp2);
+        }
+
+        state[0] = state[0].add(a);
+        state[1] = state[1].add(b);
+        state[2] = state[2].add(c);
+        state[3] = state[3].add(d);
+        state[4] = state[4].add(e);
+        state[5] = state[5].add(f);
+        state[6] = state[6].add(g);
+        state[7] = state[7].add(h);
+    }
+}
@@ -0,0 +1,81 @@
+package dev.asjordi.model;
+
+import dev.asjordi.util.StringUtil;
+import java.nio.ByteBuffer;
+import java.security.PublicKey;
+import java.util.HexFormat;
+
+/**
+ * The Address record is the compact identifier of a coin owner: the first 20 bytes of the SHA-256 of the
+ * owner's encoded public key, packed into two longs and an int.
+ * Outputs store the address instead of the key, so checking who owns an output is a comparison of three
+ * primitive fields, and the full key is only needed to verify signatures.
+ * @author Jordi <ejordi.ayala@gmail.com>
+ */
+public record Address(long a, long b, int c) {
+
+    /**
+     * Number of bytes in the encoded form of an Address.
+     */
+    public static final int BYTES = 20;
+
+    /**
+     * Computes the address of a public key.
+     * @param publicKey The owner's public key.
+     * @return The address of the key.
+     */
+    public static Address of(PublicKey publicKey) {
+        ByteBuffer hash = ByteBuffer.wrap(StringUtil.sha256(StringUtil.getStringFromKey(publicKey)));
+        return new Address(hash.getLong(), hash.getLong(), hash.getInt());
+    }
+
+    /**
+     * Creates an Address from its 20 raw bytes.
+     * @param bytes The address bytes.
+     * @return The Address.
+     */
+    public static Address fromBytes(byte[] bytes) {
+        if (bytes.length != BYTES) throw new IllegalArgumentException("Address must be 20 bytes, got " + bytes.length);
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        return new Address(buffer.getLong(), buffer.getLong(), buffer.getInt());
+    }
+
+    /**
+     * Creates an Address from its 40 character hex representation.
+     * @param hex The hex String, as returned by {@link #toHex()}.
+     * @return The Address.
+     */
+    public static Address fromHex(String hex) {
+        return fromBytes(HexFormat.of().parseHex(hex));
+    }
+
+    /**
+     * @return The 20 raw bytes of the address.
+     */
+    public byte[] toBytes() {
+        return ByteBuffer.allocate(BYTES).putLong(a).putLong(b).putInt(c).array();
+    }
+
+    /**
+     * @return The 40 character hex representation of the address.
+     */
+    public String toHex() {
+        return HexFormat.of().formatHex(toBytes());
+    }
+
+    /**
+     * @return A well mixed 32 bit hash, taken from the hash bits themselves.
+     */
+    @Override
+    public int hashCode() {
+        return (int) (a ^ (a >>> 32));
+    }
+
+    /**
+     * @return The hex representation of the Address.
+     */
+    @Override
+    public String toString() {
+        return toHex();
+    }
+}
@@ -1,6 +1,10 @@
 package dev.asjordi.model;
 
+import dev.asjordi.chain.Difficulty;
+import dev.asjordi.mining.MiningKernel;
+import dev.asjordi.node.NodeContext;
 import dev.asjordi.util.StringUtil;
+import java.math.BigInteger;
 import java.util.Date;
 import java.util.LinkedList;
 import java.util.List;
@@ -10,17 +14,18 @@ import java.util.logging.Logger;
 
 /**
  * The Block class represents a block in a blockchain network.
- * Each Block has a hash, previous hash, merkle root, list of transactions, timestamp, and nonce value.
+ * Each Block has a hash, previous hash, merkle root, list of transactions, timestamp, compact target and nonce value.
+ * A block built from a header and a {@link BlockBodySource} can drop its transactions with {@link #evictBody()}
+ * when they are no longer needed; after that they are fetched from the source on each use and not kept by the block,
+ * so a source that caches, such as a block store, decides how many bodies stay in memory.
+ * Every fetched body is checked against the merkle root of the header.
+ * This class is not thread safe.
  * @author Jordi <ejordi.ayala@gmail.com>
  */
-public class Block {
+public class Block extends BlockHeader {
     
-    private String hash;
-    private String previousHash;
-    private String merkleRoot;
     private List<Transaction> transactions;
-    private Long timeStamp;
-    private Integer nonce;
+    private BlockBodySource bodySource;
     private static final Logger LOGGER = Logger.getLogger(Logger.GLOBAL_LOGGER_NAME);
 
     /**
@@ -34,33 +39,57 @@ public class Block {
         this.transactions = new LinkedList<>();
         this.hash = this.calculateHash();
     }
-    
+
     /**
-     * Calculates the hash of the block based on its contents.
-     * @return The hash of the block.
+     * Constructor for a block whose header was received or stored on its own.
+     * @param header The block header.
+     * @param transactions The block's transactions, or null to fetch them from the source on each use.
+     * @param bodySource Where the transactions can be loaded from after they are evicted, or null to keep them in memory.
      */
-    public String calculateHash() {
-        String calculatedHash = StringUtil.applySha256(
-            this.previousHash +
-            Long.toString(this.timeStamp) +
-            Integer.toString(this.nonce) +
-            this.merkleRoot
-        );
-        
-        return calculatedHash;
+    public Block(BlockHeader header, List<Transaction> transactions, BlockBodySource bodySource) {
+        if (transactions == null && bodySource == null) throw new IllegalArgumentException("A block needs its transactions or a source for them");
+        this.previousHash = header.getPreviousHash();
+        this.merkleRoot = header.getMerkleRoot();
+        this.timeStamp = header.getTimeStamp();
+        this.nonce = header.getNonce();
+        this.bits = header.getBits();
+        this.hash = header.getHash();
+        this.transactions = (transactions == null) ? null : new LinkedList<>(transactions);
+        this.bodySource = bodySource;
     }
     
+    /**
+     * Sets the compact target and commits to the current transactions through the merkle root,
+     * so the header is ready to be mined.
+     * @param bits The compact target of the proof of work, see {@link Difficulty}.
+     */
+    public void setTarget(int bits) {
+        this.bits = bits;
+        this.merkleRoot = StringUtil.getMerkleRoot(this.transactions);
+        this.hash = this.calculateHash();
+    }
+
     /**
      * Increases nonce value until hash target is reached.
-     * @param difficulty The difficulty of the proof of work.
+     * @param difficulty The difficulty of the proof of work, as a number of leading zero hex digits.
      */
     public void mineBlock(int difficulty) {
-        this.merkleRoot = StringUtil.getMerkleRoot(this.transactions);
-        String target = StringUtil.getDifficultyString(difficulty);
-        while (!this.hash.subSequence(0, difficulty).equals(target)) {
-            this.nonce++;
-            this.hash = this.calculateHash();
-        }
+        mineBlockToTarget(Difficulty.bitsForLeadingZeros(difficulty));
+    }
+
+    /**
+     * Increases nonce value until the hash is less than or equal to the target.
+     * The search runs on the fastest {@link MiningKernel} available and finds the same nonce as hashing each in turn.
+     * @param bits The compact target of the proof of work, see {@link Difficulty}.
+     * @throws IllegalStateException if no nonce from the current one up meets the target.
+     */
+    public void mineBlockToTarget(int bits) {
+        setTarget(bits);
+        BigInteger target = Difficulty.decodeCompact(bits);
+        int found = MiningKernel.best().search(getTemplate(), target, this.nonce, Integer.MAX_VALUE);
+        if (found < 0) throw new IllegalStateException("Nonce space exhausted, the block needs a new timestamp");
+        this.nonce = found;
+        this.hash = this.calculateHash();
         LOGGER.log(Level.INFO, "Block mined! -> {0}", this.hash);
     }
     
@@ -68,12 +97,13 @@ public class Block {
      * Adds transactions to this block.
      * Processes the transaction and checks if it's valid, unless the block is the genesis block.
      * @param t The Transaction to be added to the block.
+     * @param context The ledger whose working UTXO set the transaction is processed against.
      * @return True if the transaction has been successfully added to the block; false otherwise.
      */
-    public boolean addTransaction(Transaction t) throws IllegalStateException {
+    public boolean addTransaction(Transaction t, NodeContext context) throws IllegalStateException {
         if (t == null) return false;
         if (!"0".equals(this.previousHash)) {
-            if (t.processTransaction() != true) {
+            if (t.processTransaction(context) != true) {
                 LOGGER.log(Level.WARNING, "Transaction failed to process. Discarded.");
                 return false;
             }
@@ -84,24 +114,62 @@ public class Block {
     }
 
     /**
-     * @return The hash of the block.
+     * Adds a transaction that has already been processed, without processing it again.
+     * Used when a block is assembled from transactions that were validated elsewhere.
+     * @param t The processed Transaction to be added to the block.
      */
-    public String getHash() {
-        return hash;
+    public void includeTransaction(Transaction t) {
+        this.transactions.add(t);
     }
 
     /**
-     * @return The hash of the previous block in the blockchain.
+     * @return A copy of this block's header, without the transactions.
      */
-    public String getPreviousHash() {
-        return previousHash;
+    public BlockHeader getHeader() {
+        return new BlockHeader(previousHash, merkleRoot, timeStamp, nonce, bits);
     }
 
     /**
+     * Returns the transactions of the block, fetching them from the body source if they were evicted.
+     * A fetched body is checked against the merkle root, so a source can't swap the transactions of a block
+     * that was already validated.
      * @return List of transactions in the block.
+     * @throws IllegalStateException if the body source returns transactions that don't match the header.
      */
     public List<Transaction> getTransactions() {
-        return transactions;
+        if (transactions != null) return transactions;
+        List<Transaction> body = bodySource.fetchBody(hash);
+        if (!StringUtil.getMerkleRoot(body).equals(merkleRoot)) {
+            throw new IllegalStateException("Body fetched for block " + hash + " doesn't match its merkle root");
+        }
+        return body;
+    }
+
+    /**
+     * @return True if the transactions are held in memory.
+     */
+    public boolean isBodyLoaded() {
+        return transactions != null;
+    }
+
+    /**
+     * Drops the transactions from memory. They are fetched from the body source when needed.
+     * Blocks without a body source always keep their transactions.
+     * @return True if the transactions were dropped.
+     */
+    public boolean evictBody() {
+        if (bodySource == null) return false;
+        transactions = null;
+        return true;
+    }
+
+    /**
+     * Sets where the transactions can be loaded from after they are evicted.
+     * @param bodySource The body source, or null to keep the transactions in memory.
+     */
+    public void setBodySource(BlockBodySource bodySource) {
+        if (bodySource == null && transactions == null) throw new IllegalStateException("The body is evicted, it needs its source");
+        this.bodySource = bodySource;
     }
 
     /**
@@ -111,6 +179,7 @@ public class Block {
     public String toString() {
         return "Block{" + "hash=" + hash + ", previousHash=" + previousHash +
                 ", merkleRoot=" + merkleRoot + ", timeStamp=" + timeStamp +
+                ", bits=" + Integer.toHexString(bits) +
                 ", nonce=" + nonce + '}';
     }
 
@@ -123,9 +192,9 @@ public class Block {
         hash = 79 * hash + Objects.hashCode(this.hash);
         hash = 79 * hash + Objects.hashCode(this.previousHash);
         hash = 79 * hash + Objects.hashCode(this.merkleRoot);
-        hash = 79 * hash + Objects.hashCode(this.transactions);
         hash = 79 * hash + Objects.hashCode(this.timeStamp);
         hash = 79 * hash + Objects.hashCode(this.nonce);
+        hash = 79 * hash + this.bits;
         return hash;
     }
 
@@ -144,8 +213,9 @@ public class Block {
         if (!Objects.equals(this.hash, other.hash)) return false;
         if (!Objects.equals(this.previousHash, other.previousHash)) return false;
         if (!Objects.equals(this.merkleRoot, other.merkleRoot)) return false;
-        if (!Objects.equals(this.transactions, other.transactions)) return false;
         if (!Objects.equals(this.timeStamp, other.timeStamp)) return false;
-        return Objects.equals(this.nonce, other.nonce);
+        if (this.bits != other.bits) return false;
+        if (!Objects.equals(this.nonce, other.nonce)) return false;
+        return Objects.equals(this.getTransactions(), other.getTransactions());
     }
 }
@@ -0,0 +1,20 @@
+package dev.asjordi.model;
+
+import java.util.List;
+
+/**
+ * The BlockBodySource interface loads the transactions of a block whose body isn't held in memory,
+ * for example from a peer or from disk.
+ * @author Jordi <ejordi.ayala@gmail.com>
+ */
+@FunctionalInterface
+public interface BlockBodySource {
+
+    /**
+     * Loads the transactions of a block.
+     * @param hash The hash of the block.
+     * @return The block's transactions, in order.
+     * @throws IllegalStateException if the body isn't available.
+     */
+    List<Transaction> fetchBody(String hash);
+}
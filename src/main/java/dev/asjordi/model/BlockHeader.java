@@ -0,0 +1,120 @@
+package dev.asjordi.model;
+
+import dev.asjordi.mining.HeaderTemplate;
+import dev.asjordi.util.StringUtil;
+
+/**
+ * The BlockHeader class holds the part of a block that its hash covers: previous hash, merkle root,
+ * timestamp, nonce and compact target. The transactions are committed to through the merkle root,
+ * so a chain of headers can be checked for proof of work and linkage without any block body.
+ * @author Jordi <ejordi.ayala@gmail.com>
+ */
+public class BlockHeader {
+
+    protected String hash;
+    protected String previousHash;
+    protected String merkleRoot;
+    protected Long timeStamp;
+    protected Integer nonce;
+    protected int bits;
+
+    /**
+     * Constructor for a header received or stored on its own.
+     * @param previousHash The hash of the previous block in the blockchain.
+     * @param merkleRoot The merkle root of the block's transactions.
+     * @param timeStamp The time the block was created, in milliseconds since the epoch.
+     * @param nonce The nonce that solved the proof of work.
+     * @param bits The compact target the block was mined at.
+     */
+    public BlockHeader(String previousHash, String merkleRoot, long timeStamp, int nonce, int bits) {
+        this.previousHash = previousHash;
+        this.merkleRoot = merkleRoot;
+        this.timeStamp = timeStamp;
+        this.nonce = nonce;
+        this.bits = bits;
+        this.hash = this.calculateHash();
+    }
+
+    /**
+     * Constructor for subclasses that fill the fields themselves.
+     */
+    protected BlockHeader() {
+    }
+
+    /**
+     * Calculates the hash of the block based on its contents.
+     * @return The hash of the block.
+     */
+    public String calculateHash() {
+        String calculatedHash = StringUtil.applySha256(
+            this.previousHash +
+            Long.toString(this.timeStamp) +
+            Integer.toString(this.nonce) +
+            Integer.toHexString(this.bits) +
+            this.merkleRoot
+        );
+        
+        return calculatedHash;
+    }
+
+    /**
+     * Prepares the header for mining: the text hashed by {@link #calculateHash()}, split around the nonce.
+     * @return The template of this header with its current previous hash, timestamp, target and merkle root.
+     */
+    public HeaderTemplate getTemplate() {
+        return new HeaderTemplate(this.previousHash + Long.toString(this.timeStamp),
+                Integer.toHexString(this.bits) + this.merkleRoot);
+    }
+
+    /**
+     * @return The hash of the block.
+     */
+    public String getHash() {
+        return hash;
+    }
+
+    /**
+     * @return The hash of the previous block in the blockchain.
+     */
+    public String getPreviousHash() {
+        return previousHash;
+    }
+
+    /**
+     * @return The merkle root of the block's transactions, set when the block is mined.
+     */
+    public String getMerkleRoot() {
+        return merkleRoot;
+    }
+
+    /**
+     * @return The nonce that solved the proof of work.
+     */
+    public Integer getNonce() {
+        return nonce;
+    }
+
+    /**
+     * @return The compact target the block was mined at.
+     */
+    public int getBits() {
+        return bits;
+    }
+
+    /**
+     * @return The time the block was created, in milliseconds since the epoch.
+     */
+    public Long getTimeStamp() {
+        return timeStamp;
+    }
+
+    /**
+     * @return A string representation of the header.
+     */
+    @Override
+    public String toString() {
+        return "BlockHeader{" + "hash=" + hash + ", previousHash=" + previousHash +
+                ", merkleRoot=" + merkleRoot + ", timeStamp=" + timeStamp +
+                ", bits=" + Integer.toHexString(bits) + ", nonce=" + nonce + '}';
+    }
+}
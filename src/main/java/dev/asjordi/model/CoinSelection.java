@@ -0,0 +1,111 @@
+package dev.asjordi.model;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NavigableSet;
+
+/**
+ * The CoinSelection enum holds the built-in coin selection strategies.
+ * @author Jordi <ejordi.ayala@gmail.com>
+ */
+public enum CoinSelection implements CoinSelector {
+
+    /**
+     * Spends the largest outputs first, which keeps the number of inputs per transaction low.
+     */
+    LARGEST_FIRST {
+        @Override
+        public List<TransactionOutput> select(NavigableSet<TransactionOutput> available, long target) {
+            List<TransactionOutput> selected = new ArrayList<>();
+            long total = 0;
+            for (TransactionOutput o : available.descendingSet()) {
+                if (total >= target) break;
+                selected.add(o);
+                total = Math.addExact(total, o.getValue());
+            }
+            return total >= target ? selected : null;
+        }
+    },
+
+    /**
+     * Searches for a set of outputs that adds up to the target exactly, so no change output is created.
+     * Falls back to {@link #LARGEST_FIRST} when there is no exact match within the search budget.
+     */
+    BRANCH_AND_BOUND {
+        @Override
+        public List<TransactionOutput> select(NavigableSet<TransactionOutput> available, long target) {
+            List<TransactionOutput> candidates = new ArrayList<>(available.descendingSet());
+            long[] remaining = new long[candidates.size() + 1];
+            for (int i = candidates.size() - 1; i >= 0; i--) {
+                remaining[i] = Math.addExact(remaining[i + 1], candidates.get(i).getValue());
+            }
+            if (remaining[0] < target) return null;
+
+            List<TransactionOutput> selected = search(candidates, remaining, target);
+            return selected != null ? selected : LARGEST_FIRST.select(available, target);
+        }
+
+        /**
+         * Depth first search over including or skipping each candidate, largest first, trying inclusion first.
+         * The path is kept in an array instead of the call stack, so wallets with any number of outputs are searched
+         * without risking a stack overflow.
+         */
+        private List<TransactionOutput> search(List<TransactionOutput> candidates, long[] remaining, long target) {
+            int[] included = new int[candidates.size()];
+            int depth = 0;
+            int index = 0;
+            long needed = target;
+            int budget = MAX_TRIES;
+
+            while (needed != 0) {
+                if (index < candidates.size() && remaining[index] >= needed) {
+                    if (--budget < 0) return null;
+                    long value = candidates.get(index).getValue();
+                    if (value <= needed) {
+                        included[depth++] = index;
+                        needed -= value;
+                    }
+                    index++;
+                    continue;
+                }
+                // Dead end: take back the last included output and try skipping it instead
+                if (depth == 0) return null;
+                int last = included[--depth];
+                needed += candidates.get(last).getValue();
+                index = last + 1;
+            }
+
+            List<TransactionOutput> selected = new ArrayList<>(depth);
+            for (int i = 0; i < depth; i++) selected.add(candidates.get(included[i]));
+            return selected;
+        }
+    },
+
+    /**
+     * Spends the smallest outputs first and sweeps in further small outputs, shrinking the wallet's UTXO count.
+     * Useful when fees don't matter and many dust outputs have piled up.
+     */
+    CONSOLIDATION {
+        @Override
+        public List<TransactionOutput> select(NavigableSet<TransactionOutput> available, long target) {
+            List<TransactionOutput> selected = new ArrayList<>();
+            long total = 0;
+            for (TransactionOutput o : available) {
+                boolean covered = total >= target;
+                if (covered && (selected.size() >= MAX_CONSOLIDATION_INPUTS || o.getValue() >= target)) break;
+                selected.add(o);
+                total = Math.addExact(total, o.getValue());
+            }
+            return total >= target ? selected : null;
+        }
+    };
+
+    /**
+     * Number of search steps branch and bound may take before giving up on an exact match.
+     */
+    public static final int MAX_TRIES = 100_000;
+    /**
+     * Number of inputs after which a consolidation stops sweeping in outputs the target doesn't need.
+     */
+    public static final int MAX_CONSOLIDATION_INPUTS = 100;
+}
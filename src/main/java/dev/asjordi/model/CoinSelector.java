@@ -0,0 +1,20 @@
+package dev.asjordi.model;
+
+import java.util.List;
+import java.util.NavigableSet;
+
+/**
+ * The CoinSelector interface chooses which unspent outputs of a wallet fund a transaction.
+ * Implementations receive the wallet's outputs sorted by value, from smallest to largest.
+ * @author Jordi <ejordi.ayala@gmail.com>
+ */
+public interface CoinSelector {
+
+    /**
+     * Selects outputs whose values add up to at least the target.
+     * @param available The wallet's unspent outputs, sorted by ascending value.
+     * @param target The amount to fund, in minimal units.
+     * @return The selected outputs, or null if the available outputs can't cover the target.
+     */
+    List<TransactionOutput> select(NavigableSet<TransactionOutput> available, long target);
+}
@@ -0,0 +1,212 @@
+package dev.asjordi.model;
+
+import java.security.PublicKey;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * The CompactTransaction class is an immutable snapshot of a processed {@link Transaction}, laid out in a few
+ * primitive arrays instead of lists of objects: each input is four longs of its outpoint, and each output eight
+ * longs of its outpoint, owner address and value. Keys are interned, and the outputs' parent id, always the
+ * transaction's own id, isn't repeated. The outputs an input spends aren't kept; they are in the UTXO set or
+ * in the undo journal of the block.
+ * Instances can be shared between threads and cached without copies. {@link #toTransaction()} gives back a
+ * mutable transaction for the code that needs one.
+ * @author Jordi <ejordi.ayala@gmail.com>
+ */
+public final class CompactTransaction {
+
+    private static final int INPUT_LONGS = 4;
+    private static final int OUTPUT_LONGS = 8;
+
+    private final String transactionId;
+    private final PublicKey sender;
+    private final PublicKey[] recipients;
+    private final long[] amounts;
+    private final byte[] signature;
+    /**
+     * The outpoints spent, four longs each, or null if the transaction has no inputs, like a coinbase.
+     */
+    private final long[] inputs;
+    private final long[] outputs;
+
+    private CompactTransaction(String transactionId, PublicKey sender, PublicKey[] recipients, long[] amounts,
+            byte[] signature, long[] inputs, long[] outputs) {
+        this.transactionId = transactionId;
+        this.sender = sender;
+        this.recipients = recipients;
+        this.amounts = amounts;
+        this.signature = signature;
+        this.inputs = inputs;
+        this.outputs = outputs;
+    }
+
+    /**
+     * Takes a snapshot of a processed transaction, interning its keys.
+     * @param t The processed transaction.
+     * @param keys The interner the keys are shared through.
+     * @return The snapshot.
+     * @throws IllegalArgumentException if an output doesn't belong to the transaction.
+     */
+    public static CompactTransaction of(Transaction t, KeyInterner keys) {
+        PublicKey[] recipients = new PublicKey[t.payments.size()];
+        long[] amounts = new long[recipients.length];
+        for (int p = 0; p < recipients.length; p++) {
+            recipients[p] = keys.intern(t.payments.get(p).recipient());
+            amounts[p] = t.payments.get(p).value();
+        }
+
+        long[] inputs = null;
+        if (t.inputs != null) {
+            inputs = new long[t.inputs.size() * INPUT_LONGS];
+            int i = 0;
+            for (TransactionInput input : t.inputs) {
+                OutPoint id = input.getTransactionOutputId();
+                inputs[i++] = id.a();
+                inputs[i++] = id.b();
+                inputs[i++] = id.c();
+                inputs[i++] = id.d();
+            }
+        }
+
+        long[] outputs = new long[t.outputs.size() * OUTPUT_LONGS];
+        int o = 0;
+        for (TransactionOutput output : t.outputs) {
+            if (!Objects.equals(output.getParentTransactionId(), t.transactionId)) {
+                throw new IllegalArgumentException("Output " + output.getId() + " belongs to another transaction");
+            }
+            OutPoint id = output.getId();
+            Address owner = output.getOwner();
+            outputs[o++] = id.a();
+            outputs[o++] = id.b();
+            outputs[o++] = id.c();
+            outputs[o++] = id.d();
+            outputs[o++] = owner.a();
+            outputs[o++] = owner.b();
+            outputs[o++] = owner.c();
+            outputs[o++] = output.getValue();
+        }
+
+        byte[] signature = (t.signature == null) ? null : t.signature.clone();
+        return new CompactTransaction(t.transactionId, keys.intern(t.sender), recipients, amounts, signature, inputs, outputs);
+    }
+
+    /**
+     * Builds a mutable transaction equal to the one this snapshot was taken from, without the outputs its inputs spend.
+     * @return A new transaction, not shared with anyone.
+     */
+    public Transaction toTransaction() {
+        List<TransactionInput> txInputs = null;
+        if (inputs != null) {
+            txInputs = new LinkedList<>();
+            for (int i = 0; i < getInputCount(); i++) txInputs.add(new TransactionInput(getInput(i)));
+        }
+        Transaction t = new Transaction(sender, getPayments(), txInputs);
+        t.transactionId = transactionId;
+        t.signature = (signature == null) ? null : signature.clone();
+        for (int o = 0; o < getOutputCount(); o++) t.outputs.add(getOutput(o));
+        return t;
+    }
+
+    /**
+     * @return The transaction id.
+     */
+    public String getTransactionId() {
+        return transactionId;
+    }
+
+    /**
+     * @return The sender's public key.
+     */
+    public PublicKey getSender() {
+        return sender;
+    }
+
+    /**
+     * @return The recipients and the amount each one receives.
+     */
+    public List<Payment> getPayments() {
+        List<Payment> payments = new ArrayList<>(recipients.length);
+        for (int p = 0; p < recipients.length; p++) payments.add(new Payment(recipients[p], amounts[p]));
+        return List.copyOf(payments);
+    }
+
+    /**
+     * @return A copy of the signature, or null if the transaction isn't signed.
+     */
+    public byte[] getSignature() {
+        return (signature == null) ? null : signature.clone();
+    }
+
+    /**
+     * @return True if the transaction spends outputs; false for a coinbase.
+     */
+    public boolean hasInputs() {
+        return inputs != null;
+    }
+
+    /**
+     * @return The number of outputs spent.
+     */
+    public int getInputCount() {
+        return (inputs == null) ? 0 : inputs.length / INPUT_LONGS;
+    }
+
+    /**
+     * @param index The position of the input.
+     * @return The outpoint the input spends.
+     */
+    public OutPoint getInput(int index) {
+        int i = index * INPUT_LONGS;
+        return new OutPoint(inputs[i], inputs[i + 1], inputs[i + 2], inputs[i + 3]);
+    }
+
+    /**
+     * @return The number of outputs created.
+     */
+    public int getOutputCount() {
+        return outputs.length / OUTPUT_LONGS;
+    }
+
+    /**
+     * @param index The position of the output.
+     * @return The output, as a new object.
+     */
+    public TransactionOutput getOutput(int index) {
+        int o = index * OUTPUT_LONGS;
+        return new TransactionOutput(new OutPoint(outputs[o], outputs[o + 1], outputs[o + 2], outputs[o + 3]),
+                new Address(outputs[o + 4], outputs[o + 5], (int) outputs[o + 6]), outputs[o + 7], transactionId);
+    }
+
+    /**
+     * @param index The position of the output.
+     * @return The value of the output, in minimal units.
+     */
+    public long getOutputValue(int index) {
+        return outputs[index * OUTPUT_LONGS + 7];
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof CompactTransaction that)) return false;
+        return Objects.equals(transactionId, that.transactionId) && Objects.equals(sender, that.sender)
+                && Arrays.equals(recipients, that.recipients) && Arrays.equals(amounts, that.amounts)
+                && Arrays.equals(signature, that.signature) && Arrays.equals(inputs, that.inputs)
+                && Arrays.equals(outputs, that.outputs);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(transactionId, Arrays.hashCode(inputs), Arrays.hashCode(outputs));
+    }
+
+    @Override
+    public String toString() {
+        return "CompactTransaction{" + "transactionId=" + transactionId + ", payments=" + recipients.length +
+                ", inputs=" + getInputCount() + ", outputs=" + getOutputCount() + '}';
+    }
+}
@@ -0,0 +1,231 @@
+package dev.asjordi.model;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * The HeapUTXOSet class is a {@link UTXOSet} kept on the JVM heap, as an open-addressing hash map
+ * from {@link OutPoint} to unspent {@link TransactionOutput}.
+ * Keys are stored inline as four longs per slot in one primitive array, so an entry costs a few words
+ * instead of a String key, its char array and a map node. Collisions use linear probing and removals
+ * shift the following entries back, so no tombstones are left behind.
+ * @author Jordi <ejordi.ayala@gmail.com>
+ */
+public class HeapUTXOSet implements UTXOSet {
+
+    private static final int DEFAULT_CAPACITY = 16;
+    private static final float LOAD_FACTOR = 0.6f;
+
+    private long[] keys;
+    private TransactionOutput[] values;
+    private int size;
+    private int mask;
+    private int threshold;
+
+    /**
+     * Constructor for the HeapUTXOSet class with a small default capacity.
+     */
+    public HeapUTXOSet() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Constructor for the HeapUTXOSet class.
+     * @param expectedSize The number of outputs the set should hold without resizing.
+     */
+    public HeapUTXOSet(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(DEFAULT_CAPACITY, (int) (expectedSize / LOAD_FACTOR)) - 1) << 1;
+        allocate(capacity);
+    }
+
+    /**
+     * @param id The OutPoint of the output.
+     * @return The unspent output, or null if there is none with that id.
+     */
+    @Override
+    public TransactionOutput get(OutPoint id) {
+        int slot = find(id.a(), id.b(), id.c(), id.d());
+        return slot < 0 ? null : this.values[slot];
+    }
+
+    /**
+     * @param id The OutPoint of the output.
+     * @return True if the set holds an unspent output with that id.
+     */
+    @Override
+    public boolean containsKey(OutPoint id) {
+        return find(id.a(), id.b(), id.c(), id.d()) >= 0;
+    }
+
+    /**
+     * Adds an unspent output, replacing any output with the same id.
+     * @param id The OutPoint of the output.
+     * @param output The unspent output.
+     * @return The output previously stored under that id, or null.
+     */
+    @Override
+    public TransactionOutput put(OutPoint id, TransactionOutput output) {
+        if (output == null) throw new IllegalArgumentException("HeapUTXOSet does not store null outputs");
+        int slot = slotFor(id.a());
+        while (this.values[slot] != null) {
+            if (matches(slot, id.a(), id.b(), id.c(), id.d())) {
+                TransactionOutput previous = this.values[slot];
+                this.values[slot] = output;
+                return previous;
+            }
+            slot = (slot + 1) & this.mask;
+        }
+        int k = slot << 2;
+        this.keys[k] = id.a();
+        this.keys[k + 1] = id.b();
+        this.keys[k + 2] = id.c();
+        this.keys[k + 3] = id.d();
+        this.values[slot] = output;
+        if (++this.size > this.threshold) resize(this.values.length << 1);
+        return null;
+    }
+
+    /**
+     * Removes an unspent output.
+     * @param id The OutPoint of the output.
+     * @return The removed output, or null if there was none with that id.
+     */
+    @Override
+    public TransactionOutput remove(OutPoint id) {
+        int slot = find(id.a(), id.b(), id.c(), id.d());
+        if (slot < 0) return null;
+        TransactionOutput removed = this.values[slot];
+        shiftBack(slot);
+        this.size--;
+        return removed;
+    }
+
+    /**
+     * @return The number of unspent outputs in the set.
+     */
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return True if the set holds no outputs.
+     */
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Removes every output from the set.
+     */
+    @Override
+    public void clear() {
+        Arrays.fill(this.keys, 0);
+        Arrays.fill(this.values, null);
+        this.size = 0;
+    }
+
+    /**
+     * @return A copy of this set that can be changed independently.
+     */
+    @Override
+    public HeapUTXOSet copy() {
+        HeapUTXOSet copy = new HeapUTXOSet(DEFAULT_CAPACITY);
+        copy.keys = this.keys.clone();
+        copy.values = this.values.clone();
+        copy.size = this.size;
+        copy.mask = this.mask;
+        copy.threshold = this.threshold;
+        return copy;
+    }
+
+    /**
+     * @return An iterator over the unspent outputs, in no particular order.
+     */
+    @Override
+    public Iterator<TransactionOutput> iterator() {
+        return new Iterator<>() {
+            private int next = advance(0);
+
+            private int advance(int from) {
+                while (from < values.length && values[from] == null) from++;
+                return from;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return next < values.length;
+            }
+
+            @Override
+            public TransactionOutput next() {
+                if (!hasNext()) throw new NoSuchElementException();
+                TransactionOutput output = values[next];
+                next = advance(next + 1);
+                return output;
+            }
+        };
+    }
+
+    private void allocate(int capacity) {
+        this.keys = new long[capacity << 2];
+        this.values = new TransactionOutput[capacity];
+        this.mask = capacity - 1;
+        this.threshold = (int) (capacity * LOAD_FACTOR);
+    }
+
+    private int slotFor(long a) {
+        return (int) (a ^ (a >>> 32)) & this.mask;
+    }
+
+    private boolean matches(int slot, long a, long b, long c, long d) {
+        int k = slot << 2;
+        return this.keys[k] == a && this.keys[k + 1] == b && this.keys[k + 2] == c && this.keys[k + 3] == d;
+    }
+
+    private int find(long a, long b, long c, long d) {
+        int slot = slotFor(a);
+        while (this.values[slot] != null) {
+            if (matches(slot, a, b, c, d)) return slot;
+            slot = (slot + 1) & this.mask;
+        }
+        return -1;
+    }
+
+    /**
+     * Backward shift deletion: moves later entries of the probe run into the freed slot.
+     */
+    private void shiftBack(int free) {
+        int slot = free;
+        while (true) {
+            slot = (slot + 1) & this.mask;
+            if (this.values[slot] == null) break;
+            int home = slotFor(this.keys[slot << 2]);
+            // Move the entry if its home slot is not between the free slot and its current slot
+            boolean movable = (free <= slot) ? (home <= free || home > slot) : (home <= free && home > slot);
+            if (movable) {
+                System.arraycopy(this.keys, slot << 2, this.keys, free << 2, 4);
+                this.values[free] = this.values[slot];
+                free = slot;
+            }
+        }
+        Arrays.fill(this.keys, free << 2, (free << 2) + 4, 0);
+        this.values[free] = null;
+    }
+
+    private void resize(int capacity) {
+        long[] oldKeys = this.keys;
+        TransactionOutput[] oldValues = this.values;
+        allocate(capacity);
+        for (int i = 0; i < oldValues.length; i++) {
+            if (oldValues[i] == null) continue;
+            int k = i << 2;
+            int slot = slotFor(oldKeys[k]);
+            while (this.values[slot] != null) slot = (slot + 1) & this.mask;
+            System.arraycopy(oldKeys, k, this.keys, slot << 2, 4);
+            this.values[slot] = oldValues[i];
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package dev.asjordi.model;
+
+import dev.asjordi.util.StringUtil;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.security.PublicKey;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The KeyInterner class keeps one canonical instance of each distinct public key, like {@link String#intern()}.
+ * Keys decoded from different blocks or transactions are otherwise separate objects of a few hundred bytes each,
+ * even when they belong to the same owner. Keys are matched by their encoding, since BouncyCastle keys that are
+ * equal don't always have the same hash code. The keys are only weakly held, so one no longer used anywhere else
+ * is dropped.
+ * This class is thread safe.
+ * @author Jordi <ejordi.ayala@gmail.com>
+ */
+public class KeyInterner {
+
+    private final Map<String, KeyReference> keys = new HashMap<>();
+    private final ReferenceQueue<PublicKey> collected = new ReferenceQueue<>();
+
+    private static final class KeyReference extends WeakReference<PublicKey> {
+
+        private final String encoded;
+
+        KeyReference(PublicKey key, String encoded, ReferenceQueue<PublicKey> queue) {
+            super(key, queue);
+            this.encoded = encoded;
+        }
+    }
+
+    /**
+     * Returns the canonical instance of a key, making this key the canonical one if it is new.
+     * @param key The key, or null.
+     * @return An equal key, shared by every caller; null if the key is null.
+     */
+    public synchronized PublicKey intern(PublicKey key) {
+        if (key == null) return null;
+        expunge();
+        String encoded = StringUtil.getStringFromKey(key);
+        KeyReference ref = keys.get(encoded);
+        PublicKey canonical = (ref == null) ? null : ref.get();
+        if (canonical != null) return canonical;
+        keys.put(encoded, new KeyReference(key, encoded, collected));
+        return key;
+    }
+
+    /**
+     * @return The number of distinct keys currently interned.
+     */
+    public synchronized int size() {
+        expunge();
+        return keys.size();
+    }
+
+    /**
+     * Removes the entries of keys that were garbage collected.
+     */
+    private void expunge() {
+        for (Reference<? extends PublicKey> ref; (ref = collected.poll()) != null; ) {
+            KeyReference key = (KeyReference) ref;
+            // A newer entry for the same encoding stays
+            keys.remove(key.encoded, key);
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package dev.asjordi.model;
+
+import java.nio.ByteBuffer;
+import java.util.HexFormat;
+
+/**
+ * The OutPoint record is the compact identifier of a transaction output.
+ * It holds the 32 raw bytes of the output's SHA-256 hash packed into four longs,
+ * instead of the 64 character hex String used for display.
+ * @author Jordi <ejordi.ayala@gmail.com>
+ */
+public record OutPoint(long a, long b, long c, long d) {
+
+    /**
+     * Number of bytes in the encoded form of an OutPoint.
+     */
+    public static final int BYTES = 32;
+
+    /**
+     * Creates an OutPoint from a raw 32 byte hash.
+     * @param hash The hash bytes.
+     * @return The OutPoint holding the hash.
+     */
+    public static OutPoint fromBytes(byte[] hash) {
+        if (hash.length != BYTES) throw new IllegalArgumentException("OutPoint hash must be 32 bytes, got " + hash.length);
+        ByteBuffer buffer = ByteBuffer.wrap(hash);
+        return new OutPoint(buffer.getLong(), buffer.getLong(), buffer.getLong(), buffer.getLong());
+    }
+
+    /**
+     * Creates an OutPoint from its 64 character hex representation.
+     * @param hex The hex String, as returned by {@link #toHex()}.
+     * @return The OutPoint holding the hash.
+     */
+    public static OutPoint fromHex(String hex) {
+        return fromBytes(HexFormat.of().parseHex(hex));
+    }
+
+    /**
+     * @return The 32 raw bytes of the hash.
+     */
+    public byte[] toBytes() {
+        return ByteBuffer.allocate(BYTES).putLong(a).putLong(b).putLong(c).putLong(d).array();
+    }
+
+    /**
+     * @return The 64 character hex representation of the hash.
+     */
+    public String toHex() {
+        return HexFormat.of().formatHex(toBytes());
+    }
+
+    /**
+     * @return A well mixed 32 bit hash, taken from the hash bits themselves.
+     */
+    @Override
+    public int hashCode() {
+        return (int) (a ^ (a >>> 32));
+    }
+
+    /**
+     * @return The hex representation of the OutPoint.
+     */
+    @Override
+    public String toString() {
+        return toHex();
+    }
+}
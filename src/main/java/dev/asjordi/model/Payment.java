@@ -0,0 +1,12 @@
+package dev.asjordi.model;
+
+import java.security.PublicKey;
+
+/**
+ * The Payment record is one recipient of a transaction and the amount sent to it.
+ * A transaction creates one output per payment, in order, followed by the change output.
+ * @param recipient The recipient's public key.
+ * @param value The amount to be sent, in minimal units.
+ * @author Jordi <ejordi.ayala@gmail.com>
+ */
+public record Payment(PublicKey recipient, long value) {}
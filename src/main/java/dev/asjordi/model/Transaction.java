@@ -1,48 +1,76 @@
 package dev.asjordi.model;
 
-import dev.asjordi.Main;
+import dev.asjordi.node.NodeContext;
+import dev.asjordi.util.SignatureCache;
 import dev.asjordi.util.StringUtil;
 import java.security.PrivateKey;
 import java.security.PublicKey;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
  * The Transaction class represents a transaction in a blockchain network.
  * Each Transaction has a trnasaction ID, sender's public key, recipient's public key, value, signature, inputs and outputs.
- * It also maintains a sequence number to keep track of the number of transactions generated.
+ * A transaction may pay several recipients at once; one signature covers every payment.
+ * Its ID is derived from the signed data and the outputs it spends, so it depends on nothing outside the transaction.
  * @author Jordi <ejordi.ayala@gmail.com>
  */
 public class Transaction {
 
     public String transactionId;
     public PublicKey sender;
+    /**
+     * The first recipient, see {@link #payments} for all of them.
+     */
     public PublicKey recipient;
-    public float value;
+    /**
+     * The total amount sent to the recipients, in minimal units.
+     */
+    public long value;
+    public List<Payment> payments;
     public byte[] signature;
     
     public List<TransactionInput> inputs;
     public List<TransactionOutput> outputs;
 
     /**
-     * A rough count of how many transactions have been generated
+     * Number of minimal units in one coin
      */
-    private static int sequence = 0;
+    public static final long COIN = 100_000_000L;
     private static final Logger LOGGER = Logger.getLogger(Logger.GLOBAL_LOGGER_NAME);
 
     /**
      * Constructor for the Transaction class.
      * @param from The sender's public key.
      * @param to The recipient's public key.
-     * @param value The amount to be sent.
+     * @param value The amount to be sent, in minimal units.
      * @param inputs The inputs for the transaction.
      */
-    public Transaction(PublicKey from, PublicKey to, float value, List<TransactionInput> inputs) {
+    public Transaction(PublicKey from, PublicKey to, long value, List<TransactionInput> inputs) {
+        this(from, List.of(new Payment(to, value)), inputs);
+    }
+
+    /**
+     * Constructor for a Transaction paying several recipients.
+     * @param from The sender's public key.
+     * @param payments The recipients and the amount each one receives, at least one.
+     * @param inputs The inputs for the transaction.
+     * @throws ArithmeticException if the total of the payments overflows a long.
+     */
+    public Transaction(PublicKey from, List<Payment> payments, List<TransactionInput> inputs) {
+        if (payments.isEmpty()) throw new IllegalArgumentException("A transaction needs at least one payment");
+        long total = 0;
+        for (Payment p : payments) {
+            total = Math.addExact(total, p.value());
+        }
         this.sender = from;
-        this.recipient = to;
-        this.value = value;
+        this.recipient = payments.get(0).recipient();
+        this.value = total;
+        this.payments = List.copyOf(payments);
         this.inputs = inputs;
         this.outputs = new LinkedList<>();
     }
@@ -52,8 +80,7 @@ public class Transaction {
      * @param privateKey The private key to sign the data with.
      */
     public void generateSignature(PrivateKey privateKey) {
-        String data = StringUtil.getStringFromKey(this.sender) + StringUtil.getStringFromKey(this.recipient) + Float.toString(this.value);
-        this.signature = StringUtil.applyECDSASignature(privateKey, data);
+        this.signature = StringUtil.applyECDSASignature(privateKey, getSignedData());
     }
     
     /**
@@ -61,62 +88,172 @@ public class Transaction {
      * @return True if the signature is valid, false otherwise.
      */
     public boolean verifySignature() {
-	String data = StringUtil.getStringFromKey(this.sender) + StringUtil.getStringFromKey(this.recipient) + Float.toString(this.value)	;
-	return StringUtil.verifyECDSASignature(this.sender, data, this.signature);
+        return StringUtil.verifyECDSASignature(this.sender, getSignedData(), this.signature);
+    }
+
+    /**
+     * Verifies the data we signed hasn't been tampered with.
+     * Signatures that were already verified are answered from the signature cache.
+     * @param signatureCache The cache of verified signatures, or null to verify the signature directly.
+     * @return True if the signature is valid, false otherwise.
+     */
+    public boolean verifySignature(SignatureCache signatureCache) {
+        if (signatureCache == null) return verifySignature();
+        return signatureCache.verify(this.sender, getSignedData(), this.signature);
+    }
+
+    /**
+     * Builds the data covered by the signature: the sender followed by every recipient and its amount.
+     * @return The signed data.
+     */
+    private String getSignedData() {
+        StringBuilder data = new StringBuilder(StringUtil.getStringFromKey(this.sender));
+        for (Payment p : this.payments) {
+            data.append(StringUtil.getStringFromKey(p.recipient())).append(p.value());
+        }
+        return data.toString();
     }
     
     /**
-     * Processes the transaction and generates the outputs.
+     * Processes the transaction against the working UTXO set of a ledger, generating the outputs and updating the set.
+     * @param context The ledger, giving the UTXO set, the minimum transaction and the signature cache.
      * @return True if new transaction could be created, false otherwise.
      */
-    public boolean processTransaction() {
+    public boolean processTransaction(NodeContext context) {
+        return processTransaction(context.getUTXOs(), context);
+    }
+
+    /**
+     * Processes the transaction against the given UTXO set with the settings of a ledger,
+     * generating the outputs and updating the set.
+     * @param UTXOs The unspent outputs the inputs are taken from.
+     * @param context The ledger, giving the minimum transaction and the signature cache.
+     * @return True if new transaction could be created, false otherwise.
+     */
+    public boolean processTransaction(UTXOSet UTXOs, NodeContext context) {
+        return processTransaction(UTXOs, context.getMinimumTransaction(), context.getSignatureCache());
+    }
+
+    /**
+     * Processes the transaction against the given UTXO set, generating the outputs and updating the set.
+     * The inputs must add up to at least {@link NodeContext#DEFAULT_MINIMUM_TRANSACTION}.
+     * @param UTXOs The unspent outputs the inputs are taken from.
+     * @return True if new transaction could be created, false otherwise.
+     */
+    public boolean processTransaction(UTXOSet UTXOs) {
+        return processTransaction(UTXOs, NodeContext.DEFAULT_MINIMUM_TRANSACTION, null);
+    }
+
+    private boolean processTransaction(UTXOSet UTXOs, long minimumTransaction, SignatureCache signatureCache) {
         
-        if (verifySignature() == false) {
+        if (verifySignature(signatureCache) == false) {
             LOGGER.log(Level.WARNING, "Transaction Signature failed to verify");
             return false;
         }
         
         // Gather transaction inputs (Make sure they are unspent)
+        Set<OutPoint> spent = new HashSet<>();
         for (TransactionInput i : this.inputs) {
-            i.setUTXO(Main.UTXOs.get(i.getTransactionOutputId()));
+            i.setUTXO(UTXOs.get(i.getTransactionOutputId()));
+            if (i.getUTXO() == null || !spent.add(i.getTransactionOutputId())) {
+                LOGGER.log(Level.WARNING, "Transaction Input {0} is missing or already spent", i.getTransactionOutputId());
+                return false;
+            }
         }
         
         // Check if Transaction is valid
-        if (getInputsValue() < Main.minimumTransaction) {
-            LOGGER.log(Level.WARNING, "Transaction Inputs too small: {0}", getInputsValue());
+        long inputsValue;
+        try {
+            inputsValue = getInputsValue();
+        } catch (ArithmeticException e) {
+            LOGGER.log(Level.WARNING, "Transaction Inputs overflow");
+            return false;
+        }
+
+        if (inputsValue < minimumTransaction) {
+            LOGGER.log(Level.WARNING, "Transaction Inputs too small: {0}", inputsValue);
+            return false;
+        }
+
+        for (Payment p : this.payments) {
+            if (p.value() < 0) {
+                LOGGER.log(Level.WARNING, "Transaction Payment is negative: {0}", p.value());
+                return false;
+            }
+        }
+
+        if (inputsValue < this.value) {
+            LOGGER.log(Level.WARNING, "Transaction Inputs don't cover the value: {0}", inputsValue);
             return false;
         }
         
         // Generate Transaction outputs
-        float leftOver = getInputsValue() - this.value; // Get value of inputs then the left over change
+        long leftOver = inputsValue - this.value; // Get value of inputs then the left over change
         this.transactionId = this.calculateHash();
-        this.outputs.add(new TransactionOutput(this.recipient, this.value, this.transactionId)); // Send value to recipient
-        outputs.add(new TransactionOutput(this.sender, leftOver, this.transactionId));
+        int index = 0;
+        for (Payment p : this.payments) {
+            this.outputs.add(new TransactionOutput(p.recipient(), p.value(), this.transactionId, index++)); // Send value to recipient
+        }
+        if (leftOver > 0) {
+            this.outputs.add(new TransactionOutput(this.sender, leftOver, this.transactionId, index)); // Send the change back
+        }
         
         // Add outputs to unspent list
         for(TransactionOutput o : this.outputs) {
-            Main.UTXOs.put(o.getId(), o);
+            UTXOs.put(o.getId(), o);
         }
         
         // Remove transaction inputs from UTXO lists as spent
         for(TransactionInput i : this.inputs) {
-            if (i.getUTXO() == null) continue; // If transaction can't be found skip it
-            Main.UTXOs.remove(i.getUTXO().getId());
+            UTXOs.remove(i.getUTXO().getId());
         }
         
         return true;
     }
     
+    /**
+     * Checks that the outputs are the ones the signature commits to: one output per payment, in order,
+     * with the payment's recipient and value, then at most one positive change output back to the sender.
+     * Every output must name this transaction as its parent and carry the outpoint derived from its owner,
+     * value, this transaction's id and its position, so outputs can't be redirected or given another
+     * outpoint after signing. The values aren't checked against the inputs.
+     * @return True if the outputs match the signed payments, false otherwise.
+     */
+    public boolean hasValidOutputs() {
+        if (this.transactionId == null || this.outputs == null) return false;
+        int paymentCount = this.payments.size();
+        int outputCount = this.outputs.size();
+        if (outputCount != paymentCount && outputCount != paymentCount + 1) return false;
+
+        for (int index = 0; index < outputCount; index++) {
+            TransactionOutput o = this.outputs.get(index);
+            PublicKey owner;
+            if (index < paymentCount) {
+                Payment p = this.payments.get(index);
+                if (o.getValue() != p.value()) return false;
+                owner = p.recipient();
+            } else {
+                if (o.getValue() <= 0) return false;
+                owner = this.sender;
+            }
+            if (!this.transactionId.equals(o.getParentTransactionId())) return false;
+            TransactionOutput expected = new TransactionOutput(owner, o.getValue(), this.transactionId, index);
+            if (!expected.getOwner().equals(o.getOwner()) || !expected.getId().equals(o.getId())) return false;
+        }
+        return true;
+    }
+
     /**
      * Returns the sum of inputs (UTXOs) values
      * @return The total value of the inputs.
+     * @throws ArithmeticException if the sum overflows a long.
      */
-    public float getInputsValue() {
-        float total = 0;
+    public long getInputsValue() {
+        long total = 0;
         
         for (TransactionInput i : this.inputs) {
             if (i.getUTXO() == null) continue;
-            total += i.getUTXO().getValue();
+            total = Math.addExact(total, i.getUTXO().getValue());
         }
         
         return total;
@@ -124,12 +261,13 @@ public class Transaction {
     
     /**
      * @return The total value of the outputs.
+     * @throws ArithmeticException if the sum overflows a long.
      */
-    public float getOutputsValue() {
-        float total = 0;
+    public long getOutputsValue() {
+        long total = 0;
         
         for (TransactionOutput o : this.outputs) {
-            total += o.getValue();
+            total = Math.addExact(total, o.getValue());
         }
         
         return total;
@@ -137,16 +275,13 @@ public class Transaction {
     
     /**
      * Calculates the transaction hash, which will be used as the transaction ID.
+     * It covers the spent outpoints, which no other valid transaction can spend, so IDs are unique without a counter.
      * @return  The transaction hash.
      */
     private String calculateHash() {
-        sequence++;
-        return StringUtil.applySha256(
-            StringUtil.getStringFromKey(this.sender) +
-            StringUtil.getStringFromKey(this.recipient) +
-            Float.toString(this.value) +
-            sequence
-        );
+        StringBuilder data = new StringBuilder(getSignedData());
+        for (TransactionInput i : this.inputs) data.append(i.getTransactionOutputId().toHex());
+        return StringUtil.applySha256(data.toString());
     }
     
 }
@@ -10,7 +10,7 @@ public class TransactionInput {
     /**
      * The ID of the UTXO transaction output references.
      */
-    private String transactionOutputId;
+    private OutPoint transactionOutputId;
 
     /**
      * The UTXO transaction output references.
@@ -21,14 +21,14 @@ public class TransactionInput {
      * Constructor for the TransactionInput class.
      * @param transactionOutputId The ID of the UTXO transaction output references.
      */
-    public TransactionInput(String transactionOutputId) {
+    public TransactionInput(OutPoint transactionOutputId) {
         this.transactionOutputId = transactionOutputId;
     }
 
     /**
      * @return The ID of the UTXO transaction output references.
      */
-    public String getTransactionOutputId() {
+    public OutPoint getTransactionOutputId() {
         return transactionOutputId;
     }
 
@@ -36,7 +36,7 @@ public class TransactionInput {
      * Sets the ID of the UTXO transaction output references.
      * @param transactionOutputId The ID of the UTXO transaction output references.
      */
-    public void setTransactionOutputId(String transactionOutputId) {
+    public void setTransactionOutputId(OutPoint transactionOutputId) {
         this.transactionOutputId = transactionOutputId;
     }
 
@@ -5,61 +5,105 @@ import java.security.PublicKey;
 
 /**
  * The TransactionOutput class represents an output of a transaction in a blockchain network.
- * Each TransactionOutput has an ID, a recipient, a value and a parent transaction ID.
+ * Each TransactionOutput has an ID, an owner, a value and a parent transaction ID.
+ * The owner is kept as a compact {@link Address} rather than the recipient's full public key.
  * @author Jordi <ejordi.ayala@gmail.com>
  */
 public class TransactionOutput {
 
-    private final String id;
-    private PublicKey recipient;
-    private float value;
+    private final OutPoint id;
+    private final Address owner;
+    private long value;
     private String parentTransactionId;
 
     /**
      * Constructor for the TransactionOutput class.
      * @param recipient The new owner of these coins.
-     * @param value The amount of coins they own.
+     * @param value The amount they own, in minimal units.
      * @param parentTransactionId The ID of the parent transaction.
      */
-    public TransactionOutput(PublicKey recipient, float value, String parentTransactionId) {
-        this.recipient = recipient;
+    public TransactionOutput(PublicKey recipient, long value, String parentTransactionId) {
+        this(recipient, value, parentTransactionId, 0);
+    }
+
+    /**
+     * Constructor for one of several outputs of the same transaction.
+     * @param recipient The new owner of these coins.
+     * @param value The amount they own, in minimal units.
+     * @param parentTransactionId The ID of the parent transaction.
+     * @param index The position of this output in the parent transaction.
+     */
+    public TransactionOutput(PublicKey recipient, long value, String parentTransactionId, int index) {
+        this.owner = Address.of(recipient);
         this.value = value;
         this.parentTransactionId = parentTransactionId;
-        this.id = StringUtil.applySha256(
-            StringUtil.getStringFromKey(this.recipient) +
-            Float.toString(this.value) +
-            this.parentTransactionId
-        );
+        this.id = OutPoint.fromBytes(StringUtil.sha256(
+            StringUtil.getStringFromKey(recipient) +
+            Long.toString(this.value) +
+            this.parentTransactionId +
+            index
+        ));
     }
     
+    /**
+     * Constructor for an output read back from storage, whose id was already computed.
+     * @param id The outpoint of this output.
+     * @param owner The address of the new owner of these coins.
+     * @param value The amount they own, in minimal units.
+     * @param parentTransactionId The ID of the parent transaction.
+     */
+    public TransactionOutput(OutPoint id, Address owner, long value, String parentTransactionId) {
+        this.id = id;
+        this.owner = owner;
+        this.value = value;
+        this.parentTransactionId = parentTransactionId;
+    }
+
     /**
      * Check if a coin belongs to a specific user.
+     * Hashes the key on every call, so callers checking many outputs should use {@link #isMine(Address)}.
      * @param publicKey The public key of the user to check.
      * @return True if the coin belongs to the user, false otherwise.
      */
     public boolean isMine(PublicKey publicKey) {
-        return publicKey.equals(this.recipient);
+        return isMine(Address.of(publicKey));
+    }
+
+    /**
+     * Check if a coin belongs to a specific address.
+     * @param address The address of the user to check.
+     * @return True if the coin belongs to the address, false otherwise.
+     */
+    public boolean isMine(Address address) {
+        return owner.equals(address);
     }
 
     /**
      * @return The ID of the TransactionOutput.
      */
-    public String getId() {
+    public OutPoint getId() {
         return id;
     }
 
     /**
-     * @return The recipient's public key.
+     * @return The address of the owner of these coins.
      */
-    public PublicKey getRecipient() {
-        return recipient;
+    public Address getOwner() {
+        return owner;
     }
 
     /**
-     * @return The value of the TransactionOutput.
+     * @return The value of the TransactionOutput, in minimal units.
      */
-    public float getValue() {
+    public long getValue() {
         return value;
     }
 
+    /**
+     * @return The ID of the transaction that created this output.
+     */
+    public String getParentTransactionId() {
+        return parentTransactionId;
+    }
+
 }
@@ -0,0 +1,60 @@
+package dev.asjordi.model;
+
+/**
+ * The UTXOSet interface is a set of unspent {@link TransactionOutput}, keyed by their {@link OutPoint}.
+ * {@link HeapUTXOSet} keeps the outputs on the JVM heap; {@code dev.asjordi.store.OffHeapUTXOStore} keeps them
+ * in direct memory or a memory-mapped file, for sets larger than the heap.
+ * Implementations are not thread safe, but lookups may run concurrently while nothing changes the set.
+ * @author Jordi <ejordi.ayala@gmail.com>
+ */
+public interface UTXOSet extends Iterable<TransactionOutput> {
+
+    /**
+     * @param id The OutPoint of the output.
+     * @return The unspent output, or null if there is none with that id.
+     */
+    TransactionOutput get(OutPoint id);
+
+    /**
+     * @param id The OutPoint of the output.
+     * @return True if the set holds an unspent output with that id.
+     */
+    boolean containsKey(OutPoint id);
+
+    /**
+     * Adds an unspent output, replacing any output with the same id.
+     * @param id The OutPoint of the output.
+     * @param output The unspent output.
+     * @return The output previously stored under that id, or null.
+     */
+    TransactionOutput put(OutPoint id, TransactionOutput output);
+
+    /**
+     * Removes an unspent output.
+     * @param id The OutPoint of the output.
+     * @return The removed output, or null if there was none with that id.
+     */
+    TransactionOutput remove(OutPoint id);
+
+    /**
+     * @return The number of unspent outputs in the set.
+     */
+    int size();
+
+    /**
+     * @return True if the set holds no outputs.
+     */
+    default boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * Removes every output from the set.
+     */
+    void clear();
+
+    /**
+     * @return A copy of this set, of the same kind, that can be changed independently.
+     */
+    UTXOSet copy();
+}
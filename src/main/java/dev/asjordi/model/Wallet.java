@@ -1,42 +1,69 @@
 package dev.asjordi.model;
 
-import dev.asjordi.Main;
+import dev.asjordi.node.NodeContext;
+import dev.asjordi.util.CryptoProvider;
 import java.security.InvalidAlgorithmParameterException;
 import java.security.KeyPair;
 import java.security.KeyPairGenerator;
 import java.security.NoSuchAlgorithmException;
-import java.security.NoSuchProviderException;
 import java.security.PrivateKey;
 import java.security.PublicKey;
 import java.security.SecureRandom;
 import java.security.spec.ECGenParameterSpec;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.NavigableSet;
 import java.util.Objects;
+import java.util.TreeSet;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
  * The Wallet class represents a wallet in a blockchain network.
  * Each wallet has a private key and a public key that are used to sign transactions.
- * It also keeps a record of the unspent transaction outputs (UTXOs) it owns.
+ * It also keeps a record of the unspent transaction outputs (UTXOs) it owns, indexed by value,
+ * which its {@link CoinSelector} uses to choose the inputs of new transactions.
  * @author Jordi <ejordi.ayala@gmail.com>
  */
 public class Wallet {
     
     private PrivateKey privateKey;
     private PublicKey publicKey;
-    private Map<String, TransactionOutput> UTXOs;
+    private Address address;
+    private Map<OutPoint, TransactionOutput> UTXOs;
+    private NavigableSet<TransactionOutput> UTXOsByValue;
+    private CoinSelector coinSelector;
+    private final NodeContext context;
+    private static final Comparator<TransactionOutput> BY_VALUE = Comparator
+            .comparingLong(TransactionOutput::getValue)
+            .thenComparingLong(o -> o.getId().a())
+            .thenComparingLong(o -> o.getId().b())
+            .thenComparingLong(o -> o.getId().c())
+            .thenComparingLong(o -> o.getId().d());
     private static final Logger LOGGER = Logger.getLogger(Logger.GLOBAL_LOGGER_NAME);
 
     /**
-     * Wallet class constructor.
+     * Wallet class constructor, for a wallet not bound to a ledger.
+     * Its balance and payments must be given the UTXO set to use.
      * Initializes the UTXOs map and generates a new key pair.
      */
     public Wallet() {
+        this(null);
+    }
+
+    /**
+     * Constructor for a Wallet bound to a ledger, whose working UTXO set backs {@link #getBalance()} and {@link #sendFunds(List)}.
+     * Initializes the UTXOs map and generates a new key pair.
+     * @param context The ledger the wallet belongs to.
+     */
+    public Wallet(NodeContext context) {
+        this.context = context;
         this.UTXOs = new HashMap<>();
+        this.UTXOsByValue = new TreeSet<>(BY_VALUE);
+        this.coinSelector = CoinSelection.BRANCH_AND_BOUND;
         this.generateKeyPair();
     }
 
@@ -46,31 +73,45 @@ public class Wallet {
      */
     public void generateKeyPair() {
         try {
-            KeyPairGenerator keyGenerator = KeyPairGenerator.getInstance("ECDSA","BC");
+            KeyPairGenerator keyGenerator = KeyPairGenerator.getInstance("ECDSA", CryptoProvider.get());
             SecureRandom random = SecureRandom.getInstance("SHA1PRNG");
             ECGenParameterSpec ecgps = new ECGenParameterSpec("prime192v1");
             keyGenerator.initialize(ecgps, random);
             KeyPair keyPair = keyGenerator.generateKeyPair();
             this.privateKey = keyPair.getPrivate();
             this.publicKey = keyPair.getPublic();
-        } catch (InvalidAlgorithmParameterException | NoSuchAlgorithmException | NoSuchProviderException e) {
+            this.address = Address.of(this.publicKey);
+        } catch (InvalidAlgorithmParameterException | NoSuchAlgorithmException e) {
             throw new RuntimeException(e.getMessage());
         }
     }
     
     /**
      * Calculates the balance of this wallet by summing the value of all its UTXOs.
-     * @return The total balance of this wallet.
+     * Also refreshes this wallet's own record of the UTXOs it owns.
+     * @return The total balance of this wallet, in minimal units.
+     * @throws IllegalStateException if the wallet isn't bound to a ledger.
      */
-    public float getBalance() {
-        float total = 0;
+    public long getBalance() {
+        return getBalance(ledger().getUTXOs());
+    }
+
+    /**
+     * Calculates the balance of this wallet from the given UTXO set.
+     * Also refreshes this wallet's own record of the UTXOs it owns.
+     * @param UTXOs The unspent outputs to scan.
+     * @return The total balance of this wallet, in minimal units.
+     */
+    public long getBalance(UTXOSet UTXOs) {
+        long total = 0;
+        this.UTXOs.clear();
+        this.UTXOsByValue.clear();
         
-        for (Map.Entry<String, TransactionOutput> item : Main.UTXOs.entrySet()) {
-            TransactionOutput UTXO = item.getValue();
-            
-            if (UTXO.isMine(this.publicKey)) {
+        for (TransactionOutput UTXO : UTXOs) {
+            if (UTXO.isMine(this.address)) {
                 this.UTXOs.put(UTXO.getId(), UTXO);
-                total += UTXO.getValue();
+                this.UTXOsByValue.add(UTXO);
+                total = Math.addExact(total, UTXO.getValue());
             }
         }
         
@@ -79,31 +120,61 @@ public class Wallet {
     
     /**
      * Creates a new transaction from this wallet to the recipient's public key.
+     * The inputs are chosen by this wallet's coin selector.
      * @param _recipient The public key of the transaction recipient.
-     * @param value The value (amount) of the transaction.
+     * @param value The value (amount) of the transaction, in minimal units.
      * @return The new transaction if there are sufficient funds, null otherwise.
+     * @throws IllegalStateException if the wallet isn't bound to a ledger.
      */
-    public Transaction sendFunds(PublicKey _recipient, float value) {
+    public Transaction sendFunds(PublicKey _recipient, long value) {
+        return sendFunds(List.of(new Payment(_recipient, value)));
+    }
+
+    /**
+     * Creates a new transaction from this wallet paying several recipients at once, with a single signature.
+     * The inputs are chosen by this wallet's coin selector.
+     * @param payments The recipients and the amount each one receives.
+     * @return The new transaction if there are sufficient funds, null otherwise.
+     * @throws IllegalStateException if the wallet isn't bound to a ledger.
+     */
+    public Transaction sendFunds(List<Payment> payments) {
+        return sendFunds(ledger().getUTXOs(), payments);
+    }
+
+    /**
+     * Creates a new transaction paying several recipients, funded from this wallet's outputs in the given UTXO set.
+     * @param UTXOs The unspent outputs to fund the transaction from.
+     * @param payments The recipients and the amount each one receives.
+     * @return The new transaction if there are sufficient funds, null otherwise.
+     */
+    public Transaction sendFunds(UTXOSet UTXOs, List<Payment> payments) {
+        long value = 0;
+        for (Payment p : payments) {
+            value = Math.addExact(value, p.value());
+        }
         
-        if (getBalance() < value) {
+        if (getBalance(UTXOs) < value) {
             LOGGER.log(Level.WARNING, "Not enough funds to send transaction. Transaction Discarded.");
             return null;
         }
         
+        List<TransactionOutput> selected = this.coinSelector.select(this.UTXOsByValue, value);
+        if (selected == null) {
+            LOGGER.log(Level.WARNING, "Coin selection couldn't cover the value. Transaction Discarded.");
+            return null;
+        }
+
         List<TransactionInput> inputs = new LinkedList<>();
-        float total = 0;
-        for (Map.Entry<String, TransactionOutput> item : this.UTXOs.entrySet()) {
-            TransactionOutput UTXO = item.getValue();
-            total += UTXO.getValue();
+        for (TransactionOutput UTXO : selected) {
             inputs.add(new TransactionInput(UTXO.getId()));
-            if (total > value) break;
         }
         
-        Transaction newTransaction = new Transaction(this.publicKey, _recipient, value, inputs);
+        Transaction newTransaction = new Transaction(this.publicKey, payments, inputs);
         newTransaction.generateSignature(this.privateKey);
         
-        for(TransactionInput input : inputs) {
-            this.UTXOs.remove(input.getTransactionOutputId());
+        for (TransactionOutput UTXO : selected) {
+            this.UTXOs.remove(UTXO.getId());
+            this.UTXOsByValue.remove(UTXO);
         }
         
         return newTransaction;
@@ -116,6 +187,13 @@ public class Wallet {
         return publicKey;
     }
 
+    /**
+     * @return The address of this wallet's public key, which owns its outputs.
+     */
+    public Address getAddress() {
+        return address;
+    }
+
     /**
      * @return This wallet's private key.
      */
@@ -123,13 +201,40 @@ public class Wallet {
         return privateKey;
     }
 
+    /**
+     * @return This wallet's coin selection strategy.
+     */
+    public CoinSelector getCoinSelector() {
+        return coinSelector;
+    }
+
+    /**
+     * Sets the strategy used to choose the inputs of new transactions.
+     * @param coinSelector The coin selection strategy, for example one of {@link CoinSelection}.
+     */
+    public void setCoinSelector(CoinSelector coinSelector) {
+        this.coinSelector = Objects.requireNonNull(coinSelector);
+    }
+
     /**
      * @return This wallet's UTXOs map.
      */
-    public Map<String, TransactionOutput> getUTXOs() {
+    public Map<OutPoint, TransactionOutput> getUTXOs() {
         return UTXOs;
     }
 
+    /**
+     * @return The ledger this wallet belongs to, or null if it isn't bound to one.
+     */
+    public NodeContext getContext() {
+        return context;
+    }
+
+    private NodeContext ledger() {
+        if (this.context == null) throw new IllegalStateException("The wallet isn't bound to a ledger, give it the UTXO set to use");
+        return this.context;
+    }
+
     /**
      * @return A string representation of this wallet, which includes its public key.
      */
@@ -0,0 +1,423 @@
+package dev.asjordi.node;
+
+import dev.asjordi.chain.BlockProcessor;
+import dev.asjordi.chain.BlockTree;
+import dev.asjordi.chain.ChainListener;
+import dev.asjordi.chain.DifficultyAdjuster;
+import dev.asjordi.chain.HeadersFirstSync;
+import dev.asjordi.chain.RetentionPolicy;
+import dev.asjordi.mining.Miner;
+import dev.asjordi.mining.MiningJob;
+import dev.asjordi.model.Address;
+import dev.asjordi.model.Block;
+import dev.asjordi.model.BlockHeader;
+import dev.asjordi.model.OutPoint;
+import dev.asjordi.model.Payment;
+import dev.asjordi.model.Transaction;
+import dev.asjordi.model.TransactionInput;
+import dev.asjordi.model.TransactionOutput;
+import dev.asjordi.model.UTXOSet;
+import dev.asjordi.model.Wallet;
+import java.security.PublicKey;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The Node class is one participant of the network, with its own block tree, UTXO set and mempool.
+ * Transactions in the mempool are already processed and are applied on top of the chain's UTXO set
+ * in a pending view, so later transactions may spend the outputs of earlier unconfirmed ones.
+ * Blocks whose parent hasn't arrived yet are kept aside and connected once it does, and every transaction
+ * of a block is validated by a {@link BlockProcessor} before the block joins the active chain.
+ * A node also serves headers and block bodies, so a new node can catch up with {@link HeadersFirstSync}.
+ * Mining can run in the background on a {@link Miner}; the job is given a fresh template whenever the mempool
+ * or the tip changes, so the miner never works on a stale block.
+ * Every method but {@link #mineBlock()} is synchronized, so a node can be fed from several threads;
+ * mining holds the lock only to take its template and to add the block, never during the proof of work.
+ * @author Jordi <ejordi.ayala@gmail.com>
+ */
+public class Node implements HeadersFirstSync.Peer {
+
+    private final String name;
+    private final NodeContext context;
+    private final BlockTree blockTree;
+    private final Map<String, Transaction> mempool = new LinkedHashMap<>();
+    private final Map<String, List<Block>> orphans = new LinkedHashMap<>();
+    private UTXOSet pendingUTXOs;
+    private MiningJob miningJob;
+    private static final Logger LOGGER = Logger.getLogger(Logger.GLOBAL_LOGGER_NAME);
+
+    /**
+     * Constructor for a Node with its own ledger and the default settings.
+     * @param name The name of the node, used in logs and reports.
+     * @param genesis The genesis block shared by every node of the network.
+     * @param difficultyAdjuster The rule giving the target each block must be mined at.
+     */
+    public Node(String name, Block genesis, DifficultyAdjuster difficultyAdjuster) {
+        this(name, genesis, new NodeContext(difficultyAdjuster));
+    }
+
+    /**
+     * Constructor for the Node class.
+     * @param name The name of the node, used in logs and reports.
+     * @param genesis The genesis block shared by every node of the network.
+     * @param context The ledger of the node, giving its block tree and settings. It must not be used by another node.
+     */
+    public Node(String name, Block genesis, NodeContext context) {
+        this.name = name;
+        this.context = context;
+        this.blockTree = context.getBlockTree();
+        if (!this.blockTree.addBlock(genesis)) throw new IllegalArgumentException("Invalid genesis block");
+        this.pendingUTXOs = this.blockTree.getUTXOs().copy();
+    }
+
+    /**
+     * Creates a genesis block whose only transaction sends the initial coins to a recipient.
+     * @param recipient The owner of the initial coins.
+     * @param value The amount of initial coins, in minimal units.
+     * @param bits The compact target to mine the genesis block at.
+     * @return The mined genesis block.
+     */
+    public static Block createGenesisBlock(PublicKey recipient, long value, int bits) {
+        Transaction coinbase = new Transaction(recipient, recipient, value, null);
+        coinbase.transactionId = "0";
+        coinbase.outputs.add(new TransactionOutput(recipient, value, coinbase.transactionId));
+        Block genesis = new Block("0");
+        genesis.includeTransaction(coinbase);
+        genesis.mineBlockToTarget(bits);
+        return genesis;
+    }
+
+    /**
+     * Creates, signs and processes a transaction from a wallet, funded from this node's pending UTXO set,
+     * and adds it to the mempool.
+     * @param from The paying wallet.
+     * @param to The recipient's public key.
+     * @param value The amount, in minimal units.
+     * @return The processed transaction, or null if the wallet can't fund it.
+     */
+    public synchronized Transaction submitTransaction(Wallet from, PublicKey to, long value) {
+        Transaction t = from.sendFunds(this.pendingUTXOs, List.of(new Payment(to, value)));
+        if (t == null || !t.processTransaction(this.pendingUTXOs, this.context)) return null;
+        this.mempool.put(t.transactionId, t);
+        refreshMining();
+        return t;
+    }
+
+    /**
+     * Validates a processed transaction received from a peer and adds it to the mempool.
+     * @param t The processed transaction.
+     * @return True if the transaction is new and valid, false otherwise.
+     */
+    public synchronized boolean receiveTransaction(Transaction t) {
+        if (t.transactionId == null || this.mempool.containsKey(t.transactionId)) return false;
+        if (!accept(t, this.pendingUTXOs)) return false;
+        this.mempool.put(t.transactionId, t);
+        refreshMining();
+        return true;
+    }
+
+    /**
+     * Adds a block received from a peer, or mined locally, to the block tree.
+     * If the block's parent is unknown the block is kept until the parent arrives.
+     * @param block The mined block.
+     * @return The blocks newly accepted into the tree: the block itself and any waiting children it unlocked.
+     */
+    public synchronized List<Block> receiveBlock(Block block) {
+        List<Block> accepted = new ArrayList<>();
+        if (this.blockTree.contains(block.getHash())) return accepted;
+
+        if (!"0".equals(block.getPreviousHash()) && !this.blockTree.contains(block.getPreviousHash())) {
+            this.orphans.computeIfAbsent(block.getPreviousHash(), k -> new ArrayList<>()).add(block);
+            return accepted;
+        }
+
+        List<Block> queue = new ArrayList<>(List.of(block));
+        while (!queue.isEmpty()) {
+            Block next = queue.remove(0);
+            if (!this.blockTree.addBlock(next)) continue;
+            accepted.add(next);
+            List<Block> children = this.orphans.remove(next.getHash());
+            if (children != null) queue.addAll(children);
+        }
+
+        if (!accepted.isEmpty()) {
+            refreshMempool();
+            refreshMining();
+        }
+        return accepted;
+    }
+
+    /**
+     * Mines a block with every transaction of the mempool on top of the current tip, and adds it to the tree.
+     * The proof of work runs without the node's lock, so other callers, such as virtual threads serving RPC,
+     * aren't blocked behind it. If the tip changes meanwhile, the block is added as a fork.
+     * @return The mined block.
+     */
+    public Block mineBlock() {
+        Block block;
+        int bits;
+        synchronized (this) {
+            block = newCandidate();
+            bits = this.blockTree.getNextBits();
+        }
+        block.mineBlockToTarget(bits);
+        receiveBlock(block);
+        LOGGER.log(Level.INFO, "{0} mined block {1}", new Object[] {this.name, block.getHash()});
+        return block;
+    }
+
+    /**
+     * Starts mining the mempool on top of the current tip in the background, cancelling any mining job of this node.
+     * The job follows new transactions and new tips until it finds a block, which is then added to the tree.
+     * @param miner The miner whose threads do the work.
+     * @return The job, to follow its progress or cancel it.
+     */
+    public synchronized MiningJob startMining(Miner miner) {
+        stopMining();
+        MiningJob job = miner.mine(newCandidate(), this.blockTree.getNextBits());
+        this.miningJob = job;
+        job.getResult().thenAccept(block -> {
+            receiveBlock(block);
+            LOGGER.log(Level.INFO, "{0} mined block {1}", new Object[] {this.name, block.getHash()});
+        });
+        return job;
+    }
+
+    /**
+     * Cancels the background mining job of this node, if any.
+     */
+    public synchronized void stopMining() {
+        if (this.miningJob != null) this.miningJob.cancel();
+        this.miningJob = null;
+    }
+
+    /**
+     * @param publicKey The owner's public key.
+     * @return The confirmed balance of the owner on this node's active chain, in minimal units.
+     */
+    public synchronized long getBalance(PublicKey publicKey) {
+        Address address = Address.of(publicKey);
+        long total = 0;
+        for (TransactionOutput o : this.blockTree.getUTXOs()) {
+            if (o.isMine(address)) total = Math.addExact(total, o.getValue());
+        }
+        return total;
+    }
+
+    /**
+     * Sets how many block bodies this node keeps in memory, see {@link RetentionPolicy}.
+     * @param retention The retention policy.
+     */
+    public synchronized void setRetentionPolicy(RetentionPolicy retention) {
+        this.blockTree.setRetentionPolicy(retention);
+    }
+
+    /**
+     * Registers a listener, such as an address index, for blocks joining and leaving this node's active chain.
+     * The blocks of the chain after the last one it has seen are replayed to it first.
+     * @param listener The listener.
+     * @throws IllegalStateException if the listener can't be brought up to date, see {@link BlockTree#addListener(ChainListener)}.
+     */
+    public synchronized void addChainListener(ChainListener listener) {
+        this.blockTree.addListener(listener);
+    }
+
+    /**
+     * @param listener The listener to stop notifying.
+     */
+    public synchronized void removeChainListener(ChainListener listener) {
+        this.blockTree.removeListener(listener);
+    }
+
+    /**
+     * Catches up with a peer by downloading its headers first and then the bodies of the missing blocks.
+     * The peer must not be syncing from this node at the same time.
+     * @param peer The peer to sync from.
+     * @return The number of blocks added to this node's tree.
+     */
+    public synchronized int syncFrom(HeadersFirstSync.Peer peer) {
+        int added = new HeadersFirstSync(this.blockTree).sync(peer);
+        if (added > 0) {
+            refreshMempool();
+            refreshMining();
+        }
+        return added;
+    }
+
+    /**
+     * Returns the headers of this node's active chain after the given block.
+     * @param hash The hash of the last block the caller has.
+     * @return The headers, in chain order, or every header after genesis if the block isn't on the active chain.
+     */
+    @Override
+    public synchronized List<BlockHeader> getHeadersAfter(String hash) {
+        List<Block> chain = this.blockTree.getActiveChain();
+        int start = 1;
+        Block known = this.blockTree.getBlock(hash);
+        if (known != null) {
+            int height = chain.size() - 1;
+            while (height > 0 && chain.get(height) != known) height--;
+            if (chain.get(height) == known) start = height + 1;
+        }
+
+        List<BlockHeader> headers = new ArrayList<>();
+        for (int i = start; i < chain.size(); i++) headers.add(chain.get(i).getHeader());
+        return headers;
+    }
+
+    /**
+     * @param hash The hash of the block.
+     * @return A copy of the block's transactions.
+     * @throws IllegalStateException if this node doesn't know the block.
+     */
+    @Override
+    public synchronized List<Transaction> fetchBody(String hash) {
+        Block block = this.blockTree.getBlock(hash);
+        if (block == null) throw new IllegalStateException("Unknown block " + hash);
+        return new ArrayList<>(block.getTransactions());
+    }
+
+    /**
+     * @return The name of the node.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return The hash of the tip of this node's active chain.
+     */
+    public synchronized String getTipHash() {
+        return this.blockTree.getTip().getHash();
+    }
+
+    /**
+     * @return The height of this node's active chain.
+     */
+    public synchronized int getHeight() {
+        return this.blockTree.getHeight();
+    }
+
+    /**
+     * @param hash The hash of the block.
+     * @return The block, on any fork, or null if this node doesn't know it.
+     */
+    public synchronized Block getBlock(String hash) {
+        return this.blockTree.getBlock(hash);
+    }
+
+    /**
+     * @param height The height of the block on the active chain, 0 being genesis.
+     * @return The block, or null if the active chain is shorter.
+     */
+    public synchronized Block getBlock(int height) {
+        List<Block> chain = this.blockTree.getActiveChain();
+        return (height < 0 || height >= chain.size()) ? null : chain.get(height);
+    }
+
+    /**
+     * @return The block tree of this node. Callers must not change it while the node is in use.
+     */
+    public BlockTree getBlockTree() {
+        return blockTree;
+    }
+
+    /**
+     * @return The ledger of this node, giving its settings.
+     */
+    public NodeContext getContext() {
+        return context;
+    }
+
+    /**
+     * @param transactionId The ID of the transaction.
+     * @return True if the transaction is waiting in this node's mempool.
+     */
+    public synchronized boolean hasTransaction(String transactionId) {
+        return this.mempool.containsKey(transactionId);
+    }
+
+    /**
+     * @return The number of transactions waiting in the mempool.
+     */
+    public synchronized int getMempoolSize() {
+        return this.mempool.size();
+    }
+
+    /**
+     * @return A string representation of the node.
+     */
+    @Override
+    public String toString() {
+        return "Node{" + "name=" + name + ", height=" + getHeight() + ", mempool=" + getMempoolSize() + '}';
+    }
+
+    /**
+     * Rebuilds the pending view from the new chain state, dropping mempool transactions that were
+     * confirmed or conflict with the chain.
+     */
+    private void refreshMempool() {
+        UTXOSet view = this.blockTree.getUTXOs().copy();
+        this.mempool.values().removeIf(t -> !accept(t, view));
+        this.pendingUTXOs = view;
+    }
+
+    /**
+     * @return A block on top of the current tip with every transaction of the mempool, not yet mined.
+     */
+    private Block newCandidate() {
+        Block block = new Block(this.blockTree.getTip().getHash());
+        for (Transaction t : this.mempool.values()) block.includeTransaction(t);
+        return block;
+    }
+
+    /**
+     * Gives the running mining job a template with the current tip and mempool.
+     */
+    private void refreshMining() {
+        if (this.miningJob == null) return;
+        if (this.miningJob.isDone()) this.miningJob = null;
+        else this.miningJob.update(newCandidate(), this.blockTree.getNextBits());
+    }
+
+    /**
+     * Checks a processed transaction against a UTXO view and applies it to the view if it is valid:
+     * the same rules a {@link BlockProcessor} applies when the transaction's block connects.
+     */
+    private boolean accept(Transaction t, UTXOSet view) {
+        if (t.inputs == null || t.inputs.isEmpty()) return false;
+        try {
+            if (!t.verifySignature(this.context.getSignatureCache()) || !t.hasValidOutputs()) return false;
+        } catch (RuntimeException e) {
+            return false;
+        }
+
+        Set<OutPoint> spent = new HashSet<>();
+        long inputs = 0;
+        long outputs = 0;
+        try {
+            for (TransactionInput i : t.inputs) {
+                TransactionOutput o = view.get(i.getTransactionOutputId());
+                if (o == null || !spent.add(o.getId())) return false;
+                inputs = Math.addExact(inputs, o.getValue());
+            }
+            for (TransactionOutput o : t.outputs) {
+                if (o.getValue() < 0 || view.get(o.getId()) != null) return false;
+                outputs = Math.addExact(outputs, o.getValue());
+            }
+        } catch (ArithmeticException e) {
+            return false;
+        }
+        if (inputs != outputs || inputs < this.context.getMinimumTransaction()) return false;
+
+        for (OutPoint id : spent) view.remove(id);
+        for (TransactionOutput o : t.outputs) view.put(o.getId(), o);
+        return true;
+    }
+}
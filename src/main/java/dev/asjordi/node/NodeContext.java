@@ -0,0 +1,124 @@
+package dev.asjordi.node;
+
+import dev.asjordi.chain.BlockProcessor;
+import dev.asjordi.chain.BlockTree;
+import dev.asjordi.chain.DifficultyAdjuster;
+import dev.asjordi.model.HeapUTXOSet;
+import dev.asjordi.model.KeyInterner;
+import dev.asjordi.model.Transaction;
+import dev.asjordi.model.UTXOSet;
+import dev.asjordi.util.SignatureCache;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Supplier;
+
+/**
+ * The NodeContext class holds the state and settings of one ledger: its block tree, the working UTXO set
+ * transactions are processed against, the difficulty rule, the minimum transaction, the signature cache
+ * and the key interner. The UTXO sets are kept on the heap unless the context is given another {@link UTXOSet} kind.
+ * Transactions, wallets and blocks are handed a context instead of reading globals, so any number of
+ * independent ledgers can run side by side in one JVM. A context belongs to a single ledger;
+ * two nodes must not share one.
+ * @author Jordi <ejordi.ayala@gmail.com>
+ */
+public class NodeContext {
+
+    /**
+     * The smallest amount of inputs a transaction may spend, in minimal units, unless configured otherwise.
+     */
+    public static final long DEFAULT_MINIMUM_TRANSACTION = Transaction.COIN / 10;
+    /**
+     * The size of the signature cache, in bytes, unless configured otherwise.
+     */
+    public static final long DEFAULT_SIGNATURE_CACHE_BYTES = 4L * 1024 * 1024;
+
+    private final DifficultyAdjuster difficultyAdjuster;
+    private final long minimumTransaction;
+    private final SignatureCache signatureCache;
+    private final KeyInterner keyInterner;
+    private final BlockTree blockTree;
+    private final UTXOSet UTXOs;
+
+    /**
+     * Constructor for a NodeContext with the default minimum transaction, a new signature cache and a new key interner.
+     * @param difficultyAdjuster The rule giving the target each block must be mined at.
+     */
+    public NodeContext(DifficultyAdjuster difficultyAdjuster) {
+        this(difficultyAdjuster, DEFAULT_MINIMUM_TRANSACTION, new SignatureCache(DEFAULT_SIGNATURE_CACHE_BYTES), new KeyInterner());
+    }
+
+    /**
+     * Constructor for a NodeContext keeping its UTXO sets on the heap.
+     * @param difficultyAdjuster The rule giving the target each block must be mined at.
+     * @param minimumTransaction The smallest amount of inputs a transaction may spend, in minimal units.
+     * @param signatureCache The cache of verified signatures. It may be shared between contexts.
+     * @param keyInterner The interner the keys of decoded transactions are shared through. It may be shared between contexts.
+     */
+    public NodeContext(DifficultyAdjuster difficultyAdjuster, long minimumTransaction, SignatureCache signatureCache, KeyInterner keyInterner) {
+        this(difficultyAdjuster, minimumTransaction, signatureCache, keyInterner, HeapUTXOSet::new);
+    }
+
+    /**
+     * Constructor for the NodeContext class.
+     * The block tree validates every block with a {@link BlockProcessor} on the common pool, through the signature cache
+     * and under the minimum transaction, so blocks follow the same rules as relayed transactions.
+     * @param difficultyAdjuster The rule giving the target each block must be mined at.
+     * @param minimumTransaction The smallest amount of inputs a transaction may spend, in minimal units.
+     * @param signatureCache The cache of verified signatures. It may be shared between contexts.
+     * @param keyInterner The interner the keys of decoded transactions are shared through. It may be shared between contexts.
+     * @param utxoSets Creates the empty UTXO sets of the ledger, one for the block tree and one working set,
+     * for instance {@code () -> OffHeapUTXOStore.inMemory(expectedSize)} to keep them off the heap.
+     */
+    public NodeContext(DifficultyAdjuster difficultyAdjuster, long minimumTransaction, SignatureCache signatureCache, KeyInterner keyInterner,
+            Supplier<? extends UTXOSet> utxoSets) {
+        if (minimumTransaction < 0) throw new IllegalArgumentException("The minimum transaction can't be negative");
+        this.difficultyAdjuster = difficultyAdjuster;
+        this.minimumTransaction = minimumTransaction;
+        this.signatureCache = signatureCache;
+        this.keyInterner = keyInterner;
+        this.UTXOs = utxoSets.get();
+        this.blockTree = new BlockTree(difficultyAdjuster, utxoSets.get());
+        this.blockTree.setBlockProcessor(new BlockProcessor(ForkJoinPool.commonPool(), signatureCache, minimumTransaction));
+    }
+
+    /**
+     * @return The rule giving the target each block must be mined at.
+     */
+    public DifficultyAdjuster getDifficultyAdjuster() {
+        return difficultyAdjuster;
+    }
+
+    /**
+     * @return The smallest amount of inputs a transaction may spend, in minimal units.
+     */
+    public long getMinimumTransaction() {
+        return minimumTransaction;
+    }
+
+    /**
+     * @return The cache of verified signatures.
+     */
+    public SignatureCache getSignatureCache() {
+        return signatureCache;
+    }
+
+    /**
+     * @return The interner the keys of decoded transactions are shared through.
+     */
+    public KeyInterner getKeyInterner() {
+        return keyInterner;
+    }
+
+    /**
+     * @return Every known block of this ledger, on every fork, and the UTXO set of its best chain.
+     */
+    public BlockTree getBlockTree() {
+        return blockTree;
+    }
+
+    /**
+     * @return The working UTXO set transactions are processed against while new blocks are assembled.
+     */
+    public UTXOSet getUTXOs() {
+        return UTXOs;
+    }
+}
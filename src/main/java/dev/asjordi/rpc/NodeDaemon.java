@@ -0,0 +1,69 @@
+package dev.asjordi.rpc;
+
+import dev.asjordi.chain.Difficulty;
+import dev.asjordi.chain.DifficultyAdjuster;
+import dev.asjordi.chain.RetentionPolicy;
+import dev.asjordi.model.Transaction;
+import dev.asjordi.model.Wallet;
+import dev.asjordi.node.Node;
+import dev.asjordi.store.BlockStore;
+import dev.asjordi.util.StringUtil;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Runs a long-lived node with two hosted wallets, "walletA" holding the genesis coins and "walletB",
+ * and serves RPC requests until the process is stopped.
+ * If a block file is given, only the last {@value #KEEP_RECENT} block bodies stay in memory and older ones are moved to the file.
+ * The RPC has no authentication and can spend from the hosted wallets, so it only listens on the loopback interface
+ * unless another address is given explicitly with the {@value #BIND_PROPERTY} system property.
+ * Usage: NodeDaemon [port] [blockFile]
+ * @author Jordi <ejordi.ayala@gmail.com>
+ */
+public class NodeDaemon {
+
+    /**
+     * System property with the address the RPC server binds to instead of the loopback interface, for example "0.0.0.0".
+     */
+    public static final String BIND_PROPERTY = "dev.asjordi.rpc.bind";
+
+    private static final int KEEP_RECENT = 100;
+    private static final long BLOCK_CACHE_BYTES = 8L * 1024 * 1024;
+    private static final Logger LOGGER = Logger.getLogger(Logger.GLOBAL_LOGGER_NAME);
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 8545;
+
+        Wallet walletA = new Wallet();
+        Wallet walletB = new Wallet();
+        int bits = Difficulty.bitsForLeadingZeros(3);
+        Node node = new Node("daemon", Node.createGenesisBlock(walletA.getPublicKey(), 100 * Transaction.COIN, bits),
+                new DifficultyAdjuster(bits, 10_000, 10));
+
+        if (args.length > 1) {
+            node.setRetentionPolicy(RetentionPolicy.pruneToDisk(KEEP_RECENT, BlockStore.open(Path.of(args[1]), BLOCK_CACHE_BYTES, node.getContext().getKeyInterner())));
+        }
+
+        LOGGER.log(Level.INFO, "walletA address: {0}", StringUtil.getStringFromKey(walletA.getPublicKey()));
+        LOGGER.log(Level.INFO, "walletB address: {0}", StringUtil.getStringFromKey(walletB.getPublicKey()));
+
+        String bind = System.getProperty(BIND_PROPERTY);
+        InetAddress address = (bind == null) ? InetAddress.getLoopbackAddress() : InetAddress.getByName(bind);
+        if (!address.isLoopbackAddress()) LOGGER.log(Level.WARNING, "RPC is exposed on {0} without authentication", address);
+        NodeRpcServer server = new NodeRpcServer(new RpcHandler(node, Map.of("walletA", walletA, "walletB", walletB)),
+                new InetSocketAddress(address, port));
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                server.close();
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Failed to close the RPC server: {0}", e.getMessage());
+            }
+        }));
+        Thread.currentThread().join();
+    }
+}
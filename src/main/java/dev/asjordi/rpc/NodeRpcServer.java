@@ -0,0 +1,272 @@
+package dev.asjordi.rpc;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The NodeRpcServer class serves {@link RpcHandler} requests over TCP, one JSON request or batch per line.
+ * A single selector thread owns every connection, so thousands of idle clients cost no threads.
+ * Requests are run on virtual threads; the requests of one connection run one after another,
+ * so a client may pipeline many requests without waiting and still gets the responses in order.
+ * A connection with {@link #MAX_QUEUED_RESPONSES} answers not yet written stops being read until the client
+ * has taken half of them, so a client that pipelines without reading can't make the server buffer without limit.
+ * @author Jordi <ejordi.ayala@gmail.com>
+ */
+public class NodeRpcServer implements AutoCloseable {
+
+    /**
+     * Longest request line accepted, in bytes. Longer lines close the connection.
+     */
+    public static final int MAX_LINE_BYTES = 1 << 20;
+    /**
+     * Most requests of one connection that may be in progress or waiting to be written before reading pauses.
+     */
+    public static final int MAX_QUEUED_RESPONSES = 64;
+
+    private final RpcHandler handler;
+    private final Selector selector;
+    private final ServerSocketChannel serverChannel;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final Queue<Connection> pendingWrites = new ConcurrentLinkedQueue<>();
+    private final Thread selectorThread;
+    private volatile boolean running = true;
+    private static final Logger LOGGER = Logger.getLogger(Logger.GLOBAL_LOGGER_NAME);
+
+    /**
+     * The state of one client: its partial request line, its queued responses and the tail of its request chain.
+     * The queued count and the read pause are only touched by the selector thread.
+     */
+    private static final class Connection {
+        final SocketChannel channel;
+        final ByteArrayOutputStream line = new ByteArrayOutputStream();
+        final Queue<ByteBuffer> writes = new ArrayDeque<>();
+        CompletableFuture<Void> tail = CompletableFuture.completedFuture(null);
+        volatile boolean closeRequested;
+        int queued;
+        boolean readPaused;
+        ByteBuffer unread;
+
+        Connection(SocketChannel channel) {
+            this.channel = channel;
+        }
+    }
+
+    /**
+     * Starts a server listening on the given address.
+     * @param handler The handler answering the requests.
+     * @param address The address to listen on, port 0 picks a free port.
+     * @throws IOException if the server socket can't be opened.
+     */
+    public NodeRpcServer(RpcHandler handler, InetSocketAddress address) throws IOException {
+        this.handler = handler;
+        this.selector = Selector.open();
+        this.serverChannel = ServerSocketChannel.open();
+        this.serverChannel.bind(address, 1024);
+        this.serverChannel.configureBlocking(false);
+        this.serverChannel.register(this.selector, SelectionKey.OP_ACCEPT);
+        this.selectorThread = new Thread(this::run, "rpc-selector");
+        this.selectorThread.start();
+        LOGGER.log(Level.INFO, "RPC server listening on {0}", getAddress());
+    }
+
+    /**
+     * @return The address the server is listening on.
+     */
+    public InetSocketAddress getAddress() {
+        try {
+            return (InetSocketAddress) this.serverChannel.getLocalAddress();
+        } catch (IOException e) {
+            throw new RuntimeException(e.getMessage());
+        }
+    }
+
+    /**
+     * Stops accepting requests and closes every connection.
+     */
+    @Override
+    public void close() throws IOException {
+        this.running = false;
+        this.selector.wakeup();
+        try {
+            this.selectorThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        this.executor.shutdownNow();
+        for (SelectionKey key : this.selector.keys()) key.channel().close();
+        this.selector.close();
+    }
+
+    private void run() {
+        while (this.running) {
+            try {
+                this.selector.select();
+                flushPendingWrites();
+
+                Iterator<SelectionKey> keys = this.selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) continue;
+                    try {
+                        if (key.isAcceptable()) accept();
+                        else {
+                            if (key.isReadable()) read(key);
+                            if (key.isValid() && key.isWritable()) write(key);
+                        }
+                    } catch (IOException e) {
+                        closeConnection(key);
+                    }
+                }
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "RPC selector failed: {0}", e.getMessage());
+            }
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel;
+        while ((channel = this.serverChannel.accept()) != null) {
+            channel.configureBlocking(false);
+            channel.register(this.selector, SelectionKey.OP_READ, new Connection(channel));
+        }
+    }
+
+    private void read(SelectionKey key) throws IOException {
+        Connection connection = (Connection) key.attachment();
+        ByteBuffer buffer = ByteBuffer.allocate(16 * 1024);
+        int read = 0;
+        while (!connection.readPaused && (read = connection.channel.read(buffer)) > 0) {
+            buffer.flip();
+            consume(key, connection, buffer);
+            if (connection.readPaused) break; // The rest of the buffer is kept as unread
+            buffer.clear();
+        }
+
+        if (read < 0) {
+            // The client is done sending: answer what is queued, then close
+            key.interestOps(key.interestOps() & ~SelectionKey.OP_READ);
+            connection.tail = connection.tail.thenRun(() -> {
+                connection.closeRequested = true;
+                this.pendingWrites.add(connection);
+                this.selector.wakeup();
+            });
+        }
+    }
+
+    /**
+     * Splits the bytes into request lines and submits them. Once the connection has too many queued responses,
+     * reading pauses and the rest of the buffer is kept until the client catches up.
+     */
+    private void consume(SelectionKey key, Connection connection, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            byte b = buffer.get();
+            if (b == '\n') {
+                submit(connection, connection.line.toString(StandardCharsets.UTF_8));
+                connection.line.reset();
+                if (connection.queued >= MAX_QUEUED_RESPONSES) {
+                    connection.readPaused = true;
+                    connection.unread = buffer.hasRemaining() ? buffer : null;
+                    key.interestOps(key.interestOps() & ~SelectionKey.OP_READ);
+                    return;
+                }
+            } else if (connection.line.size() >= MAX_LINE_BYTES) {
+                throw new IOException("Request line too long");
+            } else {
+                connection.line.write(b);
+            }
+        }
+    }
+
+    /**
+     * Resumes reading a paused connection, starting with the bytes left over when it paused.
+     */
+    private void resume(SelectionKey key, Connection connection) throws IOException {
+        connection.readPaused = false;
+        ByteBuffer unread = connection.unread;
+        connection.unread = null;
+        if (unread != null) consume(key, connection, unread);
+        if (!connection.readPaused) key.interestOps(key.interestOps() | SelectionKey.OP_READ);
+    }
+
+    /**
+     * Chains a request after the previous ones of the connection. A failing request still gets an error response,
+     * and the chain always completes normally, so one failure can't stall the requests behind it.
+     */
+    private void submit(Connection connection, String line) {
+        if (line.isBlank()) return;
+        connection.queued++;
+        connection.tail = connection.tail.thenRunAsync(() -> {
+            String response;
+            try {
+                response = this.handler.handle(line.strip()) + "\n";
+            } catch (RuntimeException e) {
+                LOGGER.log(Level.WARNING, "RPC request failed: {0}", e.toString());
+                response = RpcHandler.error(null, "Internal error") + "\n";
+            }
+            synchronized (connection.writes) {
+                connection.writes.add(ByteBuffer.wrap(response.getBytes(StandardCharsets.UTF_8)));
+            }
+            this.pendingWrites.add(connection);
+            this.selector.wakeup();
+        }, this.executor).exceptionally(e -> {
+            LOGGER.log(Level.WARNING, "RPC request could not be answered: {0}", e.toString());
+            return null;
+        });
+    }
+
+    private void flushPendingWrites() throws IOException {
+        Connection connection;
+        while ((connection = this.pendingWrites.poll()) != null) {
+            SelectionKey key = connection.channel.keyFor(this.selector);
+            if (key == null || !key.isValid()) continue;
+            key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+        }
+    }
+
+    private void write(SelectionKey key) throws IOException {
+        Connection connection = (Connection) key.attachment();
+        boolean drained = true;
+        synchronized (connection.writes) {
+            while (!connection.writes.isEmpty()) {
+                ByteBuffer buffer = connection.writes.peek();
+                connection.channel.write(buffer);
+                if (buffer.hasRemaining()) { // The socket is full, wait for the next write event
+                    drained = false;
+                    break;
+                }
+                connection.writes.poll();
+                connection.queued--;
+            }
+        }
+        if (connection.readPaused && connection.queued <= MAX_QUEUED_RESPONSES / 2) resume(key, connection);
+        if (!drained) return;
+        key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+        if (connection.closeRequested) closeConnection(key);
+    }
+
+    private void closeConnection(SelectionKey key) {
+        key.cancel();
+        try {
+            key.channel().close();
+        } catch (IOException e) {
+            LOGGER.log(Level.FINE, "Failed to close RPC connection: {0}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package dev.asjordi.rpc;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
+import dev.asjordi.model.Block;
+import dev.asjordi.model.Transaction;
+import dev.asjordi.model.Wallet;
+import dev.asjordi.node.Node;
+import dev.asjordi.util.StringUtil;
+import java.security.PublicKey;
+import java.util.Map;
+
+/**
+ * The RpcHandler class answers the node's JSON requests, independently of the transport.
+ * A request is a JSON object {"id": ..., "method": ..., "params": {...}} and its response is
+ * {"id": ..., "result": ...} or {"id": ..., "error": "..."}. A JSON array of requests is a batch,
+ * answered with an array of responses in the same order.
+ * Methods:
+ * <ul>
+ *     <li>getHeight: the height of the active chain.</li>
+ *     <li>getBalance {address}: the confirmed balance of a Base64 encoded public key.</li>
+ *     <li>getBlock {hash} or {height}: a block of the tree, or of the active chain.</li>
+ *     <li>sendFunds {from, to, amount}: pays an address from one of the wallets hosted by the node.</li>
+ *     <li>mineBlock: mines the mempool into a new block.</li>
+ * </ul>
+ * @author Jordi <ejordi.ayala@gmail.com>
+ */
+public class RpcHandler {
+
+    private final Node node;
+    private final Map<String, Wallet> wallets;
+
+    /**
+     * Constructor for the RpcHandler class.
+     * @param node The node the requests are run against.
+     * @param wallets The wallets hosted by the node, by name, which sendFunds may pay from.
+     */
+    public RpcHandler(Node node, Map<String, Wallet> wallets) {
+        this.node = node;
+        this.wallets = Map.copyOf(wallets);
+    }
+
+    /**
+     * Answers one line of the protocol: a single request or a batch.
+     * @param line The JSON request or array of requests.
+     * @return The JSON response or array of responses.
+     */
+    public String handle(String line) {
+        JsonElement request;
+        try {
+            request = JsonParser.parseString(line);
+        } catch (JsonParseException e) {
+            return error(null, "Parse error").toString();
+        }
+
+        if (request.isJsonArray()) {
+            JsonArray responses = new JsonArray();
+            for (JsonElement r : request.getAsJsonArray()) responses.add(handle(r));
+            return responses.toString();
+        }
+        return handle(request).toString();
+    }
+
+    private JsonObject handle(JsonElement element) {
+        if (!element.isJsonObject()) return error(null, "Request must be an object");
+        JsonObject request = element.getAsJsonObject();
+        JsonElement id = request.get("id");
+        JsonElement rawParams = request.has("params") ? request.get("params") : new JsonObject();
+        if (!rawParams.isJsonObject()) return error(id, "Invalid params: must be an object");
+
+        try {
+            JsonObject params = rawParams.getAsJsonObject();
+            String method = request.get("method").getAsString();
+            JsonElement result = switch (method) {
+                case "getHeight" -> new JsonPrimitive(node.getHeight());
+                case "getBalance" -> new JsonPrimitive(node.getBalance(address(params, "address")));
+                case "getBlock" -> getBlock(params);
+                case "sendFunds" -> sendFunds(params);
+                case "mineBlock" -> blockToJson(node.mineBlock());
+                default -> throw new IllegalArgumentException("Unknown method: " + method);
+            };
+            JsonObject response = new JsonObject();
+            response.add("id", id);
+            response.add("result", result);
+            return response;
+        } catch (RuntimeException e) {
+            return error(id, e.getMessage() == null ? e.toString() : e.getMessage());
+        }
+    }
+
+    private JsonElement getBlock(JsonObject params) {
+        Block block = params.has("hash") ? node.getBlock(params.get("hash").getAsString()) : node.getBlock(params.get("height").getAsInt());
+        if (block == null) throw new IllegalArgumentException("Block not found");
+        return blockToJson(block);
+    }
+
+    private JsonElement sendFunds(JsonObject params) {
+        Wallet from = wallets.get(params.get("from").getAsString());
+        if (from == null) throw new IllegalArgumentException("Unknown wallet");
+        Transaction t = node.submitTransaction(from, address(params, "to"), params.get("amount").getAsLong());
+        if (t == null) throw new IllegalStateException("Transaction rejected");
+        return new JsonPrimitive(t.transactionId);
+    }
+
+    private static PublicKey address(JsonObject params, String name) {
+        return StringUtil.getPublicKeyFromString(params.get(name).getAsString());
+    }
+
+    private static JsonObject blockToJson(Block block) {
+        JsonObject json = new JsonObject();
+        json.addProperty("hash", block.getHash());
+        json.addProperty("previousHash", block.getPreviousHash());
+        json.addProperty("merkleRoot", block.getMerkleRoot());
+        json.addProperty("timeStamp", block.getTimeStamp());
+        json.addProperty("bits", Integer.toHexString(block.getBits()));
+        json.addProperty("nonce", block.getNonce());
+        JsonArray transactions = new JsonArray();
+        for (Transaction t : block.getTransactions()) transactions.add(t.transactionId);
+        json.add("transactions", transactions);
+        return json;
+    }
+
+    /**
+     * Builds an error response.
+     * @param id The id of the request, or null if it couldn't be read.
+     * @param message The error message.
+     * @return The response.
+     */
+    static JsonObject error(JsonElement id, String message) {
+        JsonObject response = new JsonObject();
+        response.add("id", id);
+        response.addProperty("error", message);
+        return response;
+    }
+}
@@ -0,0 +1,220 @@
+package dev.asjordi.sim;
+
+import dev.asjordi.model.Block;
+import dev.asjordi.model.Transaction;
+import dev.asjordi.node.Node;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The NetworkSimulator class runs several nodes in one process and gossips blocks and transactions between them.
+ * Each message is delivered to a peer after an injected latency of a base delay plus a random jitter.
+ * A node relays a block or transaction to its other peers only after accepting it, as a real node would.
+ * The simulator records when each item was first broadcast and when each node accepted it, to report propagation times.
+ * @author Jordi <ejordi.ayala@gmail.com>
+ */
+public class NetworkSimulator implements AutoCloseable {
+
+    private final Map<String, Node> nodes = new LinkedHashMap<>();
+    private final Map<String, Set<String>> peers = new LinkedHashMap<>();
+    private final Map<String, Long> origins = new ConcurrentHashMap<>();
+    private final Map<String, Map<String, Long>> arrivals = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService scheduler;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final long baseLatencyMillis;
+    private final long jitterMillis;
+    private final Random random;
+
+    /**
+     * Constructor for the NetworkSimulator class.
+     * @param baseLatencyMillis The minimum delay of every message, in milliseconds.
+     * @param jitterMillis The maximum random delay added to every message, in milliseconds.
+     * @param seed The seed of the jitter, so runs can be repeated.
+     */
+    public NetworkSimulator(long baseLatencyMillis, long jitterMillis, long seed) {
+        this.baseLatencyMillis = baseLatencyMillis;
+        this.jitterMillis = jitterMillis;
+        this.random = new Random(seed);
+        this.scheduler = Executors.newScheduledThreadPool(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Adds a node to the network, without peers.
+     * @param node The node to add.
+     */
+    public void addNode(Node node) {
+        this.nodes.put(node.getName(), node);
+        this.peers.put(node.getName(), ConcurrentHashMap.newKeySet());
+    }
+
+    /**
+     * Connects two nodes in both directions.
+     * @param a The name of the first node.
+     * @param b The name of the second node.
+     */
+    public void connect(String a, String b) {
+        this.peers.get(a).add(b);
+        this.peers.get(b).add(a);
+    }
+
+    /**
+     * Connects every node to every other node.
+     */
+    public void connectAll() {
+        List<String> names = new ArrayList<>(this.nodes.keySet());
+        for (int i = 0; i < names.size(); i++) {
+            for (int j = i + 1; j < names.size(); j++) connect(names.get(i), names.get(j));
+        }
+    }
+
+    /**
+     * @param name The name of the node.
+     * @return The node, or null if there is no node with that name.
+     */
+    public Node getNode(String name) {
+        return this.nodes.get(name);
+    }
+
+    /**
+     * @return The nodes of the network, in the order they were added.
+     */
+    public List<Node> getNodes() {
+        return List.copyOf(this.nodes.values());
+    }
+
+    /**
+     * Has a node mine a block from its mempool and gossips the block to the network.
+     * @param name The name of the mining node.
+     * @return The mined block.
+     */
+    public Block mineAndBroadcast(String name) {
+        Node origin = this.nodes.get(name);
+        Block block = origin.mineBlock();
+        String id = block.getHash();
+        this.origins.put(id, System.nanoTime());
+        recordArrival(id, name);
+        relayBlock(origin, block);
+        return block;
+    }
+
+    /**
+     * Gossips a transaction already accepted by a node to the network.
+     * @param name The name of the node the transaction was submitted to.
+     * @param t The processed transaction.
+     */
+    public void broadcastTransaction(String name, Transaction t) {
+        this.origins.put(t.transactionId, System.nanoTime());
+        recordArrival(t.transactionId, name);
+        relayTransaction(this.nodes.get(name), t);
+    }
+
+    /**
+     * Waits until every message in flight has been delivered.
+     * @param timeoutMillis The maximum time to wait, in milliseconds.
+     * @return True if the network went quiet, false if the timeout elapsed first.
+     * @throws InterruptedException if the waiting thread is interrupted.
+     */
+    public boolean awaitQuiescence(long timeoutMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (this.inFlight.get() > 0) {
+            if (System.currentTimeMillis() > deadline) return false;
+            Thread.sleep(1);
+        }
+        return true;
+    }
+
+    /**
+     * @param id The hash of a block or the ID of a transaction.
+     * @return The time each node took to accept the item after it was broadcast, in milliseconds, by node name.
+     */
+    public Map<String, Double> getPropagationMillis(String id) {
+        Long origin = this.origins.get(id);
+        Map<String, Long> seen = this.arrivals.getOrDefault(id, Map.of());
+        Map<String, Double> millis = new LinkedHashMap<>();
+        if (origin == null) return millis;
+        for (String node : this.nodes.keySet()) {
+            Long at = seen.get(node);
+            if (at != null) millis.put(node, (at - origin) / 1_000_000.0);
+        }
+        return millis;
+    }
+
+    /**
+     * Summarizes the propagation of every broadcast item: how many nodes it reached,
+     * and the median and maximum time it took.
+     * @return A report with one line per item.
+     */
+    public String getPropagationReport() {
+        StringBuilder report = new StringBuilder();
+        for (String id : this.origins.keySet()) {
+            List<Double> times = new ArrayList<>(getPropagationMillis(id).values());
+            Collections.sort(times);
+            if (times.isEmpty()) continue;
+            report.append(String.format("%s reached %d/%d nodes, median %.1f ms, max %.1f ms%n",
+                    id.substring(0, Math.min(12, id.length())), times.size(), this.nodes.size(),
+                    times.get(times.size() / 2), times.get(times.size() - 1)));
+        }
+        return report.toString();
+    }
+
+    /**
+     * Stops delivering messages.
+     */
+    @Override
+    public void close() {
+        this.scheduler.shutdownNow();
+    }
+
+    private void relayBlock(Node from, Block block) {
+        for (String peer : this.peers.get(from.getName())) {
+            deliver(() -> {
+                Node to = this.nodes.get(peer);
+                for (Block accepted : to.receiveBlock(block)) {
+                    recordArrival(accepted.getHash(), peer);
+                    relayBlock(to, accepted);
+                }
+            });
+        }
+    }
+
+    private void relayTransaction(Node from, Transaction t) {
+        for (String peer : this.peers.get(from.getName())) {
+            deliver(() -> {
+                Node to = this.nodes.get(peer);
+                if (to.receiveTransaction(t)) {
+                    recordArrival(t.transactionId, peer);
+                    relayTransaction(to, t);
+                }
+            });
+        }
+    }
+
+    private void deliver(Runnable message) {
+        long delay;
+        synchronized (this.random) {
+            delay = this.baseLatencyMillis + (this.jitterMillis > 0 ? (long) (this.random.nextDouble() * this.jitterMillis) : 0);
+        }
+        this.inFlight.incrementAndGet();
+        this.scheduler.schedule(() -> {
+            try {
+                message.run();
+            } finally {
+                this.inFlight.decrementAndGet();
+            }
+        }, delay, TimeUnit.MILLISECONDS);
+    }
+
+    private void recordArrival(String id, String node) {
+        this.arrivals.computeIfAbsent(id, k -> new ConcurrentHashMap<>()).putIfAbsent(node, System.nanoTime());
+    }
+}
@@ -0,0 +1,50 @@
+package dev.asjordi.sim;
+
+import dev.asjordi.chain.Difficulty;
+import dev.asjordi.chain.DifficultyAdjuster;
+import dev.asjordi.model.Block;
+import dev.asjordi.model.Transaction;
+import dev.asjordi.model.Wallet;
+import dev.asjordi.node.Node;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Runs a small network of simulated nodes: one wallet pays another, a few nodes take turns mining,
+ * and the propagation times of every block and transaction are printed.
+ * Usage: Simulation [nodes] [base latency ms] [jitter ms]
+ * @author Jordi <ejordi.ayala@gmail.com>
+ */
+public class Simulation {
+
+    private static final Logger LOGGER = Logger.getLogger(Logger.GLOBAL_LOGGER_NAME);
+
+    public static void main(String[] args) throws InterruptedException {
+        int nodeCount = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+        long latency = args.length > 1 ? Long.parseLong(args[1]) : 20;
+        long jitter = args.length > 2 ? Long.parseLong(args[2]) : 30;
+
+        Wallet walletA = new Wallet();
+        Wallet walletB = new Wallet();
+        int bits = Difficulty.bitsForLeadingZeros(3);
+        DifficultyAdjuster adjuster = new DifficultyAdjuster(bits, 10_000, 10);
+        Block genesis = Node.createGenesisBlock(walletA.getPublicKey(), 100 * Transaction.COIN, bits);
+
+        try (NetworkSimulator network = new NetworkSimulator(latency, jitter, 42)) {
+            for (int i = 0; i < nodeCount; i++) network.addNode(new Node("node" + i, genesis, adjuster));
+            network.connectAll();
+
+            for (int round = 0; round < 3; round++) {
+                Node payer = network.getNodes().get(round % nodeCount);
+                Transaction t = payer.submitTransaction(walletA, walletB.getPublicKey(), 10 * Transaction.COIN);
+                network.broadcastTransaction(payer.getName(), t);
+                network.awaitQuiescence(10_000);
+                network.mineAndBroadcast(network.getNodes().get((round + 1) % nodeCount).getName());
+                network.awaitQuiescence(10_000);
+            }
+
+            LOGGER.log(Level.INFO, "Propagation report:\n{0}", network.getPropagationReport());
+            for (Node node : network.getNodes()) LOGGER.log(Level.INFO, "{0}", node);
+        }
+    }
+}
@@ -0,0 +1,341 @@
+package dev.asjordi.store;
+
+import dev.asjordi.chain.BlockUndo;
+import dev.asjordi.chain.ChainListener;
+import dev.asjordi.model.Address;
+import dev.asjordi.model.Block;
+import dev.asjordi.model.OutPoint;
+import dev.asjordi.model.Transaction;
+import dev.asjordi.model.TransactionInput;
+import dev.asjordi.model.TransactionOutput;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The AddressIndex class keeps the history and running balance of every address, updated block by block
+ * as the chain grows or reorganizes.
+ * Each transaction that changes an address's coins adds one fixed 52 byte record to an append-only file:
+ * the address, the block height and position of the transaction, the change in balance, the balance after it,
+ * and the index of the address's previous record. Only the newest record of each address and the first record
+ * of each height are kept in memory, so a history query follows the backward links and reads only the records
+ * it returns, and disconnecting a block truncates the file.
+ * A header at the start of the file holds the hash and height of the last indexed block, written after its records,
+ * so a reopened index is only replayed the blocks after it, and records of a block whose header write was cut short
+ * by a crash are dropped.
+ * All methods are synchronized, so queries can run while blocks are being connected.
+ * @author Jordi <ejordi.ayala@gmail.com>
+ */
+public class AddressIndex implements ChainListener, AutoCloseable {
+
+    /**
+     * Size in bytes of one record.
+     */
+    public static final int RECORD_BYTES = 52;
+    /**
+     * Size in bytes of the header: the hash of the last indexed block, zeros if there is none, and its height.
+     */
+    public static final int HEADER_BYTES = 36;
+
+    private static final int HEIGHT_OFFSET = 20;
+    private static final int INDEX_OFFSET = 24;
+    private static final int DELTA_OFFSET = 28;
+    private static final int BALANCE_OFFSET = 36;
+    private static final int PREVIOUS_OFFSET = 44;
+
+    private final FileChannel channel;
+    private final Map<Address, Long> heads = new HashMap<>();
+    private final List<Long> heightStarts = new ArrayList<>();
+    private long records;
+    private String lastBlockHash;
+
+    /**
+     * One change to an address's coins.
+     * @param height The height of the block holding the transaction.
+     * @param transactionIndex The position of the transaction in its block.
+     * @param delta The change in the address's balance, in minimal units; negative when it spent more than it received.
+     * @param balance The balance of the address after the transaction, in minimal units.
+     */
+    public record Entry(int height, int transactionIndex, long delta, long balance) {}
+
+    private AddressIndex(FileChannel channel) {
+        this.channel = channel;
+    }
+
+    /**
+     * Opens an index, creating the file if it doesn't exist, and reloads the newest record of each address.
+     * A record cut short by a crash is dropped from the end of the file.
+     * @param file The file holding the records.
+     * @return The index.
+     */
+    public static AddressIndex open(Path file) {
+        try {
+            FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            AddressIndex index = new AddressIndex(channel);
+            index.scan();
+            return index;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Indexes the transactions of a block. A block at a height already indexed replaces it and everything above it.
+     * @param block The connected block.
+     * @param height The height of the block.
+     * @param undo The undo journal of the block, giving the owners of the outputs it spent.
+     */
+    @Override
+    public synchronized void blockConnected(Block block, int height, BlockUndo undo) {
+        truncateTo(height);
+        while (heightStarts.size() <= height) heightStarts.add(records);
+
+        Map<OutPoint, TransactionOutput> spendable = new HashMap<>();
+        for (TransactionOutput o : undo.getSpentOutputs()) spendable.put(o.getId(), o);
+
+        List<Transaction> transactions = block.getTransactions();
+        List<byte[]> pending = new ArrayList<>();
+        for (int t = 0; t < transactions.size(); t++) {
+            Transaction transaction = transactions.get(t);
+            Map<Address, Long> deltas = new LinkedHashMap<>();
+            if (transaction.inputs != null) {
+                for (TransactionInput i : transaction.inputs) {
+                    TransactionOutput spent = spendable.remove(i.getTransactionOutputId());
+                    if (spent != null) deltas.merge(spent.getOwner(), -spent.getValue(), Long::sum);
+                }
+            }
+            for (TransactionOutput o : transaction.outputs) {
+                deltas.merge(o.getOwner(), o.getValue(), Long::sum);
+                spendable.put(o.getId(), o);
+            }
+
+            for (Map.Entry<Address, Long> e : deltas.entrySet()) {
+                Long previous = heads.get(e.getKey());
+                long balance = 0;
+                if (previous != null && previous >= records) {
+                    balance = ByteBuffer.wrap(pending.get((int) (previous - records))).getLong(BALANCE_OFFSET);
+                } else if (previous != null) {
+                    balance = readBalance(previous);
+                }
+                pending.add(record(e.getKey(), height, t, e.getValue(), balance + e.getValue(), previous == null ? -1 : previous));
+                heads.put(e.getKey(), records + pending.size() - 1);
+            }
+        }
+
+        ByteBuffer batch = ByteBuffer.allocate(pending.size() * RECORD_BYTES);
+        for (byte[] r : pending) batch.put(r);
+        batch.flip();
+        write(batch, offset(records));
+        records += pending.size();
+        writeHeader(block.getHash(), height);
+    }
+
+    /**
+     * Removes the records of a disconnected block and everything above it.
+     * @param block The disconnected block.
+     * @param height The height the block had.
+     */
+    @Override
+    public synchronized void blockDisconnected(Block block, int height) {
+        truncateTo(height);
+        writeHeader(height == 0 ? null : block.getPreviousHash(), height - 1);
+    }
+
+    /**
+     * @return The hash of the last indexed block, or null if the index is empty.
+     */
+    @Override
+    public synchronized String getLastBlockHash() {
+        return lastBlockHash;
+    }
+
+    /**
+     * @param address The address.
+     * @return The current balance of the address, in minimal units.
+     */
+    public synchronized long getBalance(Address address) {
+        Long head = heads.get(address);
+        return head == null ? 0 : readBalance(head);
+    }
+
+    /**
+     * Returns the balance of an address once the block at the given height was connected.
+     * The cost grows with the number of the address's changes above that height, not with the chain length.
+     * @param address The address.
+     * @param height The block height.
+     * @return The balance at that height, in minimal units.
+     */
+    public synchronized long getBalanceAt(Address address, int height) {
+        Long index = heads.get(address);
+        ByteBuffer record = ByteBuffer.allocate(RECORD_BYTES);
+        while (index != null && index >= 0) {
+            read(record, index);
+            if (record.getInt(HEIGHT_OFFSET) <= height) return record.getLong(BALANCE_OFFSET);
+            index = record.getLong(PREVIOUS_OFFSET);
+        }
+        return 0;
+    }
+
+    /**
+     * Returns the newest changes of an address, newest first.
+     * @param address The address.
+     * @param limit The maximum number of entries returned.
+     * @return The entries.
+     */
+    public synchronized List<Entry> getHistory(Address address, int limit) {
+        List<Entry> history = new ArrayList<>();
+        Long index = heads.get(address);
+        ByteBuffer record = ByteBuffer.allocate(RECORD_BYTES);
+        while (index != null && index >= 0 && history.size() < limit) {
+            read(record, index);
+            history.add(new Entry(record.getInt(HEIGHT_OFFSET), record.getInt(INDEX_OFFSET),
+                    record.getLong(DELTA_OFFSET), record.getLong(BALANCE_OFFSET)));
+            index = record.getLong(PREVIOUS_OFFSET);
+        }
+        return history;
+    }
+
+    /**
+     * @return The number of records in the index.
+     */
+    public synchronized long size() {
+        return records;
+    }
+
+    /**
+     * @return The height of the last indexed block, -1 if the index is empty.
+     */
+    public synchronized int getHeight() {
+        return heightStarts.size() - 1;
+    }
+
+    /**
+     * Closes the file. The index can't be used afterwards.
+     */
+    @Override
+    public synchronized void close() {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static byte[] record(Address address, int height, int transactionIndex, long delta, long balance, long previous) {
+        return ByteBuffer.allocate(RECORD_BYTES).put(address.toBytes()).putInt(height).putInt(transactionIndex)
+                .putLong(delta).putLong(balance).putLong(previous).array();
+    }
+
+    private long readBalance(long index) {
+        ByteBuffer record = ByteBuffer.allocate(RECORD_BYTES);
+        read(record, index);
+        return record.getLong(BALANCE_OFFSET);
+    }
+
+    /**
+     * Drops the records of the given height and above, pointing each address back to its previous record.
+     */
+    private void truncateTo(int height) {
+        if (height >= heightStarts.size()) return;
+        long start = heightStarts.get(height);
+        ByteBuffer record = ByteBuffer.allocate(RECORD_BYTES);
+        for (long i = records - 1; i >= start; i--) {
+            read(record, i);
+            Address address = Address.fromBytes(addressBytes(record));
+            long previous = record.getLong(PREVIOUS_OFFSET);
+            if (previous < 0) heads.remove(address);
+            else heads.put(address, previous);
+        }
+        try {
+            channel.truncate(offset(start));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        records = start;
+        heightStarts.subList(height, heightStarts.size()).clear();
+    }
+
+    /**
+     * Reads the header, then rebuilds the heads and height starts from the records up to the last indexed block,
+     * truncating a partial record and the records of a block the header doesn't cover.
+     */
+    private void scan() throws IOException {
+        if (channel.size() < HEADER_BYTES) {
+            channel.truncate(0);
+            writeHeader(null, -1);
+        }
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        while (header.hasRemaining()) {
+            if (channel.read(header, header.position()) < 0) throw new IOException("Unexpected end of index file");
+        }
+        byte[] hash = new byte[HEADER_BYTES - Integer.BYTES];
+        header.get(0, hash);
+        int lastHeight = header.getInt(hash.length);
+        lastBlockHash = lastHeight < 0 ? null : HexFormat.of().formatHex(hash);
+
+        long count = (channel.size() - HEADER_BYTES) / RECORD_BYTES;
+        ByteBuffer record = ByteBuffer.allocate(RECORD_BYTES);
+        for (long i = 0; i < count; i++) {
+            read(record, i);
+            int height = record.getInt(HEIGHT_OFFSET);
+            if (height > lastHeight) {
+                count = i;
+                break;
+            }
+            while (heightStarts.size() <= height) heightStarts.add(i);
+            heads.put(Address.fromBytes(addressBytes(record)), i);
+        }
+        while (heightStarts.size() <= lastHeight) heightStarts.add(count);
+        if (channel.size() != offset(count)) channel.truncate(offset(count));
+        records = count;
+    }
+
+    /**
+     * Records the last indexed block in the header.
+     */
+    private void writeHeader(String hash, int height) {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        if (hash != null) header.put(HexFormat.of().parseHex(hash));
+        header.putInt(HEADER_BYTES - Integer.BYTES, height);
+        write(header.clear(), 0);
+        lastBlockHash = hash;
+    }
+
+    private static long offset(long index) {
+        return HEADER_BYTES + index * RECORD_BYTES;
+    }
+
+    private static byte[] addressBytes(ByteBuffer record) {
+        byte[] address = new byte[Address.BYTES];
+        record.get(0, address);
+        return address;
+    }
+
+    private void read(ByteBuffer record, long index) {
+        record.clear();
+        try {
+            while (record.hasRemaining()) {
+                if (channel.read(record, offset(index) + record.position()) < 0) throw new IOException("Unexpected end of index file");
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void write(ByteBuffer buffer, long position) {
+        try {
+            while (buffer.hasRemaining()) channel.write(buffer, position + buffer.position());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package dev.asjordi.store;
+
+import dev.asjordi.model.Address;
+import dev.asjordi.model.KeyInterner;
+import dev.asjordi.model.OutPoint;
+import dev.asjordi.model.Payment;
+import dev.asjordi.model.Transaction;
+import dev.asjordi.model.TransactionInput;
+import dev.asjordi.model.TransactionOutput;
+import dev.asjordi.util.StringUtil;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.security.PublicKey;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The BlockCodec class converts the transactions of a block to a compact binary form and back.
+ * Every distinct public key of the body is written once in a table at the start and referred to by index,
+ * so a key that appears as sender and payment recipient costs its encoding only once.
+ * Output owners are written as their 20 byte {@link Address}.
+ * @author Jordi <ejordi.ayala@gmail.com>
+ */
+public final class BlockCodec {
+
+    private static final int VERSION = 2;
+
+    private BlockCodec() {
+    }
+
+    /**
+     * Encodes the transactions of a block.
+     * @param transactions The processed transactions, in block order.
+     * @return The encoded body.
+     */
+    public static byte[] encodeBody(List<Transaction> transactions) {
+        Map<PublicKey, Integer> keys = new HashMap<>();
+        List<PublicKey> keyTable = new ArrayList<>();
+        for (Transaction t : transactions) {
+            index(t.sender, keys, keyTable);
+            for (Payment p : t.payments) index(p.recipient(), keys, keyTable);
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(VERSION);
+            out.writeInt(keyTable.size());
+            for (PublicKey key : keyTable) out.writeUTF(StringUtil.getStringFromKey(key));
+
+            out.writeInt(transactions.size());
+            for (Transaction t : transactions) {
+                out.writeUTF(t.transactionId);
+                out.writeInt(keys.get(t.sender));
+                out.writeInt(t.payments.size());
+                for (Payment p : t.payments) {
+                    out.writeInt(keys.get(p.recipient()));
+                    out.writeLong(p.value());
+                }
+                writeBytes(out, t.signature);
+
+                out.writeInt(t.inputs == null ? -1 : t.inputs.size());
+                if (t.inputs != null) {
+                    for (TransactionInput i : t.inputs) {
+                        writeOutPoint(out, i.getTransactionOutputId());
+                        out.writeBoolean(i.getUTXO() != null);
+                        if (i.getUTXO() != null) writeOutput(out, i.getUTXO());
+                    }
+                }
+
+                out.writeInt(t.outputs.size());
+                for (TransactionOutput o : t.outputs) writeOutput(out, o);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Decodes the transactions of a block.
+     * @param body The encoded body, see {@link #encodeBody(List)}.
+     * @param keyInterner The interner the decoded keys are shared through.
+     * @return The processed transactions, in block order.
+     * @throws IllegalArgumentException if the body is malformed.
+     */
+    public static List<Transaction> decodeBody(byte[] body, KeyInterner keyInterner) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(body))) {
+            int version = in.readUnsignedByte();
+            if (version != VERSION) throw new IllegalArgumentException("Unknown block body version " + version);
+
+            PublicKey[] keys = new PublicKey[in.readInt()];
+            for (int k = 0; k < keys.length; k++) keys[k] = keyInterner.intern(StringUtil.getPublicKeyFromString(in.readUTF()));
+
+            int count = in.readInt();
+            List<Transaction> transactions = new ArrayList<>(count);
+            for (int n = 0; n < count; n++) {
+                String transactionId = in.readUTF();
+                PublicKey sender = keys[in.readInt()];
+                List<Payment> payments = new ArrayList<>();
+                for (int p = in.readInt(); p > 0; p--) payments.add(new Payment(keys[in.readInt()], in.readLong()));
+                byte[] signature = readBytes(in);
+
+                List<TransactionInput> inputs = null;
+                int inputCount = in.readInt();
+                if (inputCount >= 0) {
+                    inputs = new LinkedList<>();
+                    for (int i = 0; i < inputCount; i++) {
+                        TransactionInput input = new TransactionInput(readOutPoint(in));
+                        if (in.readBoolean()) input.setUTXO(readOutput(in));
+                        inputs.add(input);
+                    }
+                }
+
+                Transaction t = new Transaction(sender, payments, inputs);
+                t.transactionId = transactionId;
+                t.signature = signature;
+                for (int o = in.readInt(); o > 0; o--) t.outputs.add(readOutput(in));
+                transactions.add(t);
+            }
+            return transactions;
+        } catch (IOException | RuntimeException e) {
+            throw new IllegalArgumentException("Malformed block body", e);
+        }
+    }
+
+    private static void index(PublicKey key, Map<PublicKey, Integer> keys, List<PublicKey> keyTable) {
+        if (keys.putIfAbsent(key, keyTable.size()) == null) keyTable.add(key);
+    }
+
+    private static void writeOutput(DataOutputStream out, TransactionOutput o) throws IOException {
+        writeOutPoint(out, o.getId());
+        out.write(o.getOwner().toBytes());
+        out.writeLong(o.getValue());
+        // Outputs read from an off-heap UTXO set don't know their parent transaction
+        out.writeUTF(o.getParentTransactionId() == null ? "" : o.getParentTransactionId());
+    }
+
+    private static TransactionOutput readOutput(DataInputStream in) throws IOException {
+        OutPoint id = readOutPoint(in);
+        Address owner = Address.fromBytes(in.readNBytes(Address.BYTES));
+        long value = in.readLong();
+        String parentTransactionId = in.readUTF();
+        return new TransactionOutput(id, owner, value, parentTransactionId.isEmpty() ? null : parentTransactionId);
+    }
+
+    private static void writeOutPoint(DataOutputStream out, OutPoint id) throws IOException {
+        out.writeLong(id.a());
+        out.writeLong(id.b());
+        out.writeLong(id.c());
+        out.writeLong(id.d());
+    }
+
+    private static OutPoint readOutPoint(DataInputStream in) throws IOException {
+        return new OutPoint(in.readLong(), in.readLong(), in.readLong(), in.readLong());
+    }
+
+    private static void writeBytes(DataOutputStream out, byte[] bytes) throws IOException {
+        out.writeInt(bytes == null ? -1 : bytes.length);
+        if (bytes != null) out.write(bytes);
+    }
+
+    private static byte[] readBytes(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) return null;
+        return in.readNBytes(length);
+    }
+}
@@ -0,0 +1,222 @@
+package dev.asjordi.store;
+
+import dev.asjordi.model.BlockBodySource;
+import dev.asjordi.model.CompactTransaction;
+import dev.asjordi.model.KeyInterner;
+import dev.asjordi.model.Transaction;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The BlockStore class keeps pruned block bodies on disk and serves them back on demand.
+ * Bodies are appended to a single file as records of a 32 byte block hash, a length and the encoded body,
+ * and an in-memory index maps each hash to its record. Recently stored or read bodies are kept decoded,
+ * as immutable {@link CompactTransaction}s, in an LRU cache bounded by their encoded size, so hot blocks
+ * don't touch the disk. Each read gets its own transaction objects, so callers can't change the cache.
+ * All methods are synchronized, so one store can serve several readers.
+ * @author Jordi <ejordi.ayala@gmail.com>
+ */
+public class BlockStore implements BlockBodySource, AutoCloseable {
+
+    private static final int HASH_BYTES = 32;
+    private static final int HEADER_BYTES = HASH_BYTES + Integer.BYTES;
+
+    private final FileChannel channel;
+    private final Map<String, long[]> index = new HashMap<>();
+    private final LinkedHashMap<String, CachedBody> cache = new LinkedHashMap<>(16, 0.75f, true);
+    private final long cacheBytes;
+    private final KeyInterner keyInterner;
+    private long cachedBytes;
+    private long hits;
+    private long misses;
+
+    private record CachedBody(List<CompactTransaction> transactions, int bytes) {}
+
+    private BlockStore(FileChannel channel, long cacheBytes, KeyInterner keyInterner) {
+        this.channel = channel;
+        this.cacheBytes = cacheBytes;
+        this.keyInterner = keyInterner;
+    }
+
+    /**
+     * Opens a store, creating the file if it doesn't exist, and indexes the bodies already in it.
+     * A record cut short by a crash is dropped from the end of the file.
+     * @param file The file holding the bodies.
+     * @param cacheBytes The maximum encoded size of the bodies kept in the cache.
+     * @param keyInterner The interner the keys of cached bodies are shared through, usually the node's.
+     * @return The store.
+     */
+    public static BlockStore open(Path file, long cacheBytes, KeyInterner keyInterner) {
+        try {
+            FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            BlockStore store = new BlockStore(channel, cacheBytes, keyInterner);
+            store.scan();
+            return store;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Appends a block body to the store, unless it already holds it, and caches it.
+     * @param hash The hash of the block.
+     * @param transactions The block's transactions.
+     */
+    public synchronized void put(String hash, List<Transaction> transactions) {
+        if (index.containsKey(hash)) return;
+        byte[] body = BlockCodec.encodeBody(transactions);
+        ByteBuffer record = ByteBuffer.allocate(HEADER_BYTES + body.length);
+        record.put(HexFormat.of().parseHex(hash)).putInt(body.length).put(body).flip();
+        try {
+            long position = channel.size();
+            while (record.hasRemaining()) channel.write(record, position + record.position());
+            index.put(hash, new long[] {position + HEADER_BYTES, body.length});
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        cache(hash, compact(transactions), body.length);
+    }
+
+    /**
+     * Reads a block body, from the cache if it is there.
+     * @param hash The hash of the block.
+     * @return The block's transactions, as an unmodifiable list of new objects, without the outputs their inputs spend.
+     * @throws IllegalStateException if the store doesn't hold the block.
+     */
+    @Override
+    public synchronized List<Transaction> fetchBody(String hash) {
+        CachedBody cached = cache.get(hash);
+        if (cached != null) {
+            hits++;
+            return expand(cached.transactions());
+        }
+        misses++;
+
+        long[] location = index.get(hash);
+        if (location == null) throw new IllegalStateException("Block " + hash + " isn't in the store");
+        ByteBuffer body = ByteBuffer.allocate((int) location[1]);
+        try {
+            while (body.hasRemaining()) {
+                if (channel.read(body, location[0] + body.position()) < 0) throw new IOException("Unexpected end of block file");
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        List<CompactTransaction> transactions = compact(BlockCodec.decodeBody(body.array(), keyInterner));
+        cache(hash, transactions, body.capacity());
+        return expand(transactions);
+    }
+
+    /**
+     * @param hash The hash of the block.
+     * @return True if the store holds the block's body.
+     */
+    public synchronized boolean contains(String hash) {
+        return index.containsKey(hash);
+    }
+
+    /**
+     * @return The number of bodies in the store.
+     */
+    public synchronized int size() {
+        return index.size();
+    }
+
+    /**
+     * @return The encoded size of the bodies currently cached.
+     */
+    public synchronized long getCachedBytes() {
+        return cachedBytes;
+    }
+
+    /**
+     * @return The number of reads served from the cache.
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * @return The number of reads that went to disk.
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Closes the file. The store can't be used afterwards.
+     */
+    @Override
+    public synchronized void close() {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        cache.clear();
+        cachedBytes = 0;
+    }
+
+    /**
+     * @return A string representation of the store with its cache statistics.
+     */
+    @Override
+    public synchronized String toString() {
+        return "BlockStore{" + "blocks=" + index.size() + ", cachedBlocks=" + cache.size() +
+                ", cachedBytes=" + cachedBytes + ", hits=" + hits + ", misses=" + misses + '}';
+    }
+
+    private List<CompactTransaction> compact(List<Transaction> transactions) {
+        List<CompactTransaction> compact = new ArrayList<>(transactions.size());
+        for (Transaction t : transactions) compact.add(CompactTransaction.of(t, keyInterner));
+        return List.copyOf(compact);
+    }
+
+    private static List<Transaction> expand(List<CompactTransaction> transactions) {
+        List<Transaction> expanded = new ArrayList<>(transactions.size());
+        for (CompactTransaction t : transactions) expanded.add(t.toTransaction());
+        return List.copyOf(expanded);
+    }
+
+    private void cache(String hash, List<CompactTransaction> transactions, int bytes) {
+        if (bytes > cacheBytes) return;
+        CachedBody previous = cache.put(hash, new CachedBody(transactions, bytes));
+        if (previous != null) cachedBytes -= previous.bytes();
+        cachedBytes += bytes;
+
+        var eldest = cache.entrySet().iterator();
+        while (cachedBytes > cacheBytes) {
+            cachedBytes -= eldest.next().getValue().bytes();
+            eldest.remove();
+        }
+    }
+
+    /**
+     * Rebuilds the index from the records in the file, truncating a partial record at the end.
+     */
+    private void scan() throws IOException {
+        long size = channel.size();
+        long position = 0;
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        while (position + HEADER_BYTES <= size) {
+            header.clear();
+            while (header.hasRemaining()) channel.read(header, position + header.position());
+            int length = header.getInt(HASH_BYTES);
+            if (length < 0 || position + HEADER_BYTES + length > size) break;
+            String hash = HexFormat.of().formatHex(header.array(), 0, HASH_BYTES);
+            index.put(hash, new long[] {position + HEADER_BYTES, length});
+            position += HEADER_BYTES + length;
+        }
+        if (position < size) channel.truncate(position);
+    }
+}
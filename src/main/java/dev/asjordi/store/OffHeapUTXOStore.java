@@ -0,0 +1,387 @@
+package dev.asjordi.store;
+
+import dev.asjordi.model.Address;
+import dev.asjordi.model.OutPoint;
+import dev.asjordi.model.TransactionOutput;
+import dev.asjordi.model.UTXOSet;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * The OffHeapUTXOStore class is a {@link UTXOSet} kept outside the JVM heap, either in direct memory
+ * or in a memory-mapped file, so the UTXO set can grow far beyond the heap size without GC pressure.
+ * Each output is a fixed 64 byte record holding its outpoint, its amount and its owner's {@link Address},
+ * and the records themselves form an open-addressing table with linear probing.
+ * The table is split into chunks of at most 1 GiB, since a single buffer can't address more than 2 GiB.
+ * Outputs are rebuilt from their record when read, so they don't keep their parent transaction ID.
+ * This class is not thread safe, but lookups may run concurrently while nothing changes the store.
+ * @author Jordi <ejordi.ayala@gmail.com>
+ */
+public class OffHeapUTXOStore implements UTXOSet, AutoCloseable {
+
+    /**
+     * Size in bytes of one record.
+     */
+    public static final int RECORD_BYTES = 64;
+
+    private static final int AMOUNT_OFFSET = 32;
+    private static final int OWNER_OFFSET = 40;
+    private static final int FLAGS_OFFSET = 60;
+    private static final int USED = 1;
+    private static final int CHUNK_SHIFT = 24; // 2^24 records of 64 bytes = 1 GiB per chunk
+    private static final double LOAD_FACTOR = 0.7;
+
+    private final Path file;
+    private ByteBuffer[] chunks;
+    private long capacity;
+    private long mask;
+    private long size;
+
+    private OffHeapUTXOStore(Path file, long capacity) {
+        this.file = file;
+        this.chunks = allocate(file, capacity);
+        this.capacity = capacity;
+        this.mask = capacity - 1;
+    }
+
+    /**
+     * Creates a store backed by direct memory.
+     * @param expectedSize The number of outputs the store should hold without growing.
+     * @return The new, empty store.
+     */
+    public static OffHeapUTXOStore inMemory(long expectedSize) {
+        return new OffHeapUTXOStore(null, capacityFor(expectedSize));
+    }
+
+    /**
+     * Opens a store backed by a memory-mapped file, creating the file if it doesn't exist.
+     * @param file The file holding the records.
+     * @param expectedSize The number of outputs the store should hold without growing, used for a new file.
+     * @return The store, holding any records already in the file.
+     */
+    public static OffHeapUTXOStore mapped(Path file, long expectedSize) {
+        try {
+            long existing = Files.exists(file) ? Files.size(file) / RECORD_BYTES : 0;
+            OffHeapUTXOStore store = new OffHeapUTXOStore(file, existing > 0 ? existing : capacityFor(expectedSize));
+            store.size = store.countUsed();
+            return store;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Adds an unspent output, replacing any output with the same id.
+     * @param id The outpoint of the output.
+     * @param output The unspent output.
+     * @return The output previously stored under that id, or null.
+     */
+    @Override
+    public TransactionOutput put(OutPoint id, TransactionOutput output) {
+        if (output == null) throw new IllegalArgumentException("OffHeapUTXOStore does not store null outputs");
+        if (size + 1 > capacity * LOAD_FACTOR) grow();
+
+        long slot = slotFor(id.a());
+        while (isUsed(slot) && !matches(slot, id)) slot = (slot + 1) & mask;
+        TransactionOutput previous = null;
+        if (isUsed(slot)) previous = read(slot, id);
+        else size++;
+        write(slot, id, output.getValue(), output.getOwner());
+        return previous;
+    }
+
+    /**
+     * @param id The outpoint of the output.
+     * @return The unspent output, or null if there is none with that id.
+     */
+    @Override
+    public TransactionOutput get(OutPoint id) {
+        long slot = find(id);
+        return slot < 0 ? null : read(slot, id);
+    }
+
+    /**
+     * @param id The outpoint of the output.
+     * @return True if the store holds an unspent output with that id.
+     */
+    @Override
+    public boolean containsKey(OutPoint id) {
+        return find(id) >= 0;
+    }
+
+    /**
+     * Removes an unspent output.
+     * @param id The outpoint of the output.
+     * @return The removed output, or null if there was none with that id.
+     */
+    @Override
+    public TransactionOutput remove(OutPoint id) {
+        long free = find(id);
+        if (free < 0) return null;
+        TransactionOutput removed = read(free, id);
+
+        // Backward shift deletion, so lookups never need tombstones
+        long slot = free;
+        while (true) {
+            slot = (slot + 1) & mask;
+            if (!isUsed(slot)) break;
+            long home = slotFor(chunk(slot).getLong(offset(slot)));
+            boolean movable = (free <= slot) ? (home <= free || home > slot) : (home <= free && home > slot);
+            if (movable) {
+                copy(slot, free);
+                free = slot;
+            }
+        }
+        clear(free);
+        size--;
+        return removed;
+    }
+
+    /**
+     * Sums the amounts of every output owned by the given address, scanning the whole table.
+     * @param owner The address of the owner.
+     * @return The balance of the owner, in minimal units.
+     */
+    public long balanceOf(Address owner) {
+        long total = 0;
+        for (long slot = 0; slot < capacity; slot++) {
+            if (!isUsed(slot)) continue;
+            ByteBuffer chunk = chunk(slot);
+            int offset = offset(slot);
+            if (owner.equals(readOwner(chunk, offset))) total = Math.addExact(total, chunk.getLong(offset + AMOUNT_OFFSET));
+        }
+        return total;
+    }
+
+    /**
+     * @return An iterator over the unspent outputs, in table order.
+     */
+    @Override
+    public Iterator<TransactionOutput> iterator() {
+        return new Iterator<>() {
+            private long next = advance(0);
+
+            private long advance(long from) {
+                while (from < capacity && !isUsed(from)) from++;
+                return from;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return next < capacity;
+            }
+
+            @Override
+            public TransactionOutput next() {
+                if (!hasNext()) throw new NoSuchElementException();
+                ByteBuffer chunk = chunk(next);
+                int offset = offset(next);
+                OutPoint id = new OutPoint(chunk.getLong(offset), chunk.getLong(offset + 8), chunk.getLong(offset + 16), chunk.getLong(offset + 24));
+                TransactionOutput output = read(next, id);
+                next = advance(next + 1);
+                return output;
+            }
+        };
+    }
+
+    /**
+     * Removes every output from the store.
+     */
+    @Override
+    public void clear() {
+        byte[] zeros = new byte[RECORD_BYTES];
+        for (long slot = 0; slot < capacity; slot++) {
+            if (isUsed(slot)) chunk(slot).put(offset(slot), zeros);
+        }
+        size = 0;
+    }
+
+    /**
+     * Copies the table into a new store backed by direct memory, whatever backs this one.
+     * @return The copy, which can be changed independently.
+     */
+    @Override
+    public OffHeapUTXOStore copy() {
+        OffHeapUTXOStore copy = new OffHeapUTXOStore(null, capacity);
+        for (int i = 0; i < chunks.length; i++) {
+            copy.chunks[i].put(0, chunks[i], 0, chunks[i].capacity());
+        }
+        copy.size = size;
+        return copy;
+    }
+
+    /**
+     * @return The number of unspent outputs in the store.
+     */
+    @Override
+    public int size() {
+        return Math.toIntExact(size);
+    }
+
+    /**
+     * @return The number of records the table can hold before it has to grow.
+     */
+    public long capacity() {
+        return capacity;
+    }
+
+    /**
+     * @return The number of off-heap bytes used by the table.
+     */
+    public long getOffHeapBytes() {
+        return capacity * RECORD_BYTES;
+    }
+
+    /**
+     * Releases the buffers. A mapped store is flushed to its file first.
+     */
+    @Override
+    public void close() {
+        if (file != null) {
+            for (ByteBuffer chunk : chunks) ((MappedByteBuffer) chunk).force();
+        }
+        chunks = new ByteBuffer[0];
+    }
+
+    private static long capacityFor(long expectedSize) {
+        long needed = Math.max(16, (long) Math.ceil(expectedSize / LOAD_FACTOR));
+        return Long.highestOneBit(needed - 1) << 1;
+    }
+
+    private static ByteBuffer[] allocate(Path file, long capacity) {
+        long recordsPerChunk = Math.min(capacity, 1L << CHUNK_SHIFT);
+        int count = (int) (capacity / recordsPerChunk);
+        ByteBuffer[] chunks = new ByteBuffer[count];
+        long chunkBytes = recordsPerChunk * RECORD_BYTES;
+
+        if (file == null) {
+            for (int i = 0; i < count; i++) {
+                chunks[i] = ByteBuffer.allocateDirect((int) chunkBytes);
+            }
+            return chunks;
+        }
+
+        // The mapping stays valid after the channel is closed
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            for (int i = 0; i < count; i++) {
+                chunks[i] = channel.map(FileChannel.MapMode.READ_WRITE, i * chunkBytes, chunkBytes);
+            }
+            return chunks;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void grow() {
+        ByteBuffer[] oldChunks = this.chunks;
+        long oldCapacity = this.capacity;
+        Path target = (file == null) ? null : file.resolveSibling(file.getFileName() + ".grow");
+
+        this.chunks = allocate(target, oldCapacity << 1);
+        this.capacity = oldCapacity << 1;
+        this.mask = this.capacity - 1;
+
+        long recordsPerChunk = Math.min(oldCapacity, 1L << CHUNK_SHIFT);
+        byte[] record = new byte[RECORD_BYTES];
+        for (long old = 0; old < oldCapacity; old++) {
+            ByteBuffer chunk = oldChunks[(int) (old / recordsPerChunk)];
+            int offset = (int) ((old % recordsPerChunk) * RECORD_BYTES);
+            if (chunk.getInt(offset + FLAGS_OFFSET) != USED) continue;
+            chunk.get(offset, record);
+            long slot = slotFor(chunk.getLong(offset));
+            while (isUsed(slot)) slot = (slot + 1) & mask;
+            chunk(slot).put(offset(slot), record);
+        }
+
+        if (file != null) {
+            try {
+                Files.move(target, file, StandardCopyOption.REPLACE_EXISTING);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    private long countUsed() {
+        long used = 0;
+        for (long slot = 0; slot < capacity; slot++) {
+            if (isUsed(slot)) used++;
+        }
+        return used;
+    }
+
+    private long slotFor(long a) {
+        return (a ^ (a >>> 32)) & mask;
+    }
+
+    private ByteBuffer chunk(long slot) {
+        return chunks[(int) (slot >>> CHUNK_SHIFT)];
+    }
+
+    private int offset(long slot) {
+        return (int) (slot & ((1L << CHUNK_SHIFT) - 1)) * RECORD_BYTES;
+    }
+
+    private boolean isUsed(long slot) {
+        return chunk(slot).getInt(offset(slot) + FLAGS_OFFSET) == USED;
+    }
+
+    private boolean matches(long slot, OutPoint id) {
+        ByteBuffer chunk = chunk(slot);
+        int offset = offset(slot);
+        return chunk.getLong(offset) == id.a() && chunk.getLong(offset + 8) == id.b()
+                && chunk.getLong(offset + 16) == id.c() && chunk.getLong(offset + 24) == id.d();
+    }
+
+    private long find(OutPoint id) {
+        long slot = slotFor(id.a());
+        while (isUsed(slot)) {
+            if (matches(slot, id)) return slot;
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    private TransactionOutput read(long slot, OutPoint id) {
+        ByteBuffer chunk = chunk(slot);
+        int offset = offset(slot);
+        return new TransactionOutput(id, readOwner(chunk, offset), chunk.getLong(offset + AMOUNT_OFFSET), null);
+    }
+
+    private static Address readOwner(ByteBuffer chunk, int offset) {
+        return new Address(chunk.getLong(offset + OWNER_OFFSET), chunk.getLong(offset + OWNER_OFFSET + 8), chunk.getInt(offset + OWNER_OFFSET + 16));
+    }
+
+    private void write(long slot, OutPoint id, long amount, Address owner) {
+        ByteBuffer chunk = chunk(slot);
+        int offset = offset(slot);
+        chunk.putLong(offset, id.a());
+        chunk.putLong(offset + 8, id.b());
+        chunk.putLong(offset + 16, id.c());
+        chunk.putLong(offset + 24, id.d());
+        chunk.putLong(offset + AMOUNT_OFFSET, amount);
+        chunk.putLong(offset + OWNER_OFFSET, owner.a());
+        chunk.putLong(offset + OWNER_OFFSET + 8, owner.b());
+        chunk.putInt(offset + OWNER_OFFSET + 16, owner.c());
+        chunk.putInt(offset + FLAGS_OFFSET, USED);
+    }
+
+    private void copy(long from, long to) {
+        byte[] record = new byte[RECORD_BYTES];
+        chunk(from).get(offset(from), record);
+        chunk(to).put(offset(to), record);
+    }
+
+    private void clear(long slot) {
+        chunk(slot).put(offset(slot), new byte[RECORD_BYTES]);
+    }
+}
@@ -0,0 +1,54 @@
+package dev.asjordi.util;
+
+import java.security.Provider;
+import java.security.Security;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+
+/**
+ * The CryptoProvider class gives access to the provider that keys and signatures are made with.
+ * Building the full BouncyCastle provider registers hundreds of algorithms and takes most of a cold start,
+ * while this project only uses ECDSA key generation, key decoding and signatures. So unless a BouncyCastle
+ * provider is already registered, in which case it is reused, the first use builds a provider that maps just
+ * those three services to BouncyCastle's own implementations. Keys, encodings and signatures are the same
+ * either way. Callers pass the provider object to the JCA factories instead of looking it up by name.
+ * @author Jordi <ejordi.ayala@gmail.com>
+ */
+public final class CryptoProvider {
+
+    private static final String EC = "org.bouncycastle.jcajce.provider.asymmetric.ec.";
+
+    private CryptoProvider() {
+        throw new IllegalStateException("Utility class");
+    }
+
+    /**
+     * Returns the provider, choosing it on first use: the registered BouncyCastle provider if there is one,
+     * otherwise {@link #ecdsaOnly()}.
+     * @return The provider.
+     */
+    public static Provider get() {
+        return Holder.PROVIDER;
+    }
+
+    /**
+     * Builds a provider with only the ECDSA services of BouncyCastle. It isn't registered with {@link Security}.
+     * @return A new provider.
+     */
+    public static Provider ecdsaOnly() {
+        Provider provider = new Provider("BC-ECDSA", "1.0", "BouncyCastle ECDSA key pair generator, key factory and signature") {};
+        provider.put("KeyPairGenerator.ECDSA", EC + "KeyPairGeneratorSpi$ECDSA");
+        provider.put("KeyFactory.ECDSA", EC + "KeyFactorySpi$ECDSA");
+        provider.put("Signature.ECDSA", EC + "SignatureSpi$ecDSA");
+        return provider;
+    }
+
+    private static final class Holder {
+
+        static final Provider PROVIDER = load();
+
+        private static Provider load() {
+            Provider registered = Security.getProvider(BouncyCastleProvider.PROVIDER_NAME);
+            return registered != null ? registered : ecdsaOnly();
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package dev.asjordi.util;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.PublicKey;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The SignatureCache class keeps a bounded record of signatures that have already been verified.
+ * Entries are keyed by a digest of the public key, the signed data and the signature, so a transaction that has been
+ * verified once skips ECDSA when it is verified again. Only successful verifications are cached.
+ * The cache is split into segments, each one evicting its least recently used entry when full.
+ * @author Jordi <ejordi.ayala@gmail.com>
+ */
+public class SignatureCache {
+
+    /**
+     * Approximate heap cost of one entry: the key object, the map node and its links.
+     */
+    public static final int ENTRY_BYTES = 128;
+    private static final int SEGMENTS = 16;
+
+    private final Segment[] segments;
+    private final int capacity;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * Constructor for the SignatureCache class.
+     * @param maxBytes The maximum amount of heap the cache entries may use.
+     */
+    public SignatureCache(long maxBytes) {
+        if (maxBytes < ENTRY_BYTES * (long) SEGMENTS) throw new IllegalArgumentException("Cache memory cap is too small: " + maxBytes);
+        long entries = Math.min(maxBytes / ENTRY_BYTES, Integer.MAX_VALUE);
+        int perSegment = (int) (entries / SEGMENTS);
+        this.capacity = perSegment * SEGMENTS;
+        this.segments = new Segment[SEGMENTS];
+        for (int i = 0; i < SEGMENTS; i++) {
+            this.segments[i] = new Segment(perSegment);
+        }
+    }
+
+    /**
+     * Verifies a signature, skipping ECDSA if the same key, data and signature were verified before.
+     * @param publicKey The public key to verify the signature.
+     * @param data The data that were signed.
+     * @param signature The signature to verify.
+     * @return True if the signature is valid, false otherwise.
+     */
+    public boolean verify(PublicKey publicKey, String data, byte[] signature) {
+        if (signature == null) return StringUtil.verifyECDSASignature(publicKey, data, signature);
+
+        Key key = Key.of(publicKey, data, signature);
+        Segment segment = segmentFor(key);
+
+        if (segment.contains(key)) {
+            hits.increment();
+            return true;
+        }
+
+        misses.increment();
+        boolean valid = StringUtil.verifyECDSASignature(publicKey, data, signature);
+        if (valid) segment.add(key);
+        return valid;
+    }
+
+    /**
+     * Removes every entry and resets the statistics.
+     */
+    public void clear() {
+        for (Segment s : this.segments) s.clear();
+        hits.reset();
+        misses.reset();
+    }
+
+    /**
+     * @return The number of verifications answered from the cache.
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * @return The number of verifications that had to run ECDSA.
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * @return The fraction of verifications answered from the cache, between 0 and 1.
+     */
+    public double getHitRate() {
+        long h = getHits();
+        long total = h + getMisses();
+        return total == 0 ? 0 : (double) h / total;
+    }
+
+    /**
+     * @return The number of signatures currently cached.
+     */
+    public int size() {
+        int size = 0;
+        for (Segment s : this.segments) size += s.size();
+        return size;
+    }
+
+    /**
+     * @return The maximum number of signatures the cache can hold.
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * @return The approximate heap used by the cached entries, in bytes.
+     */
+    public long getEstimatedBytes() {
+        return (long) size() * ENTRY_BYTES;
+    }
+
+    /**
+     * @return A string representation of the cache statistics.
+     */
+    @Override
+    public String toString() {
+        return "SignatureCache{" + "size=" + size() + ", capacity=" + capacity +
+                ", hits=" + getHits() + ", misses=" + getMisses() +
+                ", hitRate=" + String.format("%.2f", getHitRate()) + '}';
+    }
+
+    private Segment segmentFor(Key key) {
+        return this.segments[(int) (key.a() >>> 60) & (SEGMENTS - 1)];
+    }
+
+    /**
+     * SHA-256 digest of the encoded public key, the signed data and the signature, packed into primitive fields.
+     * The key and the data are length prefixed, so no two different triples hash the same bytes.
+     */
+    private record Key(long a, long b, long c, long d) {
+
+        static Key of(PublicKey publicKey, String data, byte[] signature) {
+            try {
+                MessageDigest digest = MessageDigest.getInstance("SHA-256");
+                byte[] encodedKey = publicKey.getEncoded();
+                byte[] encodedData = data.getBytes(StandardCharsets.UTF_8);
+                digest.update(ByteBuffer.allocate(Integer.BYTES).putInt(encodedKey.length).array());
+                digest.update(encodedKey);
+                digest.update(ByteBuffer.allocate(Integer.BYTES).putInt(encodedData.length).array());
+                digest.update(encodedData);
+                digest.update(signature);
+                ByteBuffer hash = ByteBuffer.wrap(digest.digest());
+                return new Key(hash.getLong(), hash.getLong(), hash.getLong(), hash.getLong());
+            } catch (NoSuchAlgorithmException e) {
+                throw new RuntimeException(e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * A least recently used set of keys guarded by its own lock.
+     */
+    private static final class Segment {
+
+        private final Map<Key, Boolean> entries;
+
+        Segment(int capacity) {
+            this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Key, Boolean> eldest) {
+                    return size() > capacity;
+                }
+            };
+        }
+
+        synchronized boolean contains(Key key) {
+            return entries.get(key) != null;
+        }
+
+        synchronized void add(Key key) {
+            entries.put(key, Boolean.TRUE);
+        }
+
+        synchronized int size() {
+            return entries.size();
+        }
+
+        synchronized void clear() {
+            entries.clear();
+        }
+    }
+}
@@ -3,12 +3,15 @@ package dev.asjordi.util;
 import com.google.gson.*;
 import dev.asjordi.model.Transaction;
 import java.io.UnsupportedEncodingException;
+import java.security.GeneralSecurityException;
 import java.security.Key;
+import java.security.KeyFactory;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.security.PrivateKey;
 import java.security.PublicKey;
 import java.security.Signature;
+import java.security.spec.X509EncodedKeySpec;
 import java.util.Base64;
 import java.util.LinkedList;
 import java.util.List;
@@ -34,16 +37,25 @@ public class StringUtil {
      * @return The result of applying the SHA-256 algorithm to the input as a String.
      */
     public static String applySha256(String input) {
+        byte[] hash = sha256(input);
+        StringBuilder hexString = new StringBuilder(); // Contains hash as HEX
+        for (int i = 0; i < hash.length; i++) {
+            String hex = Integer.toHexString(0xff & hash[i]);
+            if (hex.length() == 1) hexString.append('0');
+            hexString.append(hex);
+        }
+        return hexString.toString();
+    }
+
+    /**
+     * Applies SHA-256 algorithm to a given input and returns the raw hash.
+     * @param input The String to which the SHA-256 algorithm will be applied.
+     * @return The 32 bytes of the hash.
+     */
+    public static byte[] sha256(String input) {
         try {
             MessageDigest digest = MessageDigest.getInstance("SHA-256");
-            byte[] hash = digest.digest(input.getBytes("UTF-8")); //Applies SHA256 to input
-            StringBuilder hexString = new StringBuilder(); // Contains hash as HEX
-            for (int i = 0; i < hash.length; i++) {
-                String hex = Integer.toHexString(0xff & hash[i]);
-                if (hex.length() == 1) hexString.append('0');
-                hexString.append(hex);
-            }
-            return hexString.toString();
+            return digest.digest(input.getBytes("UTF-8")); //Applies SHA256 to input
         } catch (UnsupportedEncodingException | NoSuchAlgorithmException e) {
             throw new RuntimeException(e.getMessage());
         }
@@ -60,7 +72,7 @@ public class StringUtil {
         byte[] output = new byte[0];
         
         try {
-            dsa = Signature.getInstance("ECDSA", "BC");
+            dsa = Signature.getInstance("ECDSA", CryptoProvider.get());
             dsa.initSign(privateKey);
             byte[] strByte = input.getBytes();
             dsa.update(strByte);
@@ -81,7 +93,7 @@ public class StringUtil {
      */
     public static boolean verifyECDSASignature(PublicKey publicKey, String data, byte[] signature) {
         try {
-            Signature ecdsaVerify = Signature.getInstance("ECDSA", "BC");
+            Signature ecdsaVerify = Signature.getInstance("ECDSA", CryptoProvider.get());
             ecdsaVerify.initVerify(publicKey);
             ecdsaVerify.update(data.getBytes());
             return ecdsaVerify.verify(signature);
@@ -99,6 +111,21 @@ public class StringUtil {
         return Base64.getEncoder().encodeToString(key.getEncoded());
     }
     
+    /**
+     * Decodes a public key encoded by {@link #getStringFromKey(Key)}.
+     * @param encoded The Base64 encoded X.509 key.
+     * @return The public key.
+     * @throws IllegalArgumentException if the String is not a valid encoded ECDSA public key.
+     */
+    public static PublicKey getPublicKeyFromString(String encoded) {
+        try {
+            KeyFactory factory = KeyFactory.getInstance("ECDSA", CryptoProvider.get());
+            return factory.generatePublic(new X509EncodedKeySpec(Base64.getDecoder().decode(encoded)));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalArgumentException("Invalid public key: " + e.getMessage());
+        }
+    }
+
     /**
      * Converts an object into a JSON String.
      * @param o The object to convert into a JSON String.
@@ -135,6 +162,18 @@ public class StringUtil {
         return merkleRoot;
     }
     
+    /**
+     * Formats an amount in minimal units as coins, for example 4000000000 becomes "40.00000000".
+     * @param amount The amount in minimal units.
+     * @return A string representing the amount in coins.
+     */
+    public static String formatAmount(long amount) {
+        long coins = amount / Transaction.COIN;
+        long units = Math.abs(amount % Transaction.COIN);
+        String sign = (amount < 0 && coins == 0) ? "-" : "";
+        return sign + coins + "." + String.format("%08d", units);
+    }
+
     /**
      * Returns a difficulty target string, to compare with the hash. For example, a difficulty of 5 will return "00000".
      * @param difficulty The target difficulty.
@@ -0,0 +1,153 @@
+package dev.asjordi;
+
+import dev.asjordi.chain.Difficulty;
+import dev.asjordi.chain.DifficultyAdjuster;
+import dev.asjordi.chain.RetentionPolicy;
+import dev.asjordi.model.Block;
+import dev.asjordi.model.Transaction;
+import dev.asjordi.model.Wallet;
+import dev.asjordi.node.Node;
+import dev.asjordi.store.AddressIndex;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.security.Security;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AddressIndexTest {
+
+    private static Wallet walletA;
+    private static Wallet walletB;
+    private static DifficultyAdjuster adjuster;
+    private static Block genesis;
+
+    @BeforeAll
+    static void setUpAll() {
+        Security.addProvider(new BouncyCastleProvider());
+        walletA = new Wallet();
+        walletB = new Wallet();
+        int bits = Difficulty.bitsForLeadingZeros(1);
+        adjuster = new DifficultyAdjuster(bits, 1_000, 10);
+        genesis = Node.createGenesisBlock(walletA.getPublicKey(), 100 * Transaction.COIN, bits);
+    }
+
+    @Test
+    void testHistoryAndBalanceAtHeight(@TempDir Path dir) {
+        Node node = new Node("node", genesis, adjuster);
+        node.submitTransaction(walletA, walletB.getPublicKey(), 10 * Transaction.COIN);
+        node.mineBlock();
+
+        try (AddressIndex index = AddressIndex.open(dir.resolve("index.dat"))) {
+            // Attached late, so the first two blocks are replayed
+            node.addChainListener(index);
+            node.mineBlock();
+            node.submitTransaction(walletA, walletB.getPublicKey(), 5 * Transaction.COIN);
+            node.mineBlock();
+
+            assertEquals(3, index.getHeight());
+            assertEquals(node.getBalance(walletA.getPublicKey()), index.getBalance(walletA.getAddress()));
+            assertEquals(15 * Transaction.COIN, index.getBalance(walletB.getAddress()));
+            assertEquals(10 * Transaction.COIN, index.getBalanceAt(walletB.getAddress(), 2));
+            assertEquals(0, index.getBalanceAt(walletB.getAddress(), 0));
+            assertEquals(100 * Transaction.COIN, index.getBalanceAt(walletA.getAddress(), 0));
+
+            List<AddressIndex.Entry> history = index.getHistory(walletB.getAddress(), 10);
+            assertEquals(2, history.size());
+            assertEquals(new AddressIndex.Entry(3, 0, 5 * Transaction.COIN, 15 * Transaction.COIN), history.get(0));
+            assertEquals(1, index.getHistory(walletA.getAddress(), 1).size());
+        }
+
+        try (AddressIndex reopened = AddressIndex.open(dir.resolve("index.dat"))) {
+            assertEquals(15 * Transaction.COIN, reopened.getBalance(walletB.getAddress()));
+            assertEquals(3, reopened.getHeight());
+        }
+    }
+
+    @Test
+    void testReopenedIndexOnlyReplaysNewBlocks(@TempDir Path dir) {
+        Node node = new Node("node", genesis, adjuster);
+        node.setRetentionPolicy(RetentionPolicy.drop(2));
+        Path file = dir.resolve("index.dat");
+
+        try (AddressIndex index = AddressIndex.open(file)) {
+            node.addChainListener(index);
+            node.submitTransaction(walletA, walletB.getPublicKey(), 10 * Transaction.COIN);
+            node.mineBlock();
+            node.removeChainListener(index);
+        }
+
+        // Mined while the index is closed; the undo data of genesis is gone by then
+        for (int i = 0; i < 2; i++) {
+            node.submitTransaction(walletA, walletB.getPublicKey(), Transaction.COIN);
+            node.mineBlock();
+        }
+        try (AddressIndex index = AddressIndex.open(file)) {
+            assertEquals(node.getBlock(1).getHash(), index.getLastBlockHash());
+            long records = index.size();
+            node.addChainListener(index);
+            assertEquals(3, index.getHeight());
+            assertEquals(records + 4, index.size(), "Only the two new payments are indexed");
+            assertEquals(12 * Transaction.COIN, index.getBalance(walletB.getAddress()));
+            node.removeChainListener(index);
+        }
+
+        // Too far behind: the blocks it misses have no undo data left
+        for (int i = 0; i < 3; i++) node.mineBlock();
+        try (AddressIndex index = AddressIndex.open(file)) {
+            IllegalStateException e = assertThrows(IllegalStateException.class, () -> node.addChainListener(index));
+            assertTrue(e.getMessage().contains("height 4"), e.getMessage());
+            assertEquals(3, index.getHeight(), "The index is left as it was");
+        }
+    }
+
+    @Test
+    void testReorgRewindsIndex(@TempDir Path dir) {
+        Node nodeA = new Node("a", genesis, adjuster);
+        Node nodeB = new Node("b", genesis, adjuster);
+
+        try (AddressIndex index = AddressIndex.open(dir.resolve("index.dat"))) {
+            nodeA.addChainListener(index);
+            nodeA.submitTransaction(walletA, walletB.getPublicKey(), 10 * Transaction.COIN);
+            nodeA.mineBlock();
+            assertEquals(10 * Transaction.COIN, index.getBalance(walletB.getAddress()));
+
+            // A longer fork without the payment replaces it
+            nodeA.receiveBlock(nodeB.mineBlock());
+            nodeA.receiveBlock(nodeB.mineBlock());
+            assertEquals(nodeB.getTipHash(), nodeA.getTipHash());
+            assertEquals(0, index.getBalance(walletB.getAddress()));
+            assertTrue(index.getHistory(walletB.getAddress(), 10).isEmpty());
+            assertEquals(100 * Transaction.COIN, index.getBalance(walletA.getAddress()));
+            assertEquals(2, index.getHeight());
+        }
+    }
+
+    @Test
+    void testReorgWhileClosedRewindsOnReopen(@TempDir Path dir) {
+        Node nodeA = new Node("a", genesis, adjuster);
+        Node nodeB = new Node("b", genesis, adjuster);
+        Path file = dir.resolve("index.dat");
+
+        try (AddressIndex index = AddressIndex.open(file)) {
+            nodeA.addChainListener(index);
+            nodeA.submitTransaction(walletA, walletB.getPublicKey(), 10 * Transaction.COIN);
+            nodeA.mineBlock();
+            nodeA.removeChainListener(index);
+        }
+
+        nodeA.receiveBlock(nodeB.mineBlock());
+        nodeA.receiveBlock(nodeB.mineBlock());
+        try (AddressIndex index = AddressIndex.open(file)) {
+            nodeA.addChainListener(index);
+            assertEquals(nodeB.getTipHash(), index.getLastBlockHash());
+            assertEquals(2, index.getHeight());
+            assertEquals(0, index.getBalance(walletB.getAddress()));
+            assertEquals(100 * Transaction.COIN, index.getBalance(walletA.getAddress()));
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package dev.asjordi;
+
+import dev.asjordi.chain.BlockProcessor;
+import dev.asjordi.chain.BlockUndo;
+import dev.asjordi.model.HeapUTXOSet;
+import dev.asjordi.model.Payment;
+import dev.asjordi.model.Transaction;
+import dev.asjordi.model.TransactionOutput;
+import dev.asjordi.model.UTXOSet;
+import dev.asjordi.model.Wallet;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.security.Security;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BlockProcessorTest {
+
+    private static final int WALLETS = 8;
+    private static final List<Wallet> wallets = new ArrayList<>();
+    private static final UTXOSet base = new HeapUTXOSet();
+    private static final BlockProcessor processor = new BlockProcessor(new ForkJoinPool(4));
+
+    @BeforeAll
+    static void setUpAll() {
+        Security.addProvider(new BouncyCastleProvider());
+        for (int i = 0; i < WALLETS; i++) {
+            Wallet w = new Wallet();
+            wallets.add(w);
+            TransactionOutput funds = new TransactionOutput(w.getPublicKey(), 10 * Transaction.COIN, "funds-" + i);
+            base.put(funds.getId(), funds);
+        }
+    }
+
+    /**
+     * Builds a block where every wallet pays the next one, and the first two payees pass part of it on,
+     * so the block has both independent transactions and chains of dependent ones.
+     */
+    private static List<Transaction> buildBlock() {
+        UTXOSet view = base.copy();
+        List<Transaction> block = new ArrayList<>();
+        for (int i = 0; i < WALLETS; i++) block.add(pay(view, i, (i + 1) % WALLETS, 3 * Transaction.COIN));
+        block.add(pay(view, 1, 5, 8 * Transaction.COIN));
+        block.add(pay(view, 2, 6, 8 * Transaction.COIN));
+        return block;
+    }
+
+    private static Transaction pay(UTXOSet view, int from, int to, long value) {
+        Transaction t = wallets.get(from).sendFunds(view, List.of(new Payment(wallets.get(to).getPublicKey(), value)));
+        assertNotNull(t);
+        assertTrue(t.processTransaction(view));
+        return t;
+    }
+
+    private static void assertSameResult(List<Transaction> block) {
+        BlockProcessor.Result parallel = processor.process(base, block);
+        BlockProcessor.Result sequential = processor.processSequential(base, block);
+        assertEquals(sequential.failedIndex(), parallel.failedIndex());
+        if (!sequential.isValid()) return;
+
+        UTXOSet parallelSet = base.copy();
+        UTXOSet sequentialSet = base.copy();
+        BlockUndo parallelUndo = processor.process(parallelSet, block).batch().commit();
+        BlockUndo sequentialUndo = processor.processSequential(sequentialSet, block).batch().commit();
+        assertEquals(sequentialUndo.getSpentOutputs(), parallelUndo.getSpentOutputs());
+        assertEquals(sequentialUndo.getCreatedOutputs(), parallelUndo.getCreatedOutputs());
+        assertEquals(sequentialSet.size(), parallelSet.size());
+        for (TransactionOutput o : sequentialSet) assertSame(o, parallelSet.get(o.getId()));
+    }
+
+    @Test
+    void testValidBlockMatchesSequential() {
+        List<Transaction> block = buildBlock();
+        BlockProcessor.Result result = processor.process(base, block);
+        assertTrue(result.isValid());
+        assertSameResult(block);
+        assertEquals(WALLETS, base.size(), "Processing doesn't change the UTXO set");
+    }
+
+    @Test
+    void testDoubleSpendInsideBlockIsDetected() {
+        List<Transaction> block = buildBlock();
+        // Pays from wallet 0's original funds again, which the block already spent
+        UTXOSet before = base.copy();
+        block.add(pay(before, 0, 1, 3 * Transaction.COIN));
+
+        BlockProcessor.Result result = processor.process(base, block);
+        assertEquals(block.size() - 1, result.failedIndex());
+        assertSameResult(block);
+    }
+
+    @Test
+    void testTamperedOutputsAreRejected() {
+        Wallet attacker = new Wallet();
+        List<Transaction> block = buildBlock();
+        Transaction t = block.get(3);
+        TransactionOutput paid = t.outputs.get(0);
+
+        // Redirected to another owner, with an outpoint correctly derived for that owner
+        t.outputs.set(0, new TransactionOutput(attacker.getPublicKey(), paid.getValue(), t.transactionId, 0));
+        assertFalse(t.hasValidOutputs());
+        assertEquals(3, processor.process(base, block).failedIndex());
+        assertSameResult(block);
+
+        // Right owner and value, but the outpoint of an output that is already unspent
+        TransactionOutput existing = base.iterator().next();
+        t.outputs.set(0, new TransactionOutput(existing.getId(), paid.getOwner(), paid.getValue(), t.transactionId));
+        assertFalse(t.hasValidOutputs());
+        assertEquals(3, processor.process(base, block).failedIndex());
+        assertSameResult(block);
+
+        t.outputs.set(0, paid);
+        assertTrue(t.hasValidOutputs());
+        assertTrue(processor.process(base, block).isValid());
+
+        // A valid output whose outpoint is already unspent would overwrite it
+        UTXOSet withOutput = base.copy();
+        withOutput.put(paid.getId(), paid);
+        assertEquals(3, processor.process(withOutput, block).failedIndex());
+    }
+
+    @Test
+    void testShuffledBlocksMatchSequential() {
+        Random random = new Random(3);
+        List<Transaction> block = buildBlock();
+        for (int round = 0; round < 20; round++) {
+            Collections.shuffle(block, random);
+            assertSameResult(block);
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package dev.asjordi;
+
+import dev.asjordi.chain.Difficulty;
+import dev.asjordi.chain.DifficultyAdjuster;
+import dev.asjordi.chain.RetentionPolicy;
+import dev.asjordi.model.Block;
+import dev.asjordi.model.KeyInterner;
+import dev.asjordi.model.Transaction;
+import dev.asjordi.model.Wallet;
+import dev.asjordi.node.Node;
+import dev.asjordi.store.BlockCodec;
+import dev.asjordi.store.BlockStore;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.security.Security;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BlockStoreTest {
+
+    private static Wallet walletA;
+    private static Wallet walletB;
+    private static DifficultyAdjuster adjuster;
+    private static Block genesis;
+
+    @BeforeAll
+    static void setUpAll() {
+        Security.addProvider(new BouncyCastleProvider());
+        walletA = new Wallet();
+        walletB = new Wallet();
+        int bits = Difficulty.bitsForLeadingZeros(1);
+        adjuster = new DifficultyAdjuster(bits, 1_000, 10);
+        genesis = Node.createGenesisBlock(walletA.getPublicKey(), 100 * Transaction.COIN, bits);
+    }
+
+    /**
+     * Mines blocks on a new node, every other one paying walletB one coin.
+     */
+    private static Node mineChain(int blocks, RetentionPolicy retention) {
+        Node node = new Node("node", genesis, adjuster);
+        node.setRetentionPolicy(retention);
+        for (int i = 0; i < blocks; i++) {
+            if (i % 2 == 0) assertNotNull(node.submitTransaction(walletA, walletB.getPublicKey(), Transaction.COIN));
+            node.mineBlock();
+        }
+        return node;
+    }
+
+    @Test
+    void testCodecRoundTrip() {
+        Node node = mineChain(1, RetentionPolicy.KEEP_ALL);
+        List<Transaction> body = node.getBlock(1).getTransactions();
+
+        List<Transaction> decoded = BlockCodec.decodeBody(BlockCodec.encodeBody(body), node.getContext().getKeyInterner());
+        assertEquals(body.size(), decoded.size());
+        Transaction original = body.get(0);
+        Transaction copy = decoded.get(0);
+        assertEquals(original.transactionId, copy.transactionId);
+        assertEquals(original.payments, copy.payments);
+        assertTrue(copy.verifySignature());
+        assertEquals(original.inputs.get(0).getTransactionOutputId(), copy.inputs.get(0).getTransactionOutputId());
+        assertEquals(original.inputs.get(0).getUTXO().getValue(), copy.inputs.get(0).getUTXO().getValue());
+        for (int i = 0; i < original.outputs.size(); i++) {
+            assertEquals(original.outputs.get(i).getId(), copy.outputs.get(i).getId());
+            assertEquals(original.outputs.get(i).getValue(), copy.outputs.get(i).getValue());
+        }
+        assertEquals(original.outputs.get(1).getOwner(), copy.outputs.get(1).getOwner());
+        assertTrue(copy.outputs.get(1).isMine(walletA.getAddress()), "The change goes back to the sender");
+    }
+
+    @Test
+    void testStoreSurvivesReopenAndBoundsCache(@TempDir Path dir) {
+        Node node = mineChain(4, RetentionPolicy.KEEP_ALL);
+        Path file = dir.resolve("blocks.dat");
+        int cacheBytes = 2 * BlockCodec.encodeBody(node.getBlock(1).getTransactions()).length;
+
+        try (BlockStore store = BlockStore.open(file, cacheBytes, node.getContext().getKeyInterner())) {
+            for (int h = 0; h <= 4; h++) store.put(node.getBlock(h).getHash(), node.getBlock(h).getTransactions());
+            assertEquals(5, store.size());
+            assertTrue(store.getCachedBytes() <= cacheBytes, "The cache should stay within its bound");
+        }
+
+        try (BlockStore store = BlockStore.open(file, cacheBytes, node.getContext().getKeyInterner())) {
+            assertEquals(5, store.size());
+            String hash = node.getBlock(3).getHash();
+            assertEquals(node.getBlock(3).getTransactions().get(0).transactionId, store.fetchBody(hash).get(0).transactionId);
+            store.fetchBody(hash);
+            assertEquals(1, store.getMisses());
+            assertEquals(1, store.getHits());
+            assertThrows(IllegalStateException.class, () -> store.fetchBody("00"));
+        }
+    }
+
+    @Test
+    void testPruneToDiskKeepsRecentBodies(@TempDir Path dir) {
+        try (BlockStore store = BlockStore.open(dir.resolve("blocks.dat"), 1024, new KeyInterner())) {
+            Node node = mineChain(6, RetentionPolicy.pruneToDisk(2, store));
+
+            assertEquals(5, store.size(), "Blocks 0 to 4 are deeper than the two recent ones");
+            assertFalse(node.getBlock(3).isBodyLoaded());
+            assertTrue(node.getBlock(6).isBodyLoaded());
+            assertEquals(1, node.getBlock(3).getTransactions().size(), "Pruned bodies are read back from disk");
+            assertEquals(3 * Transaction.COIN, node.getBalance(walletB.getPublicKey()));
+        }
+    }
+
+    @Test
+    void testPrunedUndoLimitsReorgDepth(@TempDir Path dir) {
+        try (BlockStore store = BlockStore.open(dir.resolve("blocks.dat"), 1024, new KeyInterner())) {
+            Node node = mineChain(6, RetentionPolicy.pruneToDisk(2, store));
+            String tip = node.getTipHash();
+
+            // A longer fork from genesis would disconnect blocks whose undo data left memory with their bodies
+            Node fork = new Node("fork", genesis, adjuster);
+            for (int i = 0; i < 10; i++) fork.mineBlock();
+            assertTrue(fork.getBlockTree().getChainWork().compareTo(node.getBlockTree().getChainWork()) > 0);
+            for (int h = 1; h <= 10; h++) node.receiveBlock(fork.getBlock(h));
+            assertEquals(tip, node.getTipHash());
+            assertEquals(6, node.getHeight());
+        }
+    }
+
+    @Test
+    void testDropDiscardsOldBodies() {
+        Node node = mineChain(6, RetentionPolicy.drop(2));
+
+        assertFalse(node.getBlock(2).isBodyLoaded());
+        assertThrows(IllegalStateException.class, () -> node.getBlock(2).getTransactions());
+        assertTrue(node.getBlock(5).isBodyLoaded());
+        assertEquals(3 * Transaction.COIN, node.getBalance(walletB.getPublicKey()));
+    }
+}
@@ -0,0 +1,164 @@
+package dev.asjordi;
+
+import dev.asjordi.chain.BlockTree;
+import dev.asjordi.chain.Difficulty;
+import dev.asjordi.chain.DifficultyAdjuster;
+import dev.asjordi.model.Block;
+import dev.asjordi.model.BlockHeader;
+import dev.asjordi.model.Transaction;
+import dev.asjordi.model.TransactionInput;
+import dev.asjordi.model.TransactionOutput;
+import dev.asjordi.model.Wallet;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.security.Security;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BlockTreeTest {
+
+    private static final int DIFFICULTY = 1;
+    private static Wallet walletA;
+    private static Wallet walletB;
+    private static Wallet walletC;
+
+    private BlockTree tree;
+    private Block genesis;
+    private TransactionOutput genesisOutput;
+
+    @BeforeAll
+    static void setUpAll() {
+        Security.addProvider(new BouncyCastleProvider());
+        walletA = new Wallet();
+        walletB = new Wallet();
+        walletC = new Wallet();
+    }
+
+    @BeforeEach
+    void setUp() {
+        tree = new BlockTree(new DifficultyAdjuster(Difficulty.bitsForLeadingZeros(DIFFICULTY), 1_000, 10));
+        Transaction coinbase = new Transaction(walletA.getPublicKey(), walletA.getPublicKey(), 100, null);
+        coinbase.transactionId = "0";
+        genesisOutput = new TransactionOutput(walletA.getPublicKey(), 100, "0");
+        coinbase.outputs.add(genesisOutput);
+        genesis = mine("0", coinbase);
+        assertTrue(tree.addBlock(genesis));
+    }
+
+    /**
+     * Builds a processed transaction spending the genesis output.
+     */
+    private Transaction spendGenesis(Wallet to) {
+        Transaction t = new Transaction(walletA.getPublicKey(), to.getPublicKey(), 100, List.of(new TransactionInput(genesisOutput.getId())));
+        t.transactionId = "spend-" + to.hashCode();
+        t.outputs.add(new TransactionOutput(to.getPublicKey(), 100, t.transactionId));
+        return t;
+    }
+
+    private static Block mine(String previousHash, Transaction... transactions) {
+        Block block = new Block(previousHash);
+        for (Transaction t : transactions) block.includeTransaction(t);
+        block.mineBlock(DIFFICULTY);
+        return block;
+    }
+
+    /**
+     * Mines an empty block with the given timestamp at the target the tree expects.
+     */
+    private Block mineAt(String previousHash, long timeStamp) {
+        Block block = new Block(new BlockHeader(previousHash, "", timeStamp, 0, 0), List.of(), null);
+        block.mineBlockToTarget(tree.getNextBits());
+        return block;
+    }
+
+    @Test
+    void testReorgToHeavierFork() {
+        Transaction toB = spendGenesis(walletB);
+        Block b1 = mine(genesis.getHash(), toB);
+        assertTrue(tree.addBlock(b1));
+        assertSame(b1, tree.getTip());
+
+        Transaction toC = spendGenesis(walletC);
+        Block c1 = mine(genesis.getHash(), toC);
+        assertTrue(tree.addBlock(c1));
+        assertSame(b1, tree.getTip(), "Equal work keeps the first seen tip");
+
+        Block c2 = mine(c1.getHash());
+        assertTrue(tree.addBlock(c2));
+        assertSame(c2, tree.getTip());
+        assertEquals(List.of(genesis, c1, c2), tree.getActiveChain());
+        assertNotNull(tree.getUTXOs().get(toC.outputs.get(0).getId()));
+        assertNull(tree.getUTXOs().get(toB.outputs.get(0).getId()), "Outputs of the old fork should be disconnected");
+
+        Block b2 = mine(b1.getHash());
+        Block b3 = mine(b2.getHash());
+        assertTrue(tree.addBlock(b2));
+        assertTrue(tree.addBlock(b3));
+        assertEquals(List.of(genesis, b1, b2, b3), tree.getActiveChain());
+        assertNotNull(tree.getUTXOs().get(toB.outputs.get(0).getId()));
+        assertNull(tree.getUTXOs().get(toC.outputs.get(0).getId()));
+        assertEquals(1, tree.getUTXOs().size());
+        assertEquals(6, tree.size());
+    }
+
+    @Test
+    void testInvalidForkKeepsPreviousChain() {
+        Block b1 = mine(genesis.getHash(), spendGenesis(walletB));
+        assertTrue(tree.addBlock(b1));
+
+        // Spends the genesis output twice, so it can't be connected
+        Block bad = mine(genesis.getHash(), spendGenesis(walletC), spendGenesis(walletB));
+        Block badChild = mine(bad.getHash());
+        tree.addBlock(bad);
+        assertFalse(tree.addBlock(badChild));
+        assertSame(b1, tree.getTip());
+        assertEquals(1, tree.getUTXOs().size());
+    }
+
+    @Test
+    void testRejectsOrphanAndUnminedBlocks() {
+        assertFalse(tree.addBlock(mine("unknown")));
+        Block unmined = new Block(genesis.getHash());
+        assertFalse(tree.addBlock(unmined));
+    }
+
+    @Test
+    void testRejectsTimestampsBeforeMedianTimePast() {
+        long start = genesis.getTimeStamp();
+        Block previous = genesis;
+        for (int i = 1; i <= 4; i++) {
+            previous = mineAt(previous.getHash(), start + i * 1_000L);
+            assertTrue(tree.addBlock(previous));
+        }
+
+        // The median of the five blocks is start + 2s; an older block could drag the retarget target up
+        assertFalse(tree.addBlock(mineAt(previous.getHash(), start + 1_999)));
+        assertTrue(tree.addBlock(mineAt(previous.getHash(), start + 2_000)));
+    }
+
+    @Test
+    void testRejectsTimestampsTooFarInTheFuture() {
+        long drift = tree.getDifficultyAdjuster().getMaxFutureDriftMillis();
+        Block future = mineAt(genesis.getHash(), System.currentTimeMillis() + drift + 60_000);
+        assertFalse(tree.addBlock(future));
+        assertFalse(tree.contains(future.getHash()), "A future block isn't marked, so it can be offered again later");
+
+        assertTrue(tree.addBlock(mineAt(genesis.getHash(), System.currentTimeMillis() + drift / 2)));
+    }
+
+    @Test
+    void testRejectsMinedHeaderWithTamperedBody() {
+        Block honest = mine(genesis.getHash(), spendGenesis(walletB));
+        Block tampered = new Block(honest.getHeader(), List.of(spendGenesis(walletC)), null);
+        assertEquals(honest.getHash(), tampered.calculateHash(), "The header is the honest one");
+
+        assertFalse(tree.addBlock(tampered));
+        assertFalse(tree.contains(honest.getHash()));
+        assertTrue(tree.addBlock(honest), "The genuine block is still accepted");
+        assertNotNull(tree.getUTXOs().get(honest.getTransactions().get(0).outputs.get(0).getId()));
+    }
+}
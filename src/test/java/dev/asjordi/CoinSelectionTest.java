@@ -0,0 +1,86 @@
+package dev.asjordi;
+
+import dev.asjordi.model.Address;
+import dev.asjordi.model.CoinSelection;
+import dev.asjordi.model.OutPoint;
+import dev.asjordi.model.TransactionOutput;
+import dev.asjordi.model.Wallet;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.security.PublicKey;
+import java.security.Security;
+import java.util.Comparator;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CoinSelectionTest {
+
+    private static NavigableSet<TransactionOutput> available;
+
+    @BeforeAll
+    static void setUpAll() {
+        Security.addProvider(new BouncyCastleProvider());
+        PublicKey owner = new Wallet().getPublicKey();
+        available = new TreeSet<>(Comparator.comparingLong(TransactionOutput::getValue));
+        for (long value : new long[] {1, 2, 5, 10, 40, 50}) {
+            available.add(new TransactionOutput(owner, value, "parent"));
+        }
+    }
+
+    private static long sum(List<TransactionOutput> outputs) {
+        return outputs.stream().mapToLong(TransactionOutput::getValue).sum();
+    }
+
+    @Test
+    void testLargestFirst() {
+        List<TransactionOutput> selected = CoinSelection.LARGEST_FIRST.select(available, 60);
+        assertEquals(2, selected.size());
+        assertEquals(90, sum(selected));
+    }
+
+    @Test
+    void testBranchAndBoundFindsExactMatch() {
+        List<TransactionOutput> selected = CoinSelection.BRANCH_AND_BOUND.select(available, 47);
+        assertEquals(47, sum(selected), "Branch and bound should find 40 + 5 + 2");
+    }
+
+    @Test
+    void testBranchAndBoundFallsBackWithoutExactMatch() {
+        List<TransactionOutput> selected = CoinSelection.BRANCH_AND_BOUND.select(available, 108);
+        assertNotNull(selected);
+        assertTrue(sum(selected) >= 108);
+    }
+
+    @Test
+    void testBranchAndBoundSearchesLargeWallets() {
+        // Every large output is skipped on the way to the two small ones, one search step each
+        Address owner = Address.of(new Wallet().getPublicKey());
+        NavigableSet<TransactionOutput> large = new TreeSet<>(Comparator.comparingLong(TransactionOutput::getValue));
+        for (int i = 0; i < 60_000; i++) large.add(new TransactionOutput(new OutPoint(i, 0, 0, 0), owner, 100 + i, "parent"));
+        large.add(new TransactionOutput(new OutPoint(-1, 0, 0, 0), owner, 1, "parent"));
+        large.add(new TransactionOutput(new OutPoint(-2, 0, 0, 0), owner, 2, "parent"));
+
+        List<TransactionOutput> selected = CoinSelection.BRANCH_AND_BOUND.select(large, 3);
+        assertEquals(2, selected.size());
+        assertEquals(3, sum(selected));
+    }
+
+    @Test
+    void testConsolidationSpendsSmallOutputs() {
+        List<TransactionOutput> selected = CoinSelection.CONSOLIDATION.select(available, 12);
+        assertEquals(4, selected.size(), "Consolidation should sweep in every output below the target");
+        assertEquals(18, sum(selected));
+    }
+
+    @Test
+    void testInsufficientFunds() {
+        for (CoinSelection selection : CoinSelection.values()) {
+            assertNull(selection.select(available, 1_000), selection + " should fail when funds are short");
+        }
+    }
+}
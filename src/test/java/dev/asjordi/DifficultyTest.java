@@ -0,0 +1,66 @@
+package dev.asjordi;
+
+import dev.asjordi.chain.Difficulty;
+import dev.asjordi.chain.DifficultyAdjuster;
+import dev.asjordi.model.Block;
+import dev.asjordi.model.BlockHeader;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DifficultyTest {
+
+    @Test
+    void testCompactEncoding() {
+        BigInteger bitcoinGenesisTarget = BigInteger.valueOf(0xffff).shiftLeft(208);
+        assertEquals(bitcoinGenesisTarget, Difficulty.decodeCompact(0x1d00ffff));
+        assertEquals(0x1d00ffff, Difficulty.encodeCompact(bitcoinGenesisTarget));
+        assertEquals(0x1f0fffff, Difficulty.bitsForLeadingZeros(3));
+    }
+
+    @Test
+    void testLeadingZerosTargetKeepsOldMeaning() {
+        int bits = Difficulty.bitsForLeadingZeros(3);
+        assertTrue(Difficulty.meetsTarget("000f" + "0".repeat(60), bits));
+        assertFalse(Difficulty.meetsTarget("0010" + "0".repeat(60), bits));
+    }
+
+    @Test
+    void testFastBlocksRaiseDifficultyByAtMostTheLimit() {
+        int initialBits = Difficulty.bitsForLeadingZeros(1);
+        DifficultyAdjuster adjuster = new DifficultyAdjuster(initialBits, 60_000, 4);
+        List<Block> chain = new ArrayList<>();
+        String previousHash = "0";
+        for (int i = 0; i <= 4; i++) {
+            if (i <= adjuster.getWindow()) assertEquals(initialBits, adjuster.nextBits(chain), "No retarget before the window is full");
+            Block block = new Block(previousHash);
+            block.mineBlockToTarget(adjuster.nextBits(chain));
+            chain.add(block);
+            previousHash = block.getHash();
+        }
+
+        BigInteger next = Difficulty.decodeCompact(adjuster.nextBits(chain));
+        BigInteger initial = Difficulty.decodeCompact(initialBits);
+        assertTrue(next.compareTo(initial) < 0, "Blocks faster than the interval should lower the target");
+        assertTrue(next.compareTo(initial.divide(BigInteger.valueOf(DifficultyAdjuster.MAX_ADJUSTMENT + 1))) > 0);
+        assertTrue(Difficulty.work(adjuster.nextBits(chain)).compareTo(Difficulty.work(initialBits)) > 0);
+    }
+
+    @Test
+    void testTimestampBounds() {
+        DifficultyAdjuster adjuster = new DifficultyAdjuster(Difficulty.bitsForLeadingZeros(1), 1_000, 4, 5_000);
+        List<BlockHeader> chain = new ArrayList<>();
+        for (int i = 0; i < 15; i++) chain.add(new BlockHeader("0", "", i * 1_000L, 0, 0));
+        // Only the last eleven blocks count: 4s to 14s
+        assertEquals(9_000, DifficultyAdjuster.medianTimePast(chain));
+        assertFalse(adjuster.isTimestampAllowed(chain, 8_999, 20_000));
+        assertTrue(adjuster.isTimestampAllowed(chain, 9_000, 20_000));
+        assertTrue(adjuster.isTimestampAllowed(chain, 25_000, 20_000));
+        assertFalse(adjuster.isTimestampAllowed(chain, 25_001, 20_000));
+        assertTrue(adjuster.isTimestampAllowed(List.of(), 0, 20_000), "A genesis block has no median to follow");
+    }
+}
@@ -0,0 +1,130 @@
+package dev.asjordi;
+
+import dev.asjordi.chain.Difficulty;
+import dev.asjordi.chain.DifficultyAdjuster;
+import dev.asjordi.chain.HeadersFirstSync;
+import dev.asjordi.model.Block;
+import dev.asjordi.model.BlockHeader;
+import dev.asjordi.model.Transaction;
+import dev.asjordi.model.Wallet;
+import dev.asjordi.node.Node;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.security.Security;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HeadersFirstSyncTest {
+
+    private static Wallet walletA;
+    private static Wallet walletB;
+    private static DifficultyAdjuster adjuster;
+    private static Block genesis;
+
+    private Node source;
+    private Node fresh;
+
+    @BeforeAll
+    static void setUpAll() {
+        Security.addProvider(new BouncyCastleProvider());
+        walletA = new Wallet();
+        walletB = new Wallet();
+        int bits = Difficulty.bitsForLeadingZeros(1);
+        adjuster = new DifficultyAdjuster(bits, 1_000, 10);
+        genesis = Node.createGenesisBlock(walletA.getPublicKey(), 100 * Transaction.COIN, bits);
+    }
+
+    @BeforeEach
+    void setUp() {
+        source = new Node("source", genesis, adjuster);
+        fresh = new Node("fresh", genesis, adjuster);
+        for (int i = 0; i < 12; i++) {
+            if (i % 3 == 0) assertNotNull(source.submitTransaction(walletA, walletB.getPublicKey(), Transaction.COIN));
+            source.mineBlock();
+        }
+    }
+
+    @Test
+    void testSyncMatchesSourceAndEvictsBodies() {
+        assertEquals(12, fresh.syncFrom(source));
+        assertEquals(source.getTipHash(), fresh.getTipHash());
+        assertEquals(4 * Transaction.COIN, fresh.getBalance(walletB.getPublicKey()));
+        assertEquals(source.getBalance(walletA.getPublicKey()), fresh.getBalance(walletA.getPublicKey()));
+
+        Block synced = fresh.getBlock(1);
+        assertFalse(synced.isBodyLoaded(), "Connected bodies should be evicted");
+        assertEquals(source.getBlock(1).getTransactions().size(), synced.getTransactions().size());
+        assertFalse(synced.isBodyLoaded(), "A body fetched from the peer shouldn't stay in the block");
+
+        assertEquals(0, fresh.syncFrom(source), "Nothing left to download");
+    }
+
+    @Test
+    void testTamperedHeaderDownloadsNothing() {
+        List<Integer> fetched = new ArrayList<>();
+        HeadersFirstSync.Peer tampered = new HeadersFirstSync.Peer() {
+            @Override
+            public List<BlockHeader> getHeadersAfter(String hash) {
+                List<BlockHeader> headers = new ArrayList<>(source.getHeadersAfter(hash));
+                BlockHeader h = headers.get(5);
+                headers.set(5, new BlockHeader(h.getPreviousHash(), h.getMerkleRoot(), h.getTimeStamp() + 1, h.getNonce(), h.getBits()));
+                return headers;
+            }
+
+            @Override
+            public List<Transaction> fetchBody(String hash) {
+                fetched.add(1);
+                return source.fetchBody(hash);
+            }
+        };
+
+        assertEquals(0, fresh.syncFrom(tampered));
+        assertEquals(0, fresh.getHeight());
+        assertTrue(fetched.isEmpty(), "No body should be fetched for an invalid header chain");
+    }
+
+    @Test
+    void testMismatchedBodyStopsSync() {
+        HeadersFirstSync.Peer lying = new HeadersFirstSync.Peer() {
+            @Override
+            public List<BlockHeader> getHeadersAfter(String hash) {
+                return source.getHeadersAfter(hash);
+            }
+
+            @Override
+            public List<Transaction> fetchBody(String hash) {
+                // Block 4 carries a transaction, give an empty body instead
+                return hash.equals(source.getBlock(4).getHash()) ? List.of() : source.fetchBody(hash);
+            }
+        };
+
+        assertEquals(3, fresh.syncFrom(lying));
+        assertEquals(source.getBlock(3).getHash(), fresh.getTipHash());
+    }
+
+    @Test
+    void testPeerChangingAConnectedBodyIsCaught() {
+        List<Boolean> lying = new ArrayList<>(List.of(false));
+        HeadersFirstSync.Peer fickle = new HeadersFirstSync.Peer() {
+            @Override
+            public List<BlockHeader> getHeadersAfter(String hash) {
+                return source.getHeadersAfter(hash);
+            }
+
+            @Override
+            public List<Transaction> fetchBody(String hash) {
+                return lying.get(0) ? List.of() : source.fetchBody(hash);
+            }
+        };
+
+        assertEquals(12, fresh.syncFrom(fickle));
+        lying.set(0, true);
+        // Block 1 carries a transaction, so the empty body the peer now gives can't pass for it
+        assertThrows(IllegalStateException.class, () -> fresh.getBlock(1).getTransactions());
+    }
+}
@@ -0,0 +1,139 @@
+package dev.asjordi;
+
+import dev.asjordi.chain.Difficulty;
+import dev.asjordi.chain.DifficultyAdjuster;
+import dev.asjordi.mining.Miner;
+import dev.asjordi.mining.MiningJob;
+import dev.asjordi.mining.MiningKernel;
+import dev.asjordi.model.Block;
+import dev.asjordi.model.BlockHeader;
+import dev.asjordi.model.Transaction;
+import dev.asjordi.model.Wallet;
+import dev.asjordi.node.Node;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.security.Security;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MiningJobTest {
+
+    private static final int EASY = Difficulty.bitsForLeadingZeros(2);
+    private static final int UNREACHABLE = Difficulty.bitsForLeadingZeros(40);
+    private static Miner miner;
+
+    @BeforeAll
+    static void setUpAll() {
+        Security.addProvider(new BouncyCastleProvider());
+        miner = new Miner(2, MiningKernel.best());
+    }
+
+    @AfterAll
+    static void tearDownAll() {
+        miner.close();
+    }
+
+    @Test
+    void testJobMinesAValidBlock() throws Exception {
+        MiningJob job = miner.mine(new Block("parent"), Difficulty.bitsForLeadingZeros(3));
+        Block block = job.getResult().get(30, TimeUnit.SECONDS);
+        assertEquals(block.calculateHash(), block.getHash());
+        assertTrue(Difficulty.meetsTarget(block.getHash(), block.getBits()));
+        assertEquals("parent", block.getPreviousHash());
+        assertTrue(job.isDone());
+        assertTrue(job.getProgress().hashes() > 0);
+    }
+
+    @Test
+    void testCancelStopsTheWorkers() throws Exception {
+        MiningJob job = miner.mine(new Block("parent"), UNREACHABLE);
+        Thread.sleep(100);
+        long hashes = job.getProgress().hashes();
+        assertTrue(job.cancel());
+        assertTrue(job.getResult().isCancelled());
+        Thread.sleep(1000);
+        // Each worker finishes at most the chunk it was searching
+        assertTrue(job.getProgress().hashes() - hashes <= (long) miner.getThreads() * (1 << 14), "Workers stop within one chunk");
+        assertFalse(job.cancel());
+    }
+
+    @Test
+    void testUpdateSwitchesTheTemplate() throws Exception {
+        MiningJob job = miner.mine(new Block("stale"), UNREACHABLE);
+        Thread.sleep(50);
+        job.update(new Block("fresh"), EASY);
+        Block block = job.getResult().get(30, TimeUnit.SECONDS);
+        assertEquals("fresh", block.getPreviousHash());
+        assertEquals(1, job.getProgress().templateUpdates());
+    }
+
+    @Test
+    void testStartingAJobCancelsThePreviousOne() {
+        MiningJob first = miner.mine(new Block("first"), UNREACHABLE);
+        MiningJob second = miner.mine(new Block("second"), UNREACHABLE);
+        assertTrue(first.getResult().isCancelled());
+        assertFalse(second.isDone());
+        second.cancel();
+    }
+
+    @Test
+    void testTimestampRollsWhenNoncesRunOut() throws Exception {
+        // A header whose last few nonces all miss the target, so the job has to move the timestamp
+        int firstNonce = Integer.MAX_VALUE - 8;
+        BlockHeader header = null;
+        for (int attempt = 0; header == null; attempt++) {
+            BlockHeader h = new BlockHeader("roll" + attempt, "", 1_000_000L, firstNonce, EASY);
+            boolean missed = true;
+            for (long n = firstNonce; n <= Integer.MAX_VALUE && missed; n++) {
+                missed = !Difficulty.meetsTarget(h.getTemplate().hash((int) n), EASY);
+            }
+            if (missed) header = h;
+        }
+
+        MiningJob job = miner.mine(new Block(header, new ArrayList<>(), null), EASY);
+        Block block = job.getResult().get(30, TimeUnit.SECONDS);
+        assertTrue(block.getTimeStamp() > header.getTimeStamp());
+        assertTrue(job.getProgress().timestampRolls() >= 1);
+        assertTrue(Difficulty.meetsTarget(block.getHash(), EASY));
+    }
+
+    @Test
+    void testNodeMinesInTheBackground() throws Exception {
+        Wallet walletA = new Wallet();
+        Wallet walletB = new Wallet();
+        AtomicBoolean gate = new AtomicBoolean();
+        DifficultyAdjuster adjuster = new DifficultyAdjuster(EASY, 1_000, 10) {
+            @Override
+            public int nextBits(List<? extends BlockHeader> chain) {
+                // Until the gate opens no block can be found on top of genesis, so the job is still running when transactions arrive
+                return chain.isEmpty() || gate.get() ? super.nextBits(chain) : UNREACHABLE;
+            }
+        };
+        Node node = new Node("n0", Node.createGenesisBlock(walletA.getPublicKey(), 100 * Transaction.COIN, EASY), adjuster);
+
+        MiningJob job = node.startMining(miner);
+        Transaction t = node.submitTransaction(walletA, walletB.getPublicKey(), 40 * Transaction.COIN);
+        assertNotNull(t);
+        assertEquals(1, job.getProgress().templateUpdates());
+        assertFalse(job.isDone());
+
+        gate.set(true);
+        // The next refresh brings a reachable target, and both transactions reach the block through template refreshes
+        Transaction t2 = node.submitTransaction(walletA, walletB.getPublicKey(), 10 * Transaction.COIN);
+        assertNotNull(t2);
+        Block block = job.getResult().get(30, TimeUnit.SECONDS);
+        for (int i = 0; i < 100 && !block.getHash().equals(node.getTipHash()); i++) Thread.sleep(10);
+        assertEquals(block.getHash(), node.getTipHash());
+        assertTrue(job.getProgress().templateUpdates() > 0);
+        List<String> mined = block.getTransactions().stream().map(x -> x.transactionId).toList();
+        assertTrue(mined.containsAll(List.of(t.transactionId, t2.transactionId)));
+        node.stopMining();
+    }
+}
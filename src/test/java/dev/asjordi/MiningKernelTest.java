@@ -0,0 +1,71 @@
+package dev.asjordi;
+
+import dev.asjordi.chain.Difficulty;
+import dev.asjordi.mining.HeaderTemplate;
+import dev.asjordi.mining.MiningKernel;
+import dev.asjordi.util.StringUtil;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class MiningKernelTest {
+
+    private static final Random random = new Random(42);
+
+    private static String randomText(int length) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < length; i++) text.append(Integer.toHexString(random.nextInt(16)));
+        return text.toString();
+    }
+
+    private static int naiveSearch(HeaderTemplate template, BigInteger target, int first, int last) {
+        for (int nonce = first; nonce <= last; nonce++) {
+            String hash = StringUtil.applySha256(template.getPrefix() + nonce + template.getSuffix());
+            if (new BigInteger(hash, 16).compareTo(target) <= 0) return nonce;
+        }
+        return -1;
+    }
+
+    @Test
+    void testTemplateHashMatchesApplySha256() {
+        int[] nonces = {0, 7, 9, 10, 99, 100, 12345, 999_999_999, 1_000_000_000, Integer.MAX_VALUE};
+        // Prefix and suffix lengths cover tails on both sides of the padding boundary
+        for (int prefixLength = 0; prefixLength < 140; prefixLength += 7) {
+            HeaderTemplate template = new HeaderTemplate(randomText(prefixLength), randomText(random.nextInt(80)));
+            for (int nonce : nonces) {
+                assertEquals(StringUtil.applySha256(template.getPrefix() + nonce + template.getSuffix()), template.hash(nonce));
+            }
+        }
+    }
+
+    @Test
+    void testKernelsFindTheSameNonceAsSequentialSearch() {
+        for (int round = 0; round < 40; round++) {
+            // Easy targets put many solutions just after the change in nonce length
+            BigInteger target = Difficulty.decodeCompact(Difficulty.bitsForLeadingZeros(round < 30 ? 1 : 2));
+            HeaderTemplate template = new HeaderTemplate(randomText(64) + System.currentTimeMillis(), "1f00ffff" + randomText(64));
+            // Starting just below a power of ten makes batches cross a change in nonce length
+            int first = round % 2 == 0 ? 95 : 9_990;
+            int last = first + 3000;
+            int expected = naiveSearch(template, target, first, last);
+            assertEquals(expected, MiningKernel.scalar().search(template, target, first, last));
+            assertEquals(expected, MiningKernel.best().search(template, target, first, last));
+        }
+    }
+
+    @Test
+    void testVectorKernelReportsTheLowestNonceOfABatch() {
+        MiningKernel kernel = MiningKernel.best();
+        assumeTrue(kernel.getName().startsWith("vector"), "Vector kernel unavailable: " + kernel.getName());
+        HeaderTemplate template = new HeaderTemplate(randomText(70), randomText(70));
+        // A target that every hash meets returns the first nonce, and an unreachable one searches the whole range
+        BigInteger any = BigInteger.ONE.shiftLeft(256);
+        assertEquals(5, kernel.search(template, any, 5, 100));
+        assertEquals(-1, kernel.search(template, BigInteger.ZERO, 0, 1000));
+        assertEquals(-1, kernel.search(template, any, 10, 9));
+    }
+}
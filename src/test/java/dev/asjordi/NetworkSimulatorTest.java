@@ -0,0 +1,96 @@
+package dev.asjordi;
+
+import dev.asjordi.chain.Difficulty;
+import dev.asjordi.chain.DifficultyAdjuster;
+import dev.asjordi.model.Block;
+import dev.asjordi.model.CompactTransaction;
+import dev.asjordi.model.KeyInterner;
+import dev.asjordi.model.Transaction;
+import dev.asjordi.model.TransactionOutput;
+import dev.asjordi.model.Wallet;
+import dev.asjordi.node.Node;
+import dev.asjordi.sim.NetworkSimulator;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.security.Security;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NetworkSimulatorTest {
+
+    private static Wallet walletA;
+    private static Wallet walletB;
+
+    @BeforeAll
+    static void setUpAll() {
+        Security.addProvider(new BouncyCastleProvider());
+        walletA = new Wallet();
+        walletB = new Wallet();
+    }
+
+    @Test
+    void testGossipReachesEveryNode() throws InterruptedException {
+        int bits = Difficulty.bitsForLeadingZeros(1);
+        DifficultyAdjuster adjuster = new DifficultyAdjuster(bits, 1_000, 10);
+        Block genesis = Node.createGenesisBlock(walletA.getPublicKey(), 100 * Transaction.COIN, bits);
+
+        try (NetworkSimulator network = new NetworkSimulator(2, 5, 1)) {
+            for (int i = 0; i < 5; i++) network.addNode(new Node("n" + i, genesis, adjuster));
+            // A line, so messages have to be relayed
+            for (int i = 0; i < 4; i++) network.connect("n" + i, "n" + (i + 1));
+
+            Transaction t = network.getNode("n0").submitTransaction(walletA, walletB.getPublicKey(), 40 * Transaction.COIN);
+            assertNotNull(t);
+            network.broadcastTransaction("n0", t);
+            assertTrue(network.awaitQuiescence(5_000));
+            for (Node node : network.getNodes()) assertTrue(node.hasTransaction(t.transactionId), node + " should have the transaction");
+
+            Block block = network.mineAndBroadcast("n4");
+            assertTrue(network.awaitQuiescence(5_000));
+            for (Node node : network.getNodes()) {
+                assertEquals(block.getHash(), node.getTipHash());
+                assertEquals(0, node.getMempoolSize(), "Confirmed transactions should leave the mempool");
+                assertEquals(40 * Transaction.COIN, node.getBalance(walletB.getPublicKey()));
+            }
+
+            assertEquals(5, network.getPropagationMillis(block.getHash()).size());
+            assertTrue(network.getPropagationMillis(block.getHash()).get("n0") >= 4 * 2, "Four hops of at least 2 ms each");
+        }
+    }
+
+    @Test
+    void testRelayedTransactionWithRedirectedOutputsIsRejected() {
+        int bits = Difficulty.bitsForLeadingZeros(1);
+        DifficultyAdjuster adjuster = new DifficultyAdjuster(bits, 1_000, 10);
+        Block genesis = Node.createGenesisBlock(walletA.getPublicKey(), 100 * Transaction.COIN, bits);
+        Node sender = new Node("sender", genesis, adjuster);
+        Node relay = new Node("relay", genesis, adjuster);
+
+        Transaction t = sender.submitTransaction(walletA, walletB.getPublicKey(), 40 * Transaction.COIN);
+        assertNotNull(t);
+        Transaction forged = CompactTransaction.of(t, new KeyInterner()).toTransaction();
+        forged.outputs.set(0, new TransactionOutput(new Wallet().getPublicKey(), 40 * Transaction.COIN, forged.transactionId, 0));
+
+        assertFalse(relay.receiveTransaction(forged));
+        assertFalse(relay.hasTransaction(t.transactionId));
+        assertTrue(relay.receiveTransaction(t));
+        assertFalse(relay.receiveTransaction(t), "A transaction is only accepted once");
+    }
+
+    @Test
+    void testOutOfOrderBlocksAreConnected() {
+        int bits = Difficulty.bitsForLeadingZeros(1);
+        DifficultyAdjuster adjuster = new DifficultyAdjuster(bits, 1_000, 10);
+        Block genesis = Node.createGenesisBlock(walletA.getPublicKey(), 100, bits);
+        Node miner = new Node("miner", genesis, adjuster);
+        Node late = new Node("late", genesis, adjuster);
+
+        Block first = miner.mineBlock();
+        Block second = miner.mineBlock();
+        assertTrue(late.receiveBlock(second).isEmpty(), "A block with an unknown parent waits");
+        assertEquals(2, late.receiveBlock(first).size());
+        assertEquals(second.getHash(), late.getTipHash());
+    }
+}
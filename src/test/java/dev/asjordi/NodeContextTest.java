@@ -0,0 +1,157 @@
+package dev.asjordi;
+
+import dev.asjordi.chain.Difficulty;
+import dev.asjordi.chain.DifficultyAdjuster;
+import dev.asjordi.model.Block;
+import dev.asjordi.model.KeyInterner;
+import dev.asjordi.model.Payment;
+import dev.asjordi.model.Transaction;
+import dev.asjordi.model.TransactionOutput;
+import dev.asjordi.model.Wallet;
+import dev.asjordi.node.Node;
+import dev.asjordi.node.NodeContext;
+import dev.asjordi.store.OffHeapUTXOStore;
+import dev.asjordi.util.SignatureCache;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.security.Security;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NodeContextTest {
+
+    private static final int EASY = Difficulty.bitsForLeadingZeros(1);
+
+    @BeforeAll
+    static void setUpAll() {
+        Security.addProvider(new BouncyCastleProvider());
+    }
+
+    private static NodeContext newContext() {
+        return new NodeContext(new DifficultyAdjuster(EASY, 1_000, 10));
+    }
+
+    /**
+     * Builds a ledger whose genesis pays 100 coins to a wallet, then mines one block where that wallet pays another.
+     * @return The balances of the payer and the payee.
+     */
+    private static long[] runLedger(NodeContext context, long value) {
+        Wallet payer = new Wallet(context);
+        Wallet payee = new Wallet(context);
+        Transaction coinbase = new Transaction(payer.getPublicKey(), payer.getPublicKey(), 100 * Transaction.COIN, null);
+        coinbase.generateSignature(payer.getPrivateKey());
+        coinbase.transactionId = "0";
+        coinbase.outputs.add(new TransactionOutput(payer.getPublicKey(), coinbase.value, coinbase.transactionId));
+        context.getUTXOs().put(coinbase.outputs.get(0).getId(), coinbase.outputs.get(0));
+
+        Block genesis = new Block("0");
+        assertTrue(genesis.addTransaction(coinbase, context));
+        Main.addBlock(context, genesis);
+
+        Block block = new Block(genesis.getHash());
+        assertTrue(block.addTransaction(payer.sendFunds(payee.getPublicKey(), value), context));
+        Main.addBlock(context, block);
+
+        assertEquals(1, context.getBlockTree().getHeight());
+        assertTrue(Main.isChainValid(context, coinbase));
+        return new long[] {payer.getBalance(), payee.getBalance()};
+    }
+
+    @Test
+    void testLedgersRunIndependentlyInParallel() throws Exception {
+        int ledgers = 4;
+        List<NodeContext> contexts = new ArrayList<>();
+        ExecutorService pool = Executors.newFixedThreadPool(ledgers);
+        try {
+            List<Future<long[]>> results = new ArrayList<>();
+            for (int i = 0; i < ledgers; i++) {
+                NodeContext context = newContext();
+                contexts.add(context);
+                long value = (i + 1) * Transaction.COIN;
+                results.add(pool.submit(() -> runLedger(context, value)));
+            }
+            for (int i = 0; i < ledgers; i++) {
+                long[] balances = results.get(i).get();
+                assertEquals((100 - (i + 1)) * Transaction.COIN, balances[0]);
+                assertEquals((i + 1) * Transaction.COIN, balances[1]);
+                assertEquals(2, contexts.get(i).getUTXOs().size(), "Each ledger only holds its own outputs");
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void testTransactionIdsDependOnlyOnTheTransaction() {
+        Wallet sender = new Wallet();
+        Wallet recipient = new Wallet();
+        List<String> ids = new ArrayList<>();
+        for (NodeContext context : List.of(newContext(), newContext())) {
+            TransactionOutput funds = new TransactionOutput(sender.getPublicKey(), 10 * Transaction.COIN, "0");
+            context.getUTXOs().put(funds.getId(), funds);
+            // Unrelated activity on the first ledger doesn't shift the IDs of the second
+            if (ids.isEmpty()) runLedger(context, Transaction.COIN);
+            Transaction t = sender.sendFunds(context.getUTXOs(), List.of(new Payment(recipient.getPublicKey(), Transaction.COIN)));
+            assertTrue(t.processTransaction(context));
+            ids.add(t.transactionId);
+        }
+        assertEquals(ids.get(0), ids.get(1));
+    }
+
+    @Test
+    void testMinimumTransactionIsPerLedger() {
+        NodeContext lenient = newContext();
+        NodeContext strict = new NodeContext(new DifficultyAdjuster(EASY, 1_000, 10), 2 * Transaction.COIN,
+                new SignatureCache(NodeContext.DEFAULT_SIGNATURE_CACHE_BYTES), new KeyInterner());
+
+        for (NodeContext context : List.of(lenient, strict)) {
+            Wallet sender = new Wallet(context);
+            TransactionOutput funds = new TransactionOutput(sender.getPublicKey(), Transaction.COIN, "0");
+            context.getUTXOs().put(funds.getId(), funds);
+            Transaction t = sender.sendFunds(new Wallet().getPublicKey(), Transaction.COIN / 2);
+            assertEquals(context == lenient, t.processTransaction(context));
+        }
+    }
+
+    @Test
+    void testBlocksFollowTheMinimumTransaction() {
+        Wallet walletA = new Wallet();
+        Wallet walletB = new Wallet();
+        Block genesis = Node.createGenesisBlock(walletA.getPublicKey(), 100 * Transaction.COIN, EASY);
+        Node lenient = new Node("lenient", genesis, newContext());
+        Node strict = new Node("strict", genesis, new NodeContext(new DifficultyAdjuster(EASY, 1_000, 10), 2 * Transaction.COIN,
+                new SignatureCache(NodeContext.DEFAULT_SIGNATURE_CACHE_BYTES), new KeyInterner()));
+
+        assertNotNull(lenient.submitTransaction(walletA, walletB.getPublicKey(), Transaction.COIN));
+        Block large = lenient.mineBlock();
+        // Spends a single coin, below the strict node's minimum
+        Transaction small = lenient.submitTransaction(walletB, walletA.getPublicKey(), Transaction.COIN / 2);
+        assertNotNull(small);
+        Block belowMinimum = lenient.mineBlock();
+
+        strict.receiveBlock(large);
+        assertFalse(strict.receiveTransaction(small), "The strict node doesn't relay it");
+        strict.receiveBlock(belowMinimum);
+        assertEquals(large.getHash(), strict.getTipHash(), "Nor does it connect a block carrying it");
+    }
+
+    @Test
+    void testLedgerRunsOnOffHeapUTXOSets() {
+        NodeContext context = new NodeContext(new DifficultyAdjuster(EASY, 1_000, 10), NodeContext.DEFAULT_MINIMUM_TRANSACTION,
+                new SignatureCache(NodeContext.DEFAULT_SIGNATURE_CACHE_BYTES), new KeyInterner(), () -> OffHeapUTXOStore.inMemory(16));
+        assertInstanceOf(OffHeapUTXOStore.class, context.getUTXOs());
+        assertInstanceOf(OffHeapUTXOStore.class, context.getBlockTree().getUTXOs());
+
+        long[] balances = runLedger(context, 3 * Transaction.COIN);
+        assertEquals(97 * Transaction.COIN, balances[0]);
+        assertEquals(3 * Transaction.COIN, balances[1]);
+        assertEquals(2, context.getBlockTree().getUTXOs().size(), "The chain state lives in the off-heap store");
+    }
+}
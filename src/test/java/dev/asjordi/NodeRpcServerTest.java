@@ -0,0 +1,163 @@
+package dev.asjordi;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import dev.asjordi.chain.Difficulty;
+import dev.asjordi.chain.DifficultyAdjuster;
+import dev.asjordi.model.Transaction;
+import dev.asjordi.model.Wallet;
+import dev.asjordi.node.Node;
+import dev.asjordi.rpc.NodeRpcServer;
+import dev.asjordi.rpc.RpcHandler;
+import dev.asjordi.util.StringUtil;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.security.Security;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NodeRpcServerTest {
+
+    private static NodeRpcServer server;
+    private static Wallet walletA;
+    private static Wallet walletB;
+
+    @BeforeAll
+    static void setUpAll() throws IOException {
+        Security.addProvider(new BouncyCastleProvider());
+        walletA = new Wallet();
+        walletB = new Wallet();
+        int bits = Difficulty.bitsForLeadingZeros(1);
+        Node node = new Node("rpc", Node.createGenesisBlock(walletA.getPublicKey(), 100 * Transaction.COIN, bits),
+                new DifficultyAdjuster(bits, 1_000, 10));
+        server = new NodeRpcServer(new RpcHandler(node, Map.of("walletA", walletA)), new InetSocketAddress("localhost", 0));
+    }
+
+    @AfterAll
+    static void tearDownAll() throws IOException {
+        server.close();
+    }
+
+    private static Socket connect() throws IOException {
+        return new Socket("localhost", server.getAddress().getPort());
+    }
+
+    private static String request(int id, String method, String params) {
+        return "{\"id\":" + id + ",\"method\":\"" + method + "\",\"params\":" + params + "}\n";
+    }
+
+    @Test
+    void testPipelinedRequestsAnswerInOrder() throws IOException {
+        try (Socket socket = connect()) {
+            OutputStream out = socket.getOutputStream();
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            String address = StringUtil.getStringFromKey(walletB.getPublicKey());
+
+            out.write((request(1, "getHeight", "{}")
+                    + request(2, "getBlock", "{\"height\":0}")
+                    + request(3, "getBalance", "{\"address\":\"" + address + "\"}")
+                    + request(4, "nope", "{}")).getBytes(StandardCharsets.UTF_8));
+            out.flush();
+
+            for (int id = 1; id <= 4; id++) {
+                JsonObject response = JsonParser.parseString(in.readLine()).getAsJsonObject();
+                assertEquals(id, response.get("id").getAsInt(), "Responses should come back in request order");
+                if (id == 4) assertTrue(response.has("error"));
+                else assertTrue(response.has("result"));
+            }
+        }
+    }
+
+    @Test
+    void testBatchSendMineAndQuery() throws IOException {
+        try (Socket socket = connect()) {
+            OutputStream out = socket.getOutputStream();
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            String address = StringUtil.getStringFromKey(walletB.getPublicKey());
+            long amount = 5 * Transaction.COIN;
+
+            String batch = "[" + request(1, "sendFunds", "{\"from\":\"walletA\",\"to\":\"" + address + "\",\"amount\":" + amount + "}").strip()
+                    + "," + request(2, "mineBlock", "{}").strip()
+                    + "," + request(3, "getBalance", "{\"address\":\"" + address + "\"}").strip() + "]\n";
+            out.write(batch.getBytes(StandardCharsets.UTF_8));
+            out.flush();
+
+            JsonArray responses = JsonParser.parseString(in.readLine()).getAsJsonArray();
+            assertEquals(3, responses.size());
+            String transactionId = responses.get(0).getAsJsonObject().get("result").getAsString();
+            JsonObject block = responses.get(1).getAsJsonObject().getAsJsonObject("result");
+            assertEquals(transactionId, block.getAsJsonArray("transactions").get(0).getAsString());
+            assertTrue(responses.get(2).getAsJsonObject().get("result").getAsLong() >= amount);
+        }
+    }
+
+    @Test
+    void testInvalidParamsDontStallTheConnection() throws IOException {
+        try (Socket socket = connect()) {
+            OutputStream out = socket.getOutputStream();
+            out.write(("{\"id\":1,\"method\":\"getHeight\",\"params\":5}\n" + request(2, "getHeight", "{}")).getBytes(StandardCharsets.UTF_8));
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+
+            JsonObject invalid = JsonParser.parseString(in.readLine()).getAsJsonObject();
+            assertEquals(1, invalid.get("id").getAsInt());
+            assertTrue(invalid.get("error").getAsString().startsWith("Invalid params"));
+            JsonObject next = JsonParser.parseString(in.readLine()).getAsJsonObject();
+            assertEquals(2, next.get("id").getAsInt());
+            assertTrue(next.has("result"));
+        }
+    }
+
+    @Test
+    void testPipeliningPastTheQueueLimit() throws Exception {
+        int count = NodeRpcServer.MAX_QUEUED_RESPONSES * 20;
+        try (Socket socket = connect()) {
+            // The client writes everything before reading anything, so the server has to pause and resume reading
+            Thread writer = Thread.ofVirtual().start(() -> {
+                try {
+                    OutputStream out = socket.getOutputStream();
+                    for (int i = 0; i < count; i++) out.write(request(i, "getHeight", "{}").getBytes(StandardCharsets.UTF_8));
+                    socket.shutdownOutput();
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            });
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            for (int i = 0; i < count; i++) {
+                assertEquals(i, JsonParser.parseString(in.readLine()).getAsJsonObject().get("id").getAsInt());
+            }
+            assertNull(in.readLine(), "The server closes the connection once every request is answered");
+            writer.join();
+        }
+    }
+
+    @Test
+    void testManyConcurrentConnections() throws IOException {
+        List<Socket> sockets = new ArrayList<>();
+        try {
+            for (int i = 0; i < 500; i++) sockets.add(connect());
+            for (int i = 0; i < sockets.size(); i++) {
+                sockets.get(i).getOutputStream().write(request(i, "getHeight", "{}").getBytes(StandardCharsets.UTF_8));
+            }
+            for (int i = 0; i < sockets.size(); i++) {
+                BufferedReader in = new BufferedReader(new InputStreamReader(sockets.get(i).getInputStream(), StandardCharsets.UTF_8));
+                assertEquals(i, JsonParser.parseString(in.readLine()).getAsJsonObject().get("id").getAsInt());
+            }
+        } finally {
+            for (Socket s : sockets) s.close();
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package dev.asjordi;
+
+import dev.asjordi.model.Address;
+import dev.asjordi.model.OutPoint;
+import dev.asjordi.model.TransactionOutput;
+import dev.asjordi.model.UTXOSet;
+import dev.asjordi.store.OffHeapUTXOStore;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OffHeapUTXOStoreTest {
+
+    private static final Address OWNER_A = new Address(0, 0, 0);
+    private static final Address OWNER_B = new Address(1, 2, 3);
+
+    private static TransactionOutput output(OutPoint id, long amount, Address owner) {
+        return new TransactionOutput(id, owner, amount, null);
+    }
+
+    @Test
+    void testPutGetRemoveAndGrow() {
+        try (OffHeapUTXOStore store = OffHeapUTXOStore.inMemory(8)) {
+            Random random = new Random(7);
+            Map<OutPoint, Long> expected = new HashMap<>();
+            for (int i = 0; i < 5_000; i++) {
+                OutPoint id = new OutPoint(random.nextInt(32), random.nextLong(), i, 0);
+                store.put(id, output(id, i, (i % 2 == 0) ? OWNER_A : OWNER_B));
+                expected.put(id, (long) i);
+            }
+            expected.keySet().removeIf(id -> id.c() % 3 == 0 && store.remove(id) != null);
+
+            assertEquals(expected.size(), store.size());
+            assertTrue(store.capacity() > 8, "Store should have grown");
+            expected.forEach((id, amount) -> assertEquals(amount, store.get(id).getValue()));
+
+            long balanceA = expected.entrySet().stream().filter(e -> e.getValue() % 2 == 0).mapToLong(Map.Entry::getValue).sum();
+            assertEquals(balanceA, store.balanceOf(OWNER_A));
+
+            long iterated = 0;
+            for (TransactionOutput o : store) iterated += o.getValue();
+            assertEquals(expected.values().stream().mapToLong(Long::longValue).sum(), iterated);
+        }
+    }
+
+    @Test
+    void testBehavesLikeAUTXOSet() {
+        try (OffHeapUTXOStore store = OffHeapUTXOStore.inMemory(4)) {
+            UTXOSet set = store;
+            OutPoint id = new OutPoint(1, 2, 3, 4);
+            assertNull(set.put(id, output(id, 5, OWNER_A)));
+            assertEquals(5, set.put(id, output(id, 7, OWNER_B)).getValue(), "Put returns the replaced output");
+            assertTrue(set.get(id).isMine(OWNER_B));
+
+            UTXOSet copy = set.copy();
+            assertEquals(7, set.remove(id).getValue());
+            assertTrue(set.isEmpty());
+            assertEquals(7, copy.get(id).getValue(), "The copy is independent");
+            copy.clear();
+            assertFalse(copy.containsKey(id));
+        }
+    }
+
+    @Test
+    void testMappedStoreSurvivesReopen(@TempDir Path dir) {
+        Path file = dir.resolve("utxo.dat");
+        OutPoint id = new OutPoint(1, 2, 3, 4);
+
+        try (OffHeapUTXOStore store = OffHeapUTXOStore.mapped(file, 4)) {
+            for (int i = 0; i < 100; i++) {
+                OutPoint other = new OutPoint(i, i, i, i);
+                store.put(other, output(other, i, OWNER_A));
+            }
+            store.put(id, output(id, 42, OWNER_B));
+        }
+
+        try (OffHeapUTXOStore store = OffHeapUTXOStore.mapped(file, 4)) {
+            assertEquals(101, store.size());
+            assertEquals(42, store.get(id).getValue());
+            assertEquals(OWNER_B, store.get(id).getOwner());
+            assertNotNull(store.remove(id));
+            assertFalse(store.containsKey(id));
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package dev.asjordi;
+
+import dev.asjordi.model.Wallet;
+import dev.asjordi.util.SignatureCache;
+import dev.asjordi.util.StringUtil;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.security.Security;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SignatureCacheTest {
+
+    private static Wallet wallet;
+
+    @BeforeAll
+    static void setUpAll() {
+        Security.addProvider(new BouncyCastleProvider());
+        wallet = new Wallet();
+    }
+
+    @Test
+    void testSecondVerificationIsAHit() {
+        SignatureCache cache = new SignatureCache(64 * 1024);
+        byte[] signature = StringUtil.applyECDSASignature(wallet.getPrivateKey(), "data");
+
+        assertTrue(cache.verify(wallet.getPublicKey(), "data", signature));
+        assertTrue(cache.verify(wallet.getPublicKey(), "data", signature));
+        assertEquals(1, cache.getHits(), "Second verification should be served from the cache");
+        assertEquals(1, cache.getMisses());
+        assertEquals(0.5, cache.getHitRate());
+    }
+
+    @Test
+    void testInvalidSignatureIsNotCached() {
+        SignatureCache cache = new SignatureCache(64 * 1024);
+        byte[] signature = StringUtil.applyECDSASignature(wallet.getPrivateKey(), "data");
+
+        assertFalse(cache.verify(wallet.getPublicKey(), "tampered", signature));
+        assertFalse(cache.verify(wallet.getPublicKey(), "tampered", signature));
+        assertEquals(0, cache.size(), "Failed verifications should not be cached");
+    }
+
+    @Test
+    void testCachedSignatureDoesntVerifyUnderAnotherKey() {
+        SignatureCache cache = new SignatureCache(64 * 1024);
+        byte[] signature = StringUtil.applyECDSASignature(wallet.getPrivateKey(), "data");
+
+        assertTrue(cache.verify(wallet.getPublicKey(), "data", signature));
+        assertFalse(cache.verify(new Wallet().getPublicKey(), "data", signature));
+        assertEquals(0, cache.getHits(), "A different key is a different entry");
+    }
+
+    @Test
+    void testSizeIsBoundedByMemoryCap() {
+        SignatureCache cache = new SignatureCache(16L * SignatureCache.ENTRY_BYTES);
+        for (int i = 0; i < 64; i++) {
+            String data = "data" + i;
+            cache.verify(wallet.getPublicKey(), data, StringUtil.applyECDSASignature(wallet.getPrivateKey(), data));
+        }
+        assertTrue(cache.size() <= cache.getCapacity(), "Cache should never exceed its capacity");
+        assertTrue(cache.getEstimatedBytes() <= 16L * SignatureCache.ENTRY_BYTES);
+    }
+}
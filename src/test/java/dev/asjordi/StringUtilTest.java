@@ -1,10 +1,23 @@
 package dev.asjordi;
 
+import dev.asjordi.model.Transaction;
+import dev.asjordi.util.CryptoProvider;
 import dev.asjordi.util.StringUtil;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
 import org.junit.jupiter.api.Test;
 
+import java.security.KeyFactory;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.Provider;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.security.spec.ECGenParameterSpec;
+import java.security.spec.X509EncodedKeySpec;
+
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class StringUtilTest {
 
@@ -28,4 +41,42 @@ class StringUtilTest {
         assertEquals("00000", difficultyString);
     }
 
+    @Test
+    void testFormatAmount() {
+        assertEquals("40.00000000", StringUtil.formatAmount(40 * Transaction.COIN));
+        assertEquals("0.10000000", StringUtil.formatAmount(Transaction.COIN / 10));
+        assertEquals("-0.00000001", StringUtil.formatAmount(-1));
+    }
+
+    @Test
+    void testEcdsaOnlyProviderMatchesBouncyCastle() throws Exception {
+        Provider slim = CryptoProvider.ecdsaOnly();
+        Provider full = new BouncyCastleProvider();
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("ECDSA", slim);
+        generator.initialize(new ECGenParameterSpec("prime192v1"));
+        KeyPair keys = generator.generateKeyPair();
+
+        byte[] data = "payload".getBytes();
+        Signature signer = Signature.getInstance("ECDSA", slim);
+        signer.initSign(keys.getPrivate());
+        signer.update(data);
+        byte[] signature = signer.sign();
+
+        // Each provider decodes the other's key encoding and checks the other's signature
+        PublicKey decoded = KeyFactory.getInstance("ECDSA", full).generatePublic(new X509EncodedKeySpec(keys.getPublic().getEncoded()));
+        Signature verifier = Signature.getInstance("ECDSA", full);
+        verifier.initVerify(decoded);
+        verifier.update(data);
+        assertTrue(verifier.verify(signature));
+
+        signer = Signature.getInstance("ECDSA", full);
+        signer.initSign(keys.getPrivate());
+        signer.update(data);
+        signature = signer.sign();
+        verifier = Signature.getInstance("ECDSA", slim);
+        verifier.initVerify(KeyFactory.getInstance("ECDSA", slim).generatePublic(new X509EncodedKeySpec(decoded.getEncoded())));
+        verifier.update(data);
+        assertTrue(verifier.verify(signature));
+    }
+
 }
\ No newline at end of file
@@ -0,0 +1,119 @@
+package dev.asjordi;
+
+import dev.asjordi.chain.Difficulty;
+import dev.asjordi.chain.DifficultyAdjuster;
+import dev.asjordi.model.CompactTransaction;
+import dev.asjordi.model.KeyInterner;
+import dev.asjordi.model.Payment;
+import dev.asjordi.model.Transaction;
+import dev.asjordi.model.TransactionOutput;
+import dev.asjordi.model.Wallet;
+import dev.asjordi.node.NodeContext;
+import dev.asjordi.util.StringUtil;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.security.PublicKey;
+import java.security.Security;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TransactionTest {
+
+    private NodeContext context;
+    private Wallet sender;
+    private Wallet recipientA;
+    private Wallet recipientB;
+
+    @BeforeAll
+    static void setUpAll() {
+        Security.addProvider(new BouncyCastleProvider());
+    }
+
+    @BeforeEach
+    void setUp() {
+        context = new NodeContext(new DifficultyAdjuster(Difficulty.bitsForLeadingZeros(1), 1_000, 10));
+        sender = new Wallet(context);
+        recipientA = new Wallet(context);
+        recipientB = new Wallet(context);
+        TransactionOutput funds = new TransactionOutput(sender.getPublicKey(), 100 * Transaction.COIN, "0");
+        context.getUTXOs().put(funds.getId(), funds);
+    }
+
+    @Test
+    void testMultiRecipientTransaction() {
+        Transaction t = sender.sendFunds(List.of(
+                new Payment(recipientA.getPublicKey(), 10 * Transaction.COIN),
+                new Payment(recipientB.getPublicKey(), 20 * Transaction.COIN),
+                new Payment(recipientA.getPublicKey(), 10 * Transaction.COIN)));
+
+        assertTrue(t.processTransaction(context));
+        assertEquals(4, t.outputs.size(), "One output per payment plus change");
+        assertEquals(t.getInputsValue(), t.getOutputsValue());
+        assertEquals(20 * Transaction.COIN, recipientA.getBalance(), "Equal payments to the same recipient are distinct outputs");
+        assertEquals(20 * Transaction.COIN, recipientB.getBalance());
+        assertEquals(60 * Transaction.COIN, sender.getBalance());
+    }
+
+    @Test
+    void testExactSpendHasNoChangeOutput() {
+        Transaction t = sender.sendFunds(recipientA.getPublicKey(), 100 * Transaction.COIN);
+
+        assertTrue(t.processTransaction(context));
+        assertEquals(1, t.outputs.size());
+        assertEquals(0, sender.getBalance());
+    }
+
+    @Test
+    void testTamperedPaymentFailsVerification() {
+        Transaction t = sender.sendFunds(List.of(
+                new Payment(recipientA.getPublicKey(), Transaction.COIN),
+                new Payment(recipientB.getPublicKey(), Transaction.COIN)));
+        t.payments = List.of(new Payment(recipientA.getPublicKey(), 2 * Transaction.COIN));
+
+        assertFalse(t.verifySignature());
+    }
+
+    @Test
+    void testCompactTransactionRoundTrip() {
+        Transaction t = sender.sendFunds(List.of(
+                new Payment(recipientA.getPublicKey(), 10 * Transaction.COIN),
+                new Payment(recipientB.getPublicKey(), 20 * Transaction.COIN)));
+        assertTrue(t.processTransaction(context));
+
+        CompactTransaction compact = CompactTransaction.of(t, new KeyInterner());
+        Transaction copy = compact.toTransaction();
+        assertEquals(t.transactionId, copy.transactionId);
+        assertEquals(t.payments, copy.payments);
+        assertArrayEquals(t.signature, copy.signature);
+        assertEquals(t.inputs.get(0).getTransactionOutputId(), copy.inputs.get(0).getTransactionOutputId());
+        assertEquals(t.outputs.size(), copy.outputs.size());
+        for (int i = 0; i < t.outputs.size(); i++) {
+            assertEquals(t.outputs.get(i).getId(), copy.outputs.get(i).getId());
+            assertEquals(t.outputs.get(i).getOwner(), copy.outputs.get(i).getOwner());
+            assertEquals(t.outputs.get(i).getValue(), copy.outputs.get(i).getValue());
+            assertEquals(t.transactionId, copy.outputs.get(i).getParentTransactionId());
+        }
+        assertTrue(copy.verifySignature());
+
+        // The snapshot doesn't follow later changes to the transaction or the copies it hands out
+        t.signature[0] ^= 1;
+        copy.outputs.clear();
+        assertTrue(compact.toTransaction().verifySignature());
+        assertEquals(compact, CompactTransaction.of(compact.toTransaction(), new KeyInterner()));
+    }
+
+    @Test
+    void testKeysAreInterned() {
+        KeyInterner keys = new KeyInterner();
+        PublicKey decoded = StringUtil.getPublicKeyFromString(
+                StringUtil.getStringFromKey(recipientA.getPublicKey()));
+        assertNotSame(recipientA.getPublicKey(), decoded);
+        assertSame(recipientA.getPublicKey(), keys.intern(recipientA.getPublicKey()));
+        assertSame(recipientA.getPublicKey(), keys.intern(decoded));
+        assertEquals(1, keys.size());
+    }
+}
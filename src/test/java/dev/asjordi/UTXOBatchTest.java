@@ -0,0 +1,91 @@
+package dev.asjordi;
+
+import dev.asjordi.chain.BlockUndo;
+import dev.asjordi.chain.UTXOBatch;
+import dev.asjordi.model.HeapUTXOSet;
+import dev.asjordi.model.TransactionOutput;
+import dev.asjordi.model.UTXOSet;
+import dev.asjordi.model.Wallet;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.security.Security;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UTXOBatchTest {
+
+    private static Wallet wallet;
+
+    private UTXOSet utxos;
+    private TransactionOutput existing;
+
+    @BeforeAll
+    static void setUpAll() {
+        Security.addProvider(new BouncyCastleProvider());
+        wallet = new Wallet();
+    }
+
+    @BeforeEach
+    void setUp() {
+        utxos = new HeapUTXOSet();
+        existing = new TransactionOutput(wallet.getPublicKey(), 10, "existing");
+        utxos.put(existing.getId(), existing);
+    }
+
+    @Test
+    void testChangesAreStagedUntilCommit() {
+        UTXOBatch batch = new UTXOBatch(utxos);
+        TransactionOutput created = new TransactionOutput(wallet.getPublicKey(), 10, "created");
+        assertSame(existing, batch.spend(existing.getId()));
+        batch.add(created);
+
+        assertNull(batch.get(existing.getId()));
+        assertNull(batch.spend(existing.getId()), "An output can only be spent once");
+        assertSame(existing, utxos.get(existing.getId()), "The set is untouched before commit");
+        assertNull(utxos.get(created.getId()));
+
+        batch.commit();
+        assertNull(utxos.get(existing.getId()));
+        assertSame(created, utxos.get(created.getId()));
+    }
+
+    @Test
+    void testJournalHoldsOnlyTheNetChange() {
+        UTXOBatch batch = new UTXOBatch(utxos);
+        TransactionOutput temporary = new TransactionOutput(wallet.getPublicKey(), 10, "transient");
+        TransactionOutput kept = new TransactionOutput(wallet.getPublicKey(), 10, "kept");
+        batch.spend(existing.getId());
+        batch.add(temporary);
+        assertSame(temporary, batch.spend(temporary.getId()), "Outputs created earlier in the block can be spent");
+        batch.add(kept);
+
+        BlockUndo undo = batch.commit();
+        assertEquals(List.of(existing), undo.getSpentOutputs());
+        assertEquals(List.of(kept.getId()), undo.getCreatedOutputs());
+        assertNull(utxos.get(temporary.getId()));
+
+        UTXOBatch.undo(utxos, undo);
+        assertSame(existing, utxos.get(existing.getId()));
+        assertEquals(1, utxos.size());
+    }
+
+    @Test
+    void testUnspentIdsCantBeCreatedAgain() {
+        UTXOBatch batch = new UTXOBatch(utxos);
+        TransactionOutput duplicate = new TransactionOutput(existing.getId(), wallet.getAddress(), 99, "duplicate");
+        assertFalse(batch.add(duplicate), "An output already in the set isn't overwritten");
+        TransactionOutput created = new TransactionOutput(wallet.getPublicKey(), 10, "created");
+        assertTrue(batch.add(created));
+        assertFalse(batch.add(created), "Nor is one already staged");
+
+        BlockUndo undo = batch.commit();
+        assertSame(existing, utxos.get(existing.getId()));
+        UTXOBatch.undo(utxos, undo);
+        assertSame(existing, utxos.get(existing.getId()), "Undoing the block keeps the earlier output");
+        assertEquals(1, utxos.size());
+    }
+}
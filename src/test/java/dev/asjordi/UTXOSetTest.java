@@ -0,0 +1,76 @@
+package dev.asjordi;
+
+import dev.asjordi.model.HeapUTXOSet;
+import dev.asjordi.model.OutPoint;
+import dev.asjordi.model.TransactionOutput;
+import dev.asjordi.model.UTXOSet;
+import dev.asjordi.model.Wallet;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.security.Security;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UTXOSetTest {
+
+    private static TransactionOutput output;
+
+    @BeforeAll
+    static void setUpAll() {
+        Security.addProvider(new BouncyCastleProvider());
+        output = new TransactionOutput(new Wallet().getPublicKey(), 5, "0");
+    }
+
+    @Test
+    void testOutPointHexRoundTrip() {
+        OutPoint id = output.getId();
+        assertEquals(64, id.toHex().length());
+        assertEquals(id, OutPoint.fromHex(id.toHex()));
+    }
+
+    @Test
+    void testPutGetRemove() {
+        UTXOSet set = new HeapUTXOSet();
+        assertNull(set.put(output.getId(), output));
+        assertSame(output, set.get(output.getId()));
+        assertEquals(1, set.size());
+        assertSame(output, set.remove(output.getId()));
+        assertNull(set.get(output.getId()));
+        assertTrue(set.isEmpty());
+    }
+
+    @Test
+    void testMatchesHashMapUnderRandomChurn() {
+        Random random = new Random(42);
+        UTXOSet set = new HeapUTXOSet();
+        Map<OutPoint, TransactionOutput> expected = new HashMap<>();
+        List<OutPoint> ids = new ArrayList<>();
+
+        for (int i = 0; i < 20_000; i++) {
+            if (ids.isEmpty() || random.nextInt(3) > 0) {
+                // Only a few distinct high bits, so probe runs collide and wrap
+                OutPoint id = new OutPoint(random.nextInt(64), random.nextLong(), random.nextLong(), random.nextLong());
+                ids.add(id);
+                assertEquals(expected.put(id, output), set.put(id, output));
+            } else {
+                OutPoint id = ids.remove(random.nextInt(ids.size()));
+                assertEquals(expected.remove(id), set.remove(id));
+            }
+        }
+
+        assertEquals(expected.size(), set.size());
+        for (OutPoint id : expected.keySet()) {
+            assertTrue(set.containsKey(id), "Every remaining key should be found after removals");
+        }
+        int iterated = 0;
+        for (TransactionOutput ignored : set) iterated++;
+        assertEquals(expected.size(), iterated);
+    }
+}
@@ -1,7 +1,13 @@
 package dev.asjordi;
 
+import dev.asjordi.chain.Difficulty;
+import dev.asjordi.chain.DifficultyAdjuster;
+import dev.asjordi.model.Address;
+import dev.asjordi.model.HeapUTXOSet;
 import dev.asjordi.model.Transaction;
+import dev.asjordi.model.TransactionOutput;
 import dev.asjordi.model.Wallet;
+import dev.asjordi.node.NodeContext;
 import org.bouncycastle.jce.provider.BouncyCastleProvider;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.BeforeEach;
@@ -23,7 +29,8 @@ class WalletTest {
 
     @BeforeEach
     public void setUp() {
-        walletA = new Wallet();
+        NodeContext context = new NodeContext(new DifficultyAdjuster(Difficulty.bitsForLeadingZeros(1), 1_000, 10));
+        walletA = new Wallet(context);
         walletB = new Wallet();
     }
 
@@ -33,11 +40,30 @@ class WalletTest {
         assertNotNull(walletA.getPrivateKey(), "Private key should not be null");
     }
 
+    @Test
+    void testAddressIdentifiesOwner() {
+        Address address = walletA.getAddress();
+        assertEquals(address, Address.of(walletA.getPublicKey()));
+        assertEquals(address, Address.fromHex(address.toHex()));
+        assertNotEquals(address, walletB.getAddress());
+
+        TransactionOutput output = new TransactionOutput(walletA.getPublicKey(), 5, "0");
+        assertTrue(output.isMine(address));
+        assertFalse(output.isMine(walletB.getPublicKey()));
+    }
+
     @Test
     void testBalanceOfNewWallet() {
         assertEquals(0, walletA.getBalance(), "Balance should be 0");
     }
 
+    @Test
+    void testUnboundWalletNeedsUTXOSet() {
+        assertThrows(IllegalStateException.class, () -> walletB.getBalance());
+        assertThrows(IllegalStateException.class, () -> walletB.sendFunds(walletA.getPublicKey(), 5));
+        assertEquals(0, walletB.getBalance(new HeapUTXOSet()));
+    }
+
     @Test
     void testVerifySignatureFromTransaction() {
         Transaction t = new Transaction(walletA.getPublicKey(), walletB.getPublicKey(), 5, null);